@@ -0,0 +1,86 @@
+package model.benchmark;
+
+import model.graph.building.Building;
+import model.graph.building.Building.Room;
+import model.graph.building.Grid.Cell;
+import model.graph.useragent.Person;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Fills the buildings the benchmarks run on with persons.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ */
+public final class BenchmarkBuildings {
+
+    private BenchmarkBuildings() {}
+
+    /**
+     * puts persons on random free cells of a building. Every fifth person is disabled and only
+     * put on the ground floor, because disabled persons can not use stairs. If no
+     * state is given, the persons stay in their room, stay in the building, wander around or
+     * go to a room in turn. Persons that go to a room get a random goal room.
+     *
+     * @param building the building
+     * @param agents   the number of persons
+     * @param state    the state of all persons, null for all states in turn
+     * @param seed     the seed of the random numbers; also used to seed the building
+     * @return the persons that were added
+     */
+    public static ArrayList<Person> populate(Building building, int agents, Person.STATE state, long seed) {
+
+        Random random = new Random(seed);
+        building.getRandom().setSeed(seed);
+        building.setAverageCapacity(building.getPersonsInBuildingView().size() + agents);
+
+        ArrayList<Room> rooms = new ArrayList<>(building.getRooms());
+        rooms.sort(Comparator.comparingInt(Room::getId));
+        ArrayList<Cell> cells = new ArrayList<>();
+        for (Room room : rooms) {
+            for (int x = room.getBeginning().getX(); x <= room.getEnd().getX(); x++) {
+                for (int y = room.getBeginning().getY(); y <= room.getEnd().getY(); y++) {
+                    Cell cell = building.getCell(x, y, room.getFloor());
+                    if (!cell.isOccupied() && !cell.isStair()) {
+                        cells.add(cell);
+                    }
+                }
+            }
+        }
+        if (cells.size() < agents) {
+            throw new IllegalArgumentException("The building has only " + cells.size() + " free cells");
+        }
+        Collections.shuffle(cells, random);
+
+        Person.STATE[] states = {Person.STATE.STAYINROOM, Person.STATE.STAYINBUILDING,
+                Person.STATE.WANDERRANDOMLY, Person.STATE.GOTOROOM};
+        ArrayList<Person> persons = new ArrayList<>(agents);
+        int groundCell = 0;
+        for (int i = 0; i < agents; i++) {
+            boolean disabled = i % 5 == 0;
+            if (disabled && cells.get(i).getFloor() != 0) {
+                groundCell = Math.max(groundCell, i + 1);
+                while (groundCell < cells.size() && cells.get(groundCell).getFloor() != 0) {
+                    groundCell++;
+                }
+                if (groundCell == cells.size()) {
+                    throw new IllegalArgumentException("The ground floor has not enough free cells");
+                }
+                Collections.swap(cells, i, groundCell);
+            }
+            Person.STATE personState = state == null ? states[i % states.length] : state;
+            Room goalRoom = personState == Person.STATE.GOTOROOM ? rooms.get(random.nextInt(rooms.size())) : null;
+            Person person = new Person("BenchmarkPerson" + i, cells.get(i), disabled,
+                    personState, goalRoom, building);
+            building.addPerson(person);
+            persons.add(person);
+        }
+        return persons;
+
+    }
+
+}
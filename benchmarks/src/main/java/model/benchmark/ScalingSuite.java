@@ -0,0 +1,393 @@
+package model.benchmark;
+
+import model.graph.PathOntology;
+import model.graph.building.Building;
+import model.graph.building.BuildingGenerator;
+import model.graph.evacuation.EvacuationStrategies;
+import model.graph.evacuation.EvacuationStrategyProvider;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Runs evacuations of generated buildings of growing size without a window and measures how
+ * the simulation scales: ticks per second, the peak heap, the bytes allocated per tick and the
+ * time it takes to build the shortest paths. For every layout, the growth of the time per tick
+ * between two sizes is shown as an exponent, 1 for linear, 2 for quadratic growth. Usage:
+ * <pre>
+ * java model.benchmark.ScalingSuite [-sizes 250,1000,4000] [-layouts office,tower,stadium]
+ *                                   [-strategies ShortestPath,ExitBalancing] [-ticks 200]
+ *                                   [-forks 3]
+ *                                   [-baseline scaling-baseline.properties] [-tolerance 0.3]
+ *                                   [-update]
+ * </pre>
+ * Every building is ticked 50 times before the evacuation starts; the evacuation is measured
+ * for at most the given number of ticks. Every building is measured in a JVM of its own, with
+ * the same options as the suite, so that its peak heap and its JIT do not depend on the
+ * buildings measured before it; this is repeated in the given number of JVMs, and the median
+ * of every metric is taken. Every layout and size is evacuated with each of the
+ * strategies, which are taken from {@link EvacuationStrategies}; the metrics of strategies
+ * other than the default one are stored under their name. If a baseline exists, every metric is compared with
+ * it and the suite exits with 1 if one got worse by more than the tolerance. With
+ * <code>-update</code>, the measured metrics are written as the new baseline instead. The
+ * baseline in <code>benchmarks/scaling-baseline.properties</code> was measured with the
+ * default options; its header names the JVM and the machine.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ */
+public final class ScalingSuite {
+
+    private static final int NORMAL_TICKS = 50;
+
+    /**
+     * the measured metrics; for the first one higher is better, for all others lower
+     */
+    private static final String[] METRICS = {"ticksPerSecond", "peakHeapMB", "allocatedKBPerTick", "pathOntologyMillis"};
+
+    /**
+     * below these values, a metric is only noise and is not compared with the baseline
+     */
+    private static final double[] NOISE = {0, 32, 0, 50};
+
+    /**
+     * the option with which the suite measures a single building in a forked JVM
+     */
+    private static final String MEASURE = "-measure";
+
+    private ScalingSuite() {}
+
+    /**
+     * creates a building of a layout for a number of persons, which fill about half of it
+     *
+     * @param layout  office, tower or stadium
+     * @param persons the number of persons
+     * @return the building
+     */
+    static Building create(String layout, int persons) {
+
+        switch (layout) {
+            case "office":
+                return BuildingGenerator.officeFor(persons);
+            case "tower":
+                // four floors of 3x3 offices
+                int roomSize = (int) Math.max(7, Math.ceil(Math.sqrt(2.0 * persons / 36)));
+                return BuildingGenerator.tower(4, 3, 3, roomSize, 4);
+            case "stadium":
+                // six blocks per side hold about 20 squares of the block size
+                int blockSize = (int) Math.max(4, Math.ceil(Math.sqrt(2.0 * persons / 20)));
+                return BuildingGenerator.stadium(6, blockSize, blockSize, 3, 3);
+            default:
+                throw new IllegalArgumentException("Unknown layout " + layout);
+        }
+
+    }
+
+    /**
+     * evacuates a building and measures it
+     *
+     * @return the metrics in the order of <code>METRICS</code>, and the time per tick in
+     * nanoseconds at the end
+     */
+    static double[] measure(String layout, int persons, String strategy, int maxTicks) {
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocation = threads instanceof com.sun.management.ThreadMXBean ?
+                (com.sun.management.ThreadMXBean) threads : null;
+        long thread = Thread.currentThread().getId();
+
+        List<MemoryPoolMXBean> heap = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heap.add(pool);
+            }
+        }
+        System.gc();
+        for (MemoryPoolMXBean pool : heap) {
+            pool.resetPeakUsage();
+        }
+        long allocatedBefore = allocation == null ? 0 : allocation.getThreadAllocatedBytes(thread);
+
+        Building building = create(layout, persons);
+        long start = System.nanoTime();
+        PathOntology.getInstance(building);
+        double pathOntologyMillis = (System.nanoTime() - start) / 1e6;
+        BenchmarkBuildings.populate(building, persons, null, 1);
+
+        long tickTime = 0;
+        int ticks = 0;
+        for (int i = 0; i < NORMAL_TICKS; i++) {
+            long tickStart = System.nanoTime();
+            building.tick();
+            tickTime += System.nanoTime() - tickStart;
+            ticks++;
+        }
+        building.startEvacuation(EvacuationStrategies.create(strategy, building));
+        for (int i = 0; i < maxTicks && !building.getMetrics().isFinished(); i++) {
+            long tickStart = System.nanoTime();
+            building.tick();
+            tickTime += System.nanoTime() - tickStart;
+            ticks++;
+        }
+
+        long allocated = allocation == null ? -1 : allocation.getThreadAllocatedBytes(thread) - allocatedBefore;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heap) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+
+        return new double[]{
+                ticks / (tickTime / 1e9),
+                peak / (1024.0 * 1024.0),
+                allocated < 0 ? -1 : allocated / 1024.0 / ticks,
+                pathOntologyMillis,
+                (double) tickTime / ticks
+        };
+
+    }
+
+    /**
+     * evacuates a building in a new JVM and measures it
+     *
+     * @return see {@link #measure(String, int, String, int)}
+     * @throws IOException if the JVM can not be started or fails
+     */
+    static double[] measureForked(String layout, int persons, String strategy, int maxTicks) throws IOException {
+
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ScalingSuite.class.getName());
+        command.add(MEASURE);
+        command.add(layout);
+        command.add(String.valueOf(persons));
+        command.add(strategy);
+        command.add(String.valueOf(maxTicks));
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String result = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result = line;
+            }
+        }
+        try {
+            if (process.waitFor() != 0 || result == null) {
+                throw new IOException("Measuring " + layout + " " + persons + " " + strategy + " failed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while measuring " + layout + " " + persons, e);
+        }
+
+        String[] values = result.trim().split(" ");
+        double[] metrics = new double[values.length];
+        for (int m = 0; m < values.length; m++) {
+            metrics[m] = Double.parseDouble(values[m]);
+        }
+        return metrics;
+
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length == 5 && args[0].equals(MEASURE)) {
+            // a forked JVM: prints the metrics in one line for the suite
+            double[] metrics = measure(args[1], Integer.parseInt(args[2]), args[3], Integer.parseInt(args[4]));
+            StringBuilder line = new StringBuilder();
+            for (double metric : metrics) {
+                line.append(line.length() == 0 ? "" : " ").append(String.format(Locale.ROOT, "%.6f", metric));
+            }
+            System.out.println(line);
+            return;
+        }
+
+        int[] sizes = {250, 1000, 4000};
+        String[] layouts = {"office", "tower", "stadium"};
+        String[] strategies = {EvacuationStrategies.DEFAULT};
+        int maxTicks = 200;
+        int forks = 3;
+        File baselineFile = new File("scaling-baseline.properties");
+        double tolerance = 0.3;
+        boolean update = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-sizes":
+                    String[] values = args[++i].split(",");
+                    sizes = new int[values.length];
+                    for (int v = 0; v < values.length; v++) {
+                        sizes[v] = Integer.parseInt(values[v].trim());
+                    }
+                    break;
+                case "-layouts":
+                    layouts = args[++i].split(",");
+                    break;
+                case "-strategies":
+                    strategies = args[++i].split(",");
+                    break;
+                case "-ticks":
+                    maxTicks = Integer.parseInt(args[++i]);
+                    break;
+                case "-forks":
+                    forks = Integer.parseInt(args[++i]);
+                    break;
+                case "-baseline":
+                    baselineFile = new File(args[++i]);
+                    break;
+                case "-tolerance":
+                    tolerance = Double.parseDouble(args[++i]);
+                    break;
+                case "-update":
+                    update = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        for (String strategy : strategies) {
+            EvacuationStrategyProvider provider = EvacuationStrategies.get(strategy);
+            if (provider == null) {
+                throw new IllegalArgumentException("Unknown EvacuationStrategy " + strategy
+                        + ", known are " + EvacuationStrategies.getNames());
+            }
+            StringBuilder parameters = new StringBuilder(strategy);
+            for (Map.Entry<String, String> parameter : provider.getParameters().entrySet()) {
+                parameters.append(' ').append(parameter.getKey()).append('=').append(parameter.getValue());
+            }
+            System.out.println(parameters);
+        }
+
+        Properties measured = new Properties();
+        System.out.println(String.format("%-36s%14s%12s%14s%14s%10s",
+                "building", "ticks/s", "heap MB", "alloc KB/tick", "paths ms", "growth"));
+        for (String layout : layouts) {
+            for (String strategy : strategies) {
+                // the metrics of the default strategy keep the keys they had before strategies
+                // could be chosen, so that older baselines still fit
+                String suffix = strategy.equals(EvacuationStrategies.DEFAULT) ? "" : " " + strategy;
+                double lastTickTime = 0;
+                int lastSize = 0;
+                for (int size : sizes) {
+                    double[][] runs = new double[forks][];
+                    for (int f = 0; f < forks; f++) {
+                        runs[f] = measureForked(layout, size, strategy, maxTicks);
+                    }
+                    double[] metrics = median(runs);
+                    String growth = lastSize == 0 ? "" : String.format(Locale.ROOT, "n^%.2f",
+                            Math.log(metrics[4] / lastTickTime) / Math.log((double) size / lastSize));
+                    System.out.println(String.format(Locale.ROOT, "%-36s%14.1f%12.1f%14.1f%14.1f%10s",
+                            layout + " " + size + suffix, metrics[0], metrics[1], metrics[2], metrics[3], growth));
+                    for (int m = 0; m < METRICS.length; m++) {
+                        measured.setProperty(layout + "." + size + suffix.replace(' ', '.') + "." + METRICS[m],
+                                String.format(Locale.ROOT, "%.3f", metrics[m]));
+                    }
+                    lastTickTime = metrics[4];
+                    lastSize = size;
+                }
+            }
+        }
+
+        if (update) {
+            try (OutputStream out = new FileOutputStream(baselineFile)) {
+                measured.store(out, String.format(Locale.ROOT,
+                        "baseline of the scaling suite: -sizes %s -layouts %s -strategies %s -ticks %d -forks %d%n"
+                                + "Java %s (%s), %s %s, %d processors",
+                        join(sizes), String.join(",", layouts), String.join(",", strategies), maxTicks, forks,
+                        System.getProperty("java.version"), System.getProperty("java.vm.name"),
+                        System.getProperty("os.name"), System.getProperty("os.arch"),
+                        Runtime.getRuntime().availableProcessors()));
+            }
+            System.out.println("Baseline written to " + baselineFile);
+            return;
+        }
+        if (!baselineFile.exists()) {
+            System.out.println("No baseline at " + baselineFile + "; run with -update to create one");
+            return;
+        }
+
+        Properties baseline = new Properties();
+        try (InputStream in = new FileInputStream(baselineFile)) {
+            baseline.load(in);
+        }
+        int regressions = 0;
+        for (String key : new TreeSet<>(measured.stringPropertyNames())) {
+            String expected = baseline.getProperty(key);
+            if (expected == null) {
+                continue;
+            }
+            double base = Double.parseDouble(expected);
+            double value = Double.parseDouble(measured.getProperty(key));
+            int metric = 0;
+            while (!key.endsWith("." + METRICS[metric])) {
+                metric++;
+            }
+            if (base < 0 || value < 0 || Math.max(base, value) < NOISE[metric]) {
+                // not measurable on this JVM, or too small to be measured reliably
+                continue;
+            }
+            boolean higherIsBetter = metric == 0;
+            boolean regressed = higherIsBetter ? value < base * (1 - tolerance) : value > base * (1 + tolerance);
+            if (regressed) {
+                System.err.println(String.format(Locale.ROOT, "REGRESSION %s: %.1f, baseline %.1f", key, value, base));
+                regressions++;
+            }
+        }
+        if (regressions > 0) {
+            System.err.println(regressions + " metrics regressed by more than " + Math.round(tolerance * 100) + "%");
+            System.exit(1);
+        }
+        System.out.println("No regressions against " + baselineFile);
+
+    }
+
+    /**
+     * @param runs the metrics of several runs
+     * @return the median of every metric
+     */
+    private static double[] median(double[][] runs) {
+
+        double[] median = new double[runs[0].length];
+        double[] values = new double[runs.length];
+        for (int m = 0; m < median.length; m++) {
+            for (int r = 0; r < runs.length; r++) {
+                values[r] = runs[r][m];
+            }
+            Arrays.sort(values);
+            median[m] = values.length % 2 == 1 ? values[values.length / 2]
+                    : (values[values.length / 2 - 1] + values[values.length / 2]) / 2;
+        }
+        return median;
+
+    }
+
+    private static String join(int[] values) {
+        StringBuilder joined = new StringBuilder();
+        for (int value : values) {
+            joined.append(joined.length() == 0 ? "" : ",").append(value);
+        }
+        return joined.toString();
+    }
+
+}
@@ -0,0 +1,102 @@
+package model.graph;
+
+import model.graph.building.Building;
+import model.graph.building.BuildingGenerator;
+import model.graph.building.Building.Room;
+import model.graph.building.Grid.Cell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of building the shortest paths of office buildings of different sizes and of
+ * looking up shortest paths from random cells to random rooms.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathOntologyBenchmarks {
+
+    private static final int LOOKUPS = 4096;
+
+    /**
+     * an office building for a number of persons
+     */
+    @State(Scope.Thread)
+    public static class Sizes {
+
+        /**
+         * the number of persons the building is made for
+         */
+        @Param({"100", "10000", "100000"})
+        public int agents;
+
+        private Building building;
+
+        @Setup
+        public void setUp() {
+            building = BuildingGenerator.officeFor(agents);
+        }
+
+    }
+
+    /**
+     * the shortest paths of an office building for 10000 persons and random cells and rooms to
+     * look up
+     */
+    @State(Scope.Thread)
+    public static class Lookups {
+
+        private PathOntology ontology;
+        private final Cell[] starts = new Cell[LOOKUPS];
+        private final Room[] ends = new Room[LOOKUPS];
+        private int next;
+
+        @Setup
+        public void setUp() {
+            Building building = BuildingGenerator.officeFor(10000);
+            ontology = new PathOntology(building);
+            ArrayList<Room> rooms = new ArrayList<>(building.getRooms());
+            rooms.sort(Comparator.comparingInt(Room::getId));
+            Random random = new Random(1);
+            for (int i = 0; i < LOOKUPS; i++) {
+                starts[i] = building.getCell(random.nextInt(building.gridSizeX), random.nextInt(building.gridSizeY), 0);
+                // every eighth lookup leads outside
+                ends[i] = i % 8 == 0 ? null : rooms.get(random.nextInt(rooms.size()));
+            }
+        }
+
+    }
+
+    @Benchmark
+    public PathOntology newOntology(Sizes sizes) {
+        // a new building every time, so that nothing is shared with the last run
+        return new PathOntology(new Building(sizes.building));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int getShortestPath(Lookups lookups) {
+        int i = lookups.next++ & (LOOKUPS - 1);
+        return lookups.ontology.getShortestPath(lookups.starts[i], lookups.ends[i], (i & 4) != 0).getWay().size();
+    }
+
+}
@@ -0,0 +1,143 @@
+package model.graph;
+
+import model.graph.building.Building;
+import model.graph.building.Building.Passage;
+import model.graph.building.Building.Room;
+import model.graph.building.BuildingGenerator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Checks that the paths that are repaired after passages were closed or reopened or the
+ * penalties of rooms changed cost the same as the paths of an ontology that is built anew.
+ * <p>
+ * On an office and a tower, passages are closed and reopened and penalties are set at random.
+ * After every change, both matrices of the instance of the building are compared with the
+ * matrices of a new ontology. The costs may only differ by the rounding of the sums, which are
+ * added up in another order; the ways may differ if two paths cost the same.
+ * <p>
+ * Usage: <code>PathOntologyRepairCheck [changes [seed]]</code>, 100 changes and the seed 1 by
+ * default. Exits with 1 if a path differs.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ */
+public class PathOntologyRepairCheck {
+
+    /**
+     * the penalties that are set on the rooms
+     */
+    private static final float[] PENALTIES = {0, 2, 5, 10};
+
+    /**
+     * how much the costs of two paths may differ, relative to their costs
+     */
+    private static final float TOLERANCE = 1e-4f;
+
+    public static void main(String[] args) {
+
+        int changes = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        int mismatches = check("office(4,4,8)", BuildingGenerator.office(4, 4, 8), changes, seed)
+                + check("tower(3,3,3,8,2)", BuildingGenerator.tower(3, 3, 3, 8, 2), changes, seed);
+        if (mismatches > 0) {
+            System.err.println(mismatches + " repaired paths differ from the paths of a new ontology");
+            System.exit(1);
+        }
+
+    }
+
+    /**
+     * changes the building at random and compares the repaired paths after every change
+     *
+     * @return the number of paths that differed, summed up over all changes
+     */
+    private static int check(String name, Building building, int changes, long seed) {
+
+        PathOntology po = PathOntology.getInstance(building);
+        ArrayList<Passage> passages = new ArrayList<>(building.getPassages());
+        passages.sort(new Comparator<Passage>() {
+            @Override
+            public int compare(Passage o1, Passage o2) {
+                return o1.id - o2.id;
+            }
+        });
+        ArrayList<Room> rooms = new ArrayList<>(building.getRooms());
+        rooms.sort(new Comparator<Room>() {
+            @Override
+            public int compare(Room o1, Room o2) {
+                return o1.getId() - o2.getId();
+            }
+        });
+
+        Random random = new Random(seed);
+        int mismatches = 0;
+        for (int c = 0; c < changes; c++) {
+
+            String change;
+            int kind = random.nextInt(3);
+            if (kind == 0) {
+                Passage passage = passages.get(random.nextInt(passages.size()));
+                change = "close " + passage.id;
+                if (!passage.isClosed()) {
+                    building.closePassage(passage);
+                }
+            } else if (kind == 1) {
+                ArrayList<Passage> closed = new ArrayList<>();
+                for (Passage passage : passages) {
+                    if (passage.isClosed()) {
+                        closed.add(passage);
+                    }
+                }
+                Passage passage = closed.isEmpty() ? null : closed.get(random.nextInt(closed.size()));
+                change = "reopen " + (passage == null ? "nothing" : passage.id);
+                if (passage != null) {
+                    building.reopenPassage(passage);
+                }
+            } else {
+                Room room = rooms.get(random.nextInt(rooms.size()));
+                float penalty = PENALTIES[random.nextInt(PENALTIES.length)];
+                change = "penalty " + penalty + " on room " + room.getId();
+                building.setRoomPenalty(room, penalty);
+            }
+
+            PathOntology fresh = new PathOntology(building);
+            fresh.release();
+            mismatches += compare(name + ", change " + c + " (" + change + ")", po.getMatrix(false),
+                    fresh.getMatrix(false))
+                    + compare(name + ", change " + c + " (" + change + "), disabled", po.getMatrix(true),
+                    fresh.getMatrix(true));
+
+        }
+        System.out.println(name + ": " + changes + " changes, " + mismatches + " differing paths");
+        return mismatches;
+
+    }
+
+    /**
+     * @return the number of paths whose costs differ; the first one is printed
+     */
+    private static int compare(String what, Path[][] repaired, Path[][] fresh) {
+
+        int mismatches = 0;
+        for (int i = 0; i < fresh.length; i++) {
+            for (int j = 0; j < fresh.length; j++) {
+                float a = repaired[i][j].getCosts();
+                float b = fresh[i][j].getCosts();
+                boolean unreachable = a >= Integer.MAX_VALUE && b >= Integer.MAX_VALUE;
+                if (!unreachable && Math.abs(a - b) > TOLERANCE * Math.max(1, Math.abs(b))) {
+                    if (mismatches == 0) {
+                        System.err.println(what + ": [" + i + "][" + j + "] costs " + a + " instead of " + b);
+                    }
+                    mismatches++;
+                }
+            }
+        }
+        return mismatches;
+
+    }
+
+}
@@ -0,0 +1,54 @@
+package model.graph.building;
+
+import model.benchmark.BenchmarkBuildings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of a whole tick of office buildings with different numbers of persons in them.
+ * The buildings keep ticking from one iteration to the next; persons leave and new ones come
+ * in so that their number stays about the same.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuildingBenchmarks {
+
+    /**
+     * the number of persons in the building
+     */
+    @Param({"100", "10000", "100000"})
+    public int agents;
+
+    private Building building;
+
+    @Setup
+    public void setUp() {
+        building = BuildingGenerator.officeFor(agents);
+        BenchmarkBuildings.populate(building, agents, null, 1);
+    }
+
+    @Benchmark
+    public long tick() {
+        building.tick();
+        return building.getTickNumber();
+    }
+
+}
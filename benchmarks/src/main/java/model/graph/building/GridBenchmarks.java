@@ -0,0 +1,104 @@
+package model.graph.building;
+
+import model.graph.building.Building.Stair;
+import model.graph.building.Grid.Cell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of looking up cells and their neighbours in the grid of an office building for
+ * 10000 persons. The looked up cells are chosen randomly in advance and used in turn.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridBenchmarks {
+
+    private static final int LOOKUPS = 4096;
+
+    private Grid grid;
+    private final int[] xs = new int[LOOKUPS], ys = new int[LOOKUPS];
+
+    private final Cell[] cells = new Cell[LOOKUPS];
+    private final int[] directions = new int[LOOKUPS];
+
+    /**
+     * the cells of the stairs and the cells in front of them, walking onto or off the stairs
+     */
+    private final Cell[] stairCells = new Cell[LOOKUPS];
+    private final int[] stairDirections = new int[LOOKUPS];
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+
+        Building building = BuildingGenerator.officeFor(10000);
+        grid = building.getGrid();
+        Random random = new Random(1);
+        for (int i = 0; i < LOOKUPS; i++) {
+            xs[i] = random.nextInt(grid.xSize);
+            ys[i] = random.nextInt(grid.ySize);
+        }
+        for (int i = 0; i < LOOKUPS; i++) {
+            cells[i] = grid.getCell(random.nextInt(grid.xSize), random.nextInt(grid.ySize), 0);
+            directions[i] = DIR.getRandomDirection(random);
+        }
+
+        LinkedList<Cell> onStairs = new LinkedList<>();
+        LinkedList<Integer> onStairsDirections = new LinkedList<>();
+        for (Stair stair : building.getStairs()) {
+            for (Cell cell : stair.getStairCells()) {
+                onStairs.add(cell);
+                onStairsDirections.add(DIR.getComplement(stair.getDirection()));
+            }
+            for (Cell cell : stair.getLowerCells()) {
+                onStairs.add(cell);
+                onStairsDirections.add(stair.getDirection());
+            }
+        }
+        for (int i = 0; i < LOOKUPS; i++) {
+            stairCells[i] = onStairs.get(i % onStairs.size());
+            stairDirections[i] = onStairsDirections.get(i % onStairsDirections.size());
+        }
+
+    }
+
+    @Benchmark
+    public int getCell() {
+        int i = next++ & (LOOKUPS - 1);
+        return grid.getCell(xs[i], ys[i], 0).getX();
+    }
+
+    @Benchmark
+    public int getNextCell() {
+        int i = next++ & (LOOKUPS - 1);
+        return cells[i].getNextCell(directions[i]).getY();
+    }
+
+    @Benchmark
+    public int getNextStairCell() {
+        int i = next++ & (LOOKUPS - 1);
+        Cell cell = stairCells[i].getNextStairCell(stairDirections[i]);
+        return cell == null ? 0 : cell.getX();
+    }
+
+}
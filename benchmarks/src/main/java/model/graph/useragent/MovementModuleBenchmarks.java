@@ -0,0 +1,109 @@
+package model.graph.useragent;
+
+import model.benchmark.BenchmarkBuildings;
+import model.graph.Path;
+import model.graph.building.Building;
+import model.graph.building.BuildingGenerator;
+import model.graph.building.Building.Room;
+import model.graph.building.Grid.Cell;
+import model.graph.evacuation.ShortestPathsEvacuation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of finding the next step of a person, for every state a person can be in. The
+ * persons of an office building for 1000 persons are asked in turn; they do not actually move,
+ * and a person whose state or path was changed by the movement module gets its old state and
+ * path back before it is asked again.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovementModuleBenchmarks {
+
+    /**
+     * the state of the persons
+     */
+    @Param({"GETINTOBUILDING", "STANDSTILL", "STAYINROOM", "STAYINBUILDING", "WANDERRANDOMLY", "GOTOROOM",
+            "EVACUATION"})
+    public Person.STATE state;
+
+    private MovementModule movementModule;
+    private Person[] persons;
+    private Room[] goalRooms;
+    private Path[] paths;
+    private int next;
+
+    @Setup
+    public void setUp() {
+
+        Building building = BuildingGenerator.officeFor(1000);
+        ArrayList<Person> added;
+        if (state == Person.STATE.GETINTOBUILDING) {
+            // only persons in front of the exits want to get into the building
+            added = new ArrayList<>();
+            for (Cell cell : building.getEntryCells()) {
+                if (!cell.isOccupied()) {
+                    Person person = new Person("BenchmarkPerson" + added.size(), cell, false, state, building);
+                    building.addPerson(person);
+                    added.add(person);
+                }
+            }
+        } else if (state == Person.STATE.EVACUATION) {
+            added = BenchmarkBuildings.populate(building, 1000, null, 1);
+            building.startEvacuation(new ShortestPathsEvacuation(building));
+        } else {
+            added = BenchmarkBuildings.populate(building, 1000, state, 1);
+        }
+
+        movementModule = MovementModule.getMovementModule(building);
+        persons = added.toArray(new Person[0]);
+        goalRooms = new Room[persons.length];
+        paths = new Path[persons.length];
+        for (int i = 0; i < persons.length; i++) {
+            goalRooms[i] = persons[i].getGoalRoom();
+            if (state == Person.STATE.EVACUATION) {
+                paths[i] = building.getEvacuationStrategy().getPath(persons[i]);
+            }
+        }
+
+    }
+
+    @Benchmark
+    public int move() {
+
+        int i = next++;
+        if (next == persons.length) {
+            next = 0;
+        }
+        Person person = persons[i];
+        if (person.getState() != state) {
+            person.setState(state);
+            person.setGoalRoom(goalRooms[i]);
+        } else if (state == Person.STATE.EVACUATION) {
+            // the person does not move, so it must not go on with the rest of its path
+            person.setPath(new Path(paths[i]));
+        }
+        return movementModule.move(person);
+
+    }
+
+}
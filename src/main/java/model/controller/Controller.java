@@ -1,16 +1,22 @@
 package model.controller;
 
 import model.graph.building.Building;
+import model.graph.building.Checkpoint;
+import model.graph.building.CheckpointWriter;
 import model.graph.building.DIR;
 import model.graph.building.Grid;
-import model.graph.evacuation.ShortestPathsEvacuation;
+import model.graph.evacuation.EvacuationStrategies;
+import model.graph.recording.TrajectoryPlayer;
+import model.graph.recording.TrajectoryRecorder;
 import model.graph.useragent.Person;
+import model.helper.Instrumentation;
 import model.representation.BuildingRepresentation;
 import model.representation.Menu;
+import model.representation.StatisticsBuildingView;
 import model.representation.Window;
 
-import javax.swing.*;
 import java.io.File;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Random;
@@ -21,15 +27,58 @@ public class Controller implements Runnable {
 
     private Window window;
     private Menu menu;
+    private StatisticsBuildingView statistics;
 
     private int milliSecondsPerStep = 200;
 
+    /**
+     * how long the building may be ticked per frame if it is ticked in slices, in nanoseconds
+     */
+    private static final long FRAME_BUDGET_NANOS = 15_000_000;
+
+    /**
+     * whether the building is ticked in slices, so that the window stays responsive even if a
+     * tick takes longer than a step
+     */
+    private boolean timeSliced = false;
+
     private Thread thread;
     private boolean running = false;
     public boolean emergency = false;
 
+    /**
+     * the name of the evacuation strategy the user chose for the emergency
+     */
+    private String emergencyStrategy = EvacuationStrategies.DEFAULT;
+
     private float percentage;
 
+    /**
+     * the player of a recorded run that is shown instead of the building, null if there is none
+     */
+    private TrajectoryPlayer player;
+
+    /**
+     * the recorder the moving building is recorded with, null if it is not recorded
+     */
+    private TrajectoryRecorder recorder;
+
+    /**
+     * the number of ticks between two checkpoints
+     */
+    private static final int CHECKPOINT_INTERVAL = 100;
+
+    /**
+     * the writer the checkpoints of the moving building are written with, null if none are
+     * written
+     */
+    private CheckpointWriter checkpointWriter;
+
+    /**
+     * the values of the density field that are shown over the building
+     */
+    private BuildingRepresentation.HEATMAP heatmap = BuildingRepresentation.HEATMAP.NONE;
+
     long lastTime;
     long deltaTime;
     int numberOfPeople;
@@ -40,7 +89,8 @@ public class Controller implements Runnable {
     public enum STATE {
         BUILDINGMOVING,
         PAUSE,
-        EMPTY
+        EMPTY,
+        REPLAY
     }
 
     private Controller() {
@@ -65,6 +115,11 @@ public class Controller implements Runnable {
 
     public synchronized void go() {
 
+        if (player != null) {
+            state = STATE.REPLAY;
+            menu.stateChanged(STATE.REPLAY);
+            return;
+        }
         state = STATE.BUILDINGMOVING;
         menu.stateChanged(STATE.BUILDINGMOVING);
     }
@@ -85,6 +140,18 @@ public class Controller implements Runnable {
             throw new IllegalArgumentException("Too quick!");
     }
 
+    /**
+     * @param timeSliced whether the building is ticked in slices of at most one frame; a tick
+     *                   that is not done yet is finished when it is switched off
+     * @see Building#tickSliced(long)
+     */
+    public synchronized void setTimeSliced(boolean timeSliced) {
+        this.timeSliced = timeSliced;
+        if (!timeSliced) {
+            building.finishTick();
+        }
+    }
+
     public void adjustNumberOfPeople(int number) {
         if (number >= 0 && number < 500) {
             this.numberOfPeople = number;
@@ -119,14 +186,35 @@ public class Controller implements Runnable {
                     deltaTime = System.currentTimeMillis() - lastTime;
 
                     if (emergency && (building).getState() != Building.STATE.EVACUATION) {
-                        building.startEvacuation(new ShortestPathsEvacuation(building));
+                        building.startEvacuation(EvacuationStrategies.create(emergencyStrategy, building));
+                    }
+                    percentage = ((float) deltaTime / (float) milliSecondsPerStep);
+                    if (timeSliced) {
+                        tickSliced();
+                    } else if (percentage >= 1) {
+                        lastTime = System.currentTimeMillis();
+                        window.render(1.0f);
+                        window.repaint();
+                        synchronized (this) {
+                            building.tick();
+                        }
+
+                    } else {
+                        if (deltaTime > (1000 / 30)) {
+                            window.render(percentage);
+                            window.repaint();
+                        }
                     }
+                } else if (state == STATE.REPLAY) {
+
+                    deltaTime = System.currentTimeMillis() - lastTime;
+
                     percentage = ((float) deltaTime / (float) milliSecondsPerStep);
                     if (percentage >= 1) {
                         lastTime = System.currentTimeMillis();
                         window.render(1.0f);
                         window.repaint();
-                        building.tick();
+                        stepReplay();
 
                     } else {
                         if (deltaTime > (1000 / 30)) {
@@ -142,17 +230,252 @@ public class Controller implements Runnable {
 
     }
 
+    /**
+     * ticks the building for at most one frame. A tick begins when the last one is done and its
+     * step is over; while it is not done, the persons that already moved are shown moving and
+     * the others where they are.
+     */
+    private void tickSliced() {
+
+        boolean begin = percentage >= 1 && !building.isTickInProgress();
+        if (begin) {
+            lastTime = System.currentTimeMillis();
+            percentage = 0;
+        }
+        if (begin || building.isTickInProgress()) {
+            synchronized (this) {
+                building.tickSliced(FRAME_BUDGET_NANOS);
+            }
+        }
+        if (begin || deltaTime > (1000 / 30)) {
+            window.render(Math.min(percentage, 1.0f));
+            window.repaint();
+        }
+
+    }
+
+    /**
+     * moves the replay by one step; pauses it at its first or last frame
+     */
+    private synchronized void stepReplay() {
+
+        if (player == null) {
+            return;
+        }
+        try {
+            if (!player.step()) {
+                pause();
+            }
+            menu.replayFrameChanged(player.getFrame());
+        } catch (IOException e) {
+            e.printStackTrace();
+            pause();
+        }
+
+    }
+
+    /**
+     * shows a recorded run of the opened building instead of simulating it
+     *
+     * @param file the trajectory file of the run
+     */
+    public synchronized void openReplay(File file) {
+
+        TrajectoryPlayer newPlayer;
+        try {
+            newPlayer = new TrajectoryPlayer(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (newPlayer.getLog().getGridSizeX() != building.gridSizeX
+                || newPlayer.getLog().getGridSizeY() != building.gridSizeY
+                || newPlayer.getLog().getFloors() != building.floors) {
+            System.err.println("The recording does not belong to the opened building");
+            closeReplay(newPlayer);
+            return;
+        }
+
+        stopRecording();
+        stopCheckpoints();
+        closeReplay(player);
+        player = newPlayer;
+        window.setPlayer(player);
+        percentage = 0;
+        state = STATE.PAUSE;
+        menu.replayOpened(player.getLog().getFrameCount());
+        menu.stateChanged(STATE.PAUSE);
+
+    }
+
+    /**
+     * @param frame the frame the replay jumps to
+     */
+    public synchronized void seekReplay(int frame) {
+        if (player != null) {
+            try {
+                player.seek(frame);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @param framesPerStep the number of frames the replay moves in one step; negative values
+     *                      play it backwards
+     */
+    public synchronized void adjustReplaySpeed(double framesPerStep) {
+        if (player != null) {
+            player.setSpeed(framesPerStep);
+        }
+    }
+
+    private void closeReplay(TrajectoryPlayer player) {
+        if (player != null) {
+            try {
+                player.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * records every following tick of the building
+     *
+     * @param file the trajectory file the run is written to
+     */
+    public synchronized void startRecording(File file) {
+
+        stopRecording();
+        building.finishTick();
+        try {
+            recorder = new TrajectoryRecorder(file, building);
+            building.addTickListener(recorder);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+    }
+
+    /**
+     * stops recording the building and writes all remaining ticks
+     */
+    public synchronized void stopRecording() {
+
+        if (recorder == null) {
+            return;
+        }
+        building.removeTickListener(recorder);
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        recorder = null;
+
+    }
+
+    /**
+     * writes a checkpoint of the building every few ticks, so that the run can be continued
+     * from it later
+     *
+     * @param file the file the newest checkpoint is written to
+     * @see #openCheckpoint(File)
+     */
+    public synchronized void startCheckpoints(File file) {
+
+        stopCheckpoints();
+        building.finishTick();
+        checkpointWriter = new CheckpointWriter(file, CHECKPOINT_INTERVAL);
+        building.addTickListener(checkpointWriter);
+
+    }
+
+    /**
+     * stops writing checkpoints and waits until the last one is written
+     */
+    public synchronized void stopCheckpoints() {
+
+        if (checkpointWriter == null) {
+            return;
+        }
+        building.removeTickListener(checkpointWriter);
+        checkpointWriter.close();
+        checkpointWriter = null;
+
+    }
+
+    /**
+     * continues the opened building from a checkpoint. The building is read again from its file,
+     * without its persons, and gets the persons, the hazards and the evacuation of the checkpoint.
+     *
+     * @param file the checkpoint file
+     */
+    public synchronized void openCheckpoint(File file) {
+
+        File source = building.getSourceFile();
+        if (source == null) {
+            System.err.println("A checkpoint can only be opened for a building that was read from a file");
+            return;
+        }
+        Building restored = Building.fromJSON(source, false);
+        if (restored == null) {
+            return;
+        }
+        try {
+            Checkpoint.restore(restored, file);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        stopRecording();
+        stopCheckpoints();
+        building = restored;
+        emergency = building.getState() == Building.STATE.EVACUATION;
+        if (building.getEvacuationStrategy() != null && building.getEvacuationStrategy().getName() != null) {
+            emergencyStrategy = building.getEvacuationStrategy().getName();
+        }
+        if (heatmap != BuildingRepresentation.HEATMAP.NONE) {
+            building.setDensityTracked(true);
+        }
+        window.changeBuilding(building);
+        statistics.setBuilding(building);
+        state = STATE.PAUSE;
+        menu.stateChanged(STATE.PAUSE);
+
+    }
+
+    /**
+     * shows the density or flow of persons over the building, and tracks them only while
+     * they are shown
+     *
+     * @param heatmap the values that are shown
+     */
+    public synchronized void showHeatmap(BuildingRepresentation.HEATMAP heatmap) {
+
+        this.heatmap = heatmap;
+        building.setDensityTracked(heatmap != BuildingRepresentation.HEATMAP.NONE);
+        window.setHeatmap(heatmap);
+
+    }
+
+    /**
+     * starts the evacuation with a strategy of the registry
+     *
+     * @param strategy the name of the strategy; the default one is chosen if it is unknown
+     * @see EvacuationStrategies
+     */
     public synchronized void startEmergency(String strategy) {
         emergency = true;
-        switch (strategy) {
-            case "ShortestPath":
-                building.startEvacuation(new ShortestPathsEvacuation(building));
-                break;
-            default:
-                System.err.println("Unknown EvacuationStrategy, chose default one");
-                building.startEvacuation(new ShortestPathsEvacuation(building));
-                break;
+        if (EvacuationStrategies.get(strategy) == null) {
+            System.err.println("Unknown EvacuationStrategy, chose default one");
+            strategy = EvacuationStrategies.DEFAULT;
         }
+        emergencyStrategy = strategy;
+        building.startEvacuation(EvacuationStrategies.create(strategy, building));
     }
 
     public synchronized void openFile(File file) {
@@ -160,7 +483,9 @@ public class Controller implements Runnable {
         emergency = false;
         building = Building.fromJSON(file);
         building.setAverageCapacity(numberOfPeople);
+        building.setDensityTracked(heatmap != BuildingRepresentation.HEATMAP.NONE);
         window.changeBuilding(building);
+        statistics.setBuilding(building);
         state = STATE.PAUSE;
         menu.stateChanged(STATE.PAUSE);
 
@@ -168,6 +493,7 @@ public class Controller implements Runnable {
 
     public synchronized void saveFile(File file) {
 
+        building.finishTick();
         if (building.getPersonsInBuilding().isEmpty()) {
             building.makeJSONfile(false, file);
         } else {
@@ -177,7 +503,13 @@ public class Controller implements Runnable {
     }
 
     public synchronized void stopBuilding() {
+        stopRecording();
+        stopCheckpoints();
+        closeReplay(player);
+        player = null;
+        window.setPlayer(null);
         building = new Building();
+        statistics.setBuilding(building);
         state = STATE.EMPTY;
         menu.stateChanged(STATE.EMPTY);
     }
@@ -305,15 +637,28 @@ public class Controller implements Runnable {
 
         Controller controller = new Controller();
 
+        // the measured phases of every tick can be written to a file for later analysis
+        String events = System.getProperty("evacuation.instrumentation.events");
+        if (events != null) {
+            try {
+                Instrumentation.openEventStream(new File(events));
+                Instrumentation.setEnabled(true);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
         controller.building = new Building();
 
         controller.menu = new Menu(controller);
 
+        controller.statistics = new StatisticsBuildingView();
+
         controller.window = new Window(640,
                 400,
                 controller.building,
                 controller.menu,
-                new JPanel());
+                controller.statistics);
 
         controller.start();
 
@@ -73,6 +73,47 @@ public class Path {
         return str.toString();
     }
 
+    /**
+     *
+     * @return the first passage of the way, null if it is empty
+     */
+    public Building.Passage getNext() {
+        return way.isEmpty() ? null : way.getFirst();
+    }
+
+    /**
+     *
+     * @return the last passage of the way, null if it is empty
+     */
+    public Building.Passage getLast() {
+        return way.isEmpty() ? null : way.getLast();
+    }
+
+    /**
+     *
+     * @param passage a passage
+     * @return whether the way leads through the passage
+     */
+    public boolean contains(Building.Passage passage) {
+        return way.contains(passage);
+    }
+
+    /**
+     *
+     * @param room a room
+     * @return whether the way leads from one passage to the next through the room
+     */
+    public boolean crosses(Building.Room room) {
+        Building.Passage last = null;
+        for (Building.Passage passage : way) {
+            if (last != null && room.equals(last.getConnected(passage))) {
+                return true;
+            }
+            last = passage;
+        }
+        return false;
+    }
+
     public void remove(int i) {
         way.remove(i);
     }
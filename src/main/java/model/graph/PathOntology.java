@@ -4,8 +4,15 @@ import model.graph.building.Grid;
 import model.graph.building.Grid.*;
 import model.graph.building.Building;
 import model.graph.building.Building.*;
+import model.graph.building.HazardListener;
+import model.graph.building.PackedCells;
+import model.helper.Instrumentation;
+import model.helper.Pair;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 
@@ -44,14 +51,92 @@ public class PathOntology {
     private Path[][] shortestPathsDisabled;
 
     /**
-     * private singleton constructor that gets initiated once; calculates all the available shortest paths.
+     * the packed cells of every passage in every room it leads to; filled as they are needed
+     */
+    private final HashMap<Passage, HashMap<Room, PackedCells>> packedCells = new HashMap<>();
+
+    /**
+     * the position of every passage in <code>shortestPathsDisabled</code>, by its id;
+     * -1 for stairs. Calculated when it is needed the first time.
+     */
+    private int[] disabledIndices;
+
+    /**
+     * the passages of both matrices, by their position, and the passages that share a room with
+     * every passage, by its id; only needed to repair the paths
+     */
+    private Passage[] matrixPassages;
+    private Passage[] matrixPassagesDisabled;
+    private Passage[][] neighbours;
+    private float[][] neighbourDistances;
+    private Room[][] neighbourRooms;
+
+    /**
+     * repairs the paths whenever a passage of the building is closed or reopened or the penalty
+     * of a room changes
+     */
+    private final HazardListener listener = new HazardListener() {
+        @Override
+        public void passageClosed(Passage passage) {
+            long time = Instrumentation.start();
+            close(passage);
+            Instrumentation.stop(Instrumentation.Phase.PATH_REPAIR, time);
+        }
+
+        @Override
+        public void passageReopened(Passage passage) {
+            long time = Instrumentation.start();
+            reopen(passage);
+            Instrumentation.stop(Instrumentation.Phase.PATH_REPAIR, time);
+        }
+
+        @Override
+        public void roomPenaltyChanged(Room room, float oldPenalty) {
+            long time = Instrumentation.start();
+            changePenalty(room, oldPenalty);
+            Instrumentation.stop(Instrumentation.Phase.PATH_REPAIR, time);
+        }
+    };
+
+    /**
+     * singleton constructor that gets initiated once; calculates all the available shortest paths.
      * Both for disabled and for not-disabled people.
+     * If the building was read from a file, the paths are loaded from its cache file instead, as long as
+     * the cache belongs to the same topology. Otherwise they are calculated and the cache is (re)written.
+     * <p>
+     * The constructor is only visible in the package so that the benchmarks can build the paths
+     * of a building repeatedly; everything else uses {@link #getInstance(Building)}.
+     *
+     * <p>
+     * Afterwards, the paths are repaired whenever a passage of the building is closed or
+     * reopened or the penalty of a room changes.
+     *
+     * @see PathOntologyCache
+     * @see HazardListener
      */
-    private PathOntology(Building building) {
+    PathOntology(Building building) {
         this.building = building;
         this.grid = building.getGrid();
-        initializePaths();
-        initializeDisabledPaths();
+
+        building.addHazardListener(listener);
+
+        // the cache only knows the paths without closed passages and penalties
+        File cacheFile = building.hasHazards() ? null : PathOntologyCache.getCacheFile(building);
+        if (cacheFile != null) {
+            long hash = building.getTopologyHash();
+            Path[][][] cached = PathOntologyCache.read(cacheFile, hash, building);
+            if (cached != null) {
+                shortestPaths = cached[0];
+                shortestPathsDisabled = cached[1];
+                return;
+            }
+            initializePaths();
+            initializeDisabledPaths();
+            PathOntologyCache.write(cacheFile, hash, shortestPaths, shortestPathsDisabled);
+        } else {
+            initializePaths();
+            initializeDisabledPaths();
+        }
 
     }
 
@@ -70,6 +155,22 @@ public class PathOntology {
         return temp;
     }
 
+    /**
+     * stops repairing the paths of an ontology that was built with the constructor, e.g. to be
+     * compared with the instance of the building; the instance itself is never released
+     */
+    void release() {
+        building.removeHazardListener(listener);
+    }
+
+    /**
+     * @param disabled whether the paths for persons with a disability are meant
+     * @return the matrix of the shortest paths between the passages; not to be changed
+     */
+    Path[][] getMatrix(boolean disabled) {
+        return disabled ? shortestPathsDisabled : shortestPaths;
+    }
+
     /**
      * initializes the shortest paths for people without a disability, using the dijkstra-algorithm
      */
@@ -102,9 +203,12 @@ public class PathOntology {
             for (Passage p1 : allPassages) {
                 for (Passage p2 : allPassages) {
 
-                    if ((long) shortestPaths[p1.id][p0.id].getCosts() +
-                            (long) shortestPaths[p0.id][p2.id].getCosts() + 1
-                            < (long) shortestPaths[p1.id][p2.id].getCosts()) {
+                    // going through p0 costs its crossing costs, which include climbing a floor;
+                    // compared as doubles, so that the fractions of the costs count and the sum of
+                    // two unreachable paths does not overflow
+                    if ((double) shortestPaths[p1.id][p0.id].getCosts() +
+                            shortestPaths[p0.id][p2.id].getCosts() + p0.getCrossingCost()
+                            < shortestPaths[p1.id][p2.id].getCosts()) {
 
                         LinkedList<Passage> tempPath = new LinkedList<>();
                         tempPath.addAll(shortestPaths[p1.id][p0.id].getWay());
@@ -112,7 +216,7 @@ public class PathOntology {
                         tempPath.addAll(shortestPaths[p0.id][p2.id].getWay());
                         shortestPaths[p1.id][p2.id] = new Path(tempPath,
                                 shortestPaths[p1.id][p0.id].getCosts() +
-                                        shortestPaths[p0.id][p2.id].getCosts() + 1);
+                                        shortestPaths[p0.id][p2.id].getCosts() + p0.getCrossingCost());
 
                     }
 
@@ -155,10 +259,10 @@ public class PathOntology {
             for (int j = 0; j < allDoors.size(); j++) {
                 for (int k = 0; k < allDoors.size(); k++) {
 
-                    if ((long) shortestPathsDisabled[j][i].getCosts() +
-                            (long) shortestPathsDisabled[i][k].getCosts() +
+                    if ((double) shortestPathsDisabled[j][i].getCosts() +
+                            shortestPathsDisabled[i][k].getCosts() +
                             (allDoors.get(0).getRoomChangingCells().size() / 2)
-                            < (long) shortestPathsDisabled[j][k].getCosts()) {
+                            < shortestPathsDisabled[j][k].getCosts()) {
 
                         LinkedList<Passage> tempPath = new LinkedList<>();
                         tempPath.addAll(shortestPathsDisabled[j][i].getWay());
@@ -190,19 +294,37 @@ public class PathOntology {
         if (p1.equals(p2)) {
             return 0;
         }
+        if (p1.isClosed() || p2.isClosed()) {
+            return Integer.MAX_VALUE;
+        }
         Room connection = p1.getConnected(p2);
-        float distance = 0;
         if (connection != null) {
+            return getPackedCells(p1, connection).averageDistance(getPackedCells(p2, connection)) +
+                    connection.getPenalty();
+        }
+        return Integer.MAX_VALUE;
+    }
 
-            HashSet<Cell> p1Cells = p1.getRoomChangingCells(connection);
-            HashSet<Cell> p2Cells = p2.getRoomChangingCells(connection);
-            for (Cell c1 : p1Cells) {
-                distance += building.distance(c1, p2Cells);
-            }
-            return distance / p1Cells.size();
+    /**
+     * @param passage the passage
+     * @param room    the room in which the cells should be
+     * @return the packed cells of the passage in the room
+     * @see Passage#getRoomChangingCells(Room)
+     */
+    private PackedCells getPackedCells(Passage passage, Room room) {
 
+        HashMap<Room, PackedCells> rooms = packedCells.get(passage);
+        if (rooms == null) {
+            rooms = new HashMap<>();
+            packedCells.put(passage, rooms);
         }
-        return Integer.MAX_VALUE;
+        PackedCells cells = rooms.get(room);
+        if (cells == null) {
+            cells = new PackedCells(grid, passage.getRoomChangingCells(room));
+            rooms.put(room, cells);
+        }
+        return cells;
+
     }
 
     /**
@@ -215,12 +337,161 @@ public class PathOntology {
      */
     public Path getShortestPath(Cell start, Room end, boolean disabled) {
 
-        // from the starting Cell, it gets a copy of all reachable passages
-        HashSet<Passage> startPass = start.getRoom().getPassages();
+        long time = Instrumentation.start();
+        try {
+            return findShortestPath(start, end, disabled);
+        } finally {
+            Instrumentation.stop(Instrumentation.Phase.SHORTEST_PATH, time);
+        }
+
+    }
+
+    /**
+     * returns the shortest paths outside for several cells of the same room at once, as
+     * {@link #getShortestPath(Cell, Room, boolean)} with no room would. The costs of a path
+     * are the distance of the cell to the first passage plus costs that only depend on that
+     * passage, so the best exit behind every passage of the room is searched only once and
+     * every cell is only compared with the passages of its room.
+     *
+     * @param room     the room all cells are in
+     * @param starts   the cells, e.g. of persons
+     * @param disabled whether the persons are disabled or not
+     * @return the shortest path for every cell, in the same order
+     */
+    public Path[] getShortestPathsOutside(Room room, Cell[] starts, boolean disabled) {
+
+        long time = Instrumentation.start();
+        try {
+            HashSet<Passage> startPass = getStartPassages(room, true, disabled);
+            HashSet<Passage> endPass = building.getExits();
+            endPass.removeIf(Passage::isClosed);
+            if (disabled) {
+                endPass.removeIf(Passage::isStair);
+            }
+
+            // the best exit behind every passage of the room, and the costs from the passage on
+            Passage[] firsts = startPass.toArray(new Passage[startPass.size()]);
+            Passage[] lasts = new Passage[firsts.length];
+            float[] rest = new float[firsts.length];
+            PackedCells[] cells = new PackedCells[firsts.length];
+            for (int i = 0; i < firsts.length; i++) {
+                rest[i] = Integer.MAX_VALUE;
+                for (Passage p2 : endPass) {
+                    float costs = costsOver(room, 0, firsts[i], p2, disabled);
+                    if (costs < rest[i]) {
+                        rest[i] = costs;
+                        lasts[i] = p2;
+                    }
+                }
+                cells[i] = getPackedCells(firsts[i], room);
+            }
+
+            Path[] paths = new Path[starts.length];
+            for (int c = 0; c < starts.length; c++) {
+                int best = -1;
+                float bestCosts = Integer.MAX_VALUE;
+                for (int i = 0; i < firsts.length; i++) {
+                    if (lasts[i] != null) {
+                        float costs = cells[i].averageDistance(starts[c]) + rest[i];
+                        if (costs < bestCosts) {
+                            bestCosts = costs;
+                            best = i;
+                        }
+                    }
+                }
+                if (best < 0) {
+                    paths[c] = new Path(new LinkedList<>(), Integer.MAX_VALUE);
+                } else {
+                    Path path = disabled ? getDisabledShortestPath(firsts[best], lasts[best]) :
+                            shortestPaths[firsts[best].id][lasts[best].id];
+                    paths[c] = new Path(new LinkedList<>(path.getWay()), bestCosts);
+                }
+            }
+            return paths;
+        } finally {
+            Instrumentation.stop(Instrumentation.Phase.SHORTEST_PATH, time);
+        }
+
+    }
+
+    /**
+     * returns the shortest path for a person that leads through a given passage, which is the
+     * last one of the path. The person might get there faster through other passages.
+     *
+     * @param start    the actual cell of the person
+     * @param end      the passage the path ends with; usually an exit
+     * @param disabled whether the person is disabled or not
+     * @return the shortest path to the passage; its costs are <code>Integer.MAX_VALUE</code> if
+     * the passage can not be reached
+     */
+    public Path getShortestPathTo(Cell start, Passage end, boolean disabled) {
+
+        long time = Instrumentation.start();
+        try {
+            HashSet<Passage> endPass = new HashSet<>();
+            endPass.add(end);
+            return findShortestPath(start, endPass, end.isExit(), disabled);
+        } finally {
+            Instrumentation.stop(Instrumentation.Phase.SHORTEST_PATH, time);
+        }
+
+    }
 
-        if (end == null) {
-            startPass.addAll(start.getRoom().getExits());
+    /**
+     * estimates the costs of the shortest paths of a person through each of the given passages,
+     * like {@link #getShortestPathTo(Cell, Passage, boolean)}, but without building the paths.
+     *
+     * @param start    the actual cell of the person
+     * @param ends     the passages the paths end with
+     * @param leaving  whether the person may leave its room through an exit
+     * @param disabled whether the person is disabled or not
+     * @return the costs for every passage; <code>Integer.MAX_VALUE</code> if it can not be reached
+     */
+    public float[] getCostsTo(Cell start, Passage[] ends, boolean leaving, boolean disabled) {
+
+        float[] costs = new float[ends.length];
+        Arrays.fill(costs, Integer.MAX_VALUE);
+        for (Passage p1 : getStartPassages(start.getRoom(), leaving, disabled)) {
+            float toPassage = getPackedCells(p1, start.getRoom()).averageDistance(start);
+            for (int i = 0; i < ends.length; i++) {
+                if ((!disabled || !ends[i].isStair()) && !ends[i].isClosed()) {
+                    costs[i] = Math.min(costs[i], costsOver(start.getRoom(), toPassage, p1, ends[i], disabled));
+                }
+            }
         }
+        return costs;
+
+    }
+
+    /**
+     * returns the shortest path out of a room that begins with one of its passages and ends with
+     * another passage. Together with {@link #getDistance(Cell, Passage)}, this gives the same costs
+     * as {@link #getShortestPathTo(Cell, Passage, boolean)}, so paths of a room can be kept.
+     *
+     * @param room     the room the path starts in
+     * @param first    the passage of the room the path begins with
+     * @param last     the passage the path ends with
+     * @param disabled whether the path is for a disabled person; then no passage may be a stair
+     * @return the path; its costs do not include the way to the first passage
+     */
+    public Path getShortestPath(Room room, Passage first, Passage last, boolean disabled) {
+
+        Path path = disabled ? getDisabledShortestPath(first, last) : shortestPaths[first.id][last.id];
+        return new Path(new LinkedList<>(path.getWay()), costsOver(room, 0, first, last, disabled));
+
+    }
+
+    /**
+     * @param start   a cell in a room
+     * @param passage a passage of the room
+     * @return the average distance of the cell to the cells of the passage in the room
+     */
+    public float getDistance(Cell start, Passage passage) {
+        return getPackedCells(passage, start.getRoom()).averageDistance(start);
+    }
+
+    private Path findShortestPath(Cell start, Room end, boolean disabled) {
+
         // from the Room we want to go to, it gets all outgoing Passages
         HashSet<Passage> endPass;
         if (end != null) {
@@ -228,17 +499,38 @@ public class PathOntology {
         } else {
             endPass = building.getExits();
         }
+        return findShortestPath(start, endPass, end == null, disabled);
+
+    }
+
+    /**
+     * @return all passages a person can use to leave its room, without stairs if it is disabled
+     */
+    private HashSet<Passage> getStartPassages(Room room, boolean leaving, boolean disabled) {
+
+        // from the starting Room, it gets a copy of all reachable passages
+        HashSet<Passage> startPass = room.getPassages();
+
+        if (leaving) {
+            startPass.addAll(room.getExits());
+        }
+        if (disabled) {
+            startPass.removeIf(Passage::isStair);
+        }
+        startPass.removeIf(Passage::isClosed);
+        return startPass;
+
+    }
+
+    private Path findShortestPath(Cell start, HashSet<Passage> endPass, boolean leaving, boolean disabled) {
+
+        HashSet<Passage> startPass = getStartPassages(start.getRoom(), leaving, disabled);
+        endPass.removeIf(Passage::isClosed);
         if (disabled) {
             HashSet<Passage> copy = new HashSet<>(endPass);
             for (Passage p : copy) {
                 if (p.isStair()) endPass.remove(p);
             }
-            copy = new HashSet<>(startPass);
-            for (Passage p : copy) {
-                if (p.isStair()) startPass.remove(p);
-            }
-
-
         }
 
         // it creates a new dummy path
@@ -246,24 +538,10 @@ public class PathOntology {
 
         // it goes through all passage - passage - combinations
         for (Passage p1 : startPass) {
+            float toPassage = getPackedCells(p1, start.getRoom()).averageDistance(start);
             for (Passage p2 : endPass) {
 
-                // costs are distance of the cell to the cells of the passage + 1
-                // + the costs of the shortest path between the passages
-                float costs = grid.distance(start, p1.getRoomChangingCells(start.getRoom())) +
-                        1;
-
-                if (!p1.equals(p2)) {
-                    if (disabled) {
-                        costs += getDisabledShortestPath(p1, p2).getCosts() + 1;
-                    } else {
-                        costs += shortestPaths[p1.id][p2.id].getCosts() + 1;
-                    }
-                }
-
-                if (!p1.equals(p2) && start.getRoom().equals(p1.getConnected(p2))) {
-                    costs += 1;
-                }
+                float costs = costsOver(start.getRoom(), toPassage, p1, p2, disabled);
 
                 // if those costs are lower than the costs of our temporal Path
                 if (costs < temp.getCosts()) {
@@ -284,6 +562,32 @@ public class PathOntology {
 
     }
 
+    /**
+     * @param room      the room the way starts in
+     * @param toPassage the distance of the start cell to the first passage
+     * @return the costs of the way from the start cell through the first and the last passage
+     */
+    private float costsOver(Room room, float toPassage, Passage p1, Passage p2, boolean disabled) {
+
+        // costs are distance of the cell to the cells of the passage + crossing it
+        // + the costs of the shortest path between the passages
+        float costs = toPassage + p1.getCrossingCost();
+
+        if (!p1.equals(p2)) {
+            if (disabled) {
+                costs += getDisabledShortestPath(p1, p2).getCosts() + p2.getCrossingCost();
+            } else {
+                costs += shortestPaths[p1.id][p2.id].getCosts() + p2.getCrossingCost();
+            }
+        }
+
+        if (!p1.equals(p2) && room.equals(p1.getConnected(p2))) {
+            costs += 1;
+        }
+        return costs;
+
+    }
+
     /**
      * returns the shortest path for a disabled person between two passages
      *
@@ -293,24 +597,321 @@ public class PathOntology {
      */
     private Path getDisabledShortestPath(Passage p1, Passage p2) {
 
-        LinkedList<Passage> allPassagesWithoutStairs = new LinkedList<>(building.getPassages());
-        LinkedList<Passage> copy = new LinkedList<>(allPassagesWithoutStairs);
-        for (Passage passage : copy) {
-            if (passage.isStair()) allPassagesWithoutStairs.remove(passage);
+        int[] indices = getDisabledIndices();
+        return shortestPathsDisabled[indices[p1.id]][indices[p2.id]];
+
+    }
+
+    /**
+     * @return the position of every passage in <code>shortestPathsDisabled</code>, by its id;
+     * -1 for stairs
+     */
+    private int[] getDisabledIndices() {
+
+        if (disabledIndices == null) {
+            LinkedList<Passage> allPassagesWithoutStairs = new LinkedList<>(building.getPassages());
+            LinkedList<Passage> copy = new LinkedList<>(allPassagesWithoutStairs);
+            for (Passage passage : copy) {
+                if (passage.isStair()) allPassagesWithoutStairs.remove(passage);
+            }
+
+            allPassagesWithoutStairs.sort(new Comparator<Passage>() {
+                @Override
+                public int compare(Passage o1, Passage o2) {
+                    return (o1.id - o2.id);
+                }
+            });
+            int[] indices = new int[shortestPaths.length];
+            Arrays.fill(indices, -1);
+            int position = 0;
+            for (Passage passage : allPassagesWithoutStairs) {
+                indices[passage.id] = position++;
+            }
+            disabledIndices = indices;
         }
+        return disabledIndices;
 
-        allPassagesWithoutStairs.sort(new Comparator<Passage>() {
-            @Override
-            public int compare(Passage o1, Passage o2) {
-                return (o1.id - o2.id);
+    }
+
+
+    /**
+     * repairs the paths after a passage was closed: only the paths that lead through it get
+     * longer, so only the passages they start at are calculated again
+     */
+    private void close(Passage closed) {
+
+        repairRows(false, closed, null);
+        if (!closed.isStair()) {
+            repairRows(true, closed, null);
+        }
+
+    }
+
+    /**
+     * repairs the paths after a passage was reopened: a path can only get shorter by leading
+     * through it, so the paths from and to it are calculated and all others are compared with
+     * the way through it
+     */
+    private void reopen(Passage reopened) {
+
+        repairThrough(false, reopened);
+        if (!reopened.isStair()) {
+            repairThrough(true, reopened);
+        }
+
+    }
+
+    /**
+     * repairs the paths after the penalty of a room changed. With a higher penalty, the paths
+     * that lead through the room are calculated again; with a lower one, all paths are compared
+     * with the ways through the passages of the room.
+     */
+    private void changePenalty(Room room, float oldPenalty) {
+
+        if (room.getPenalty() > oldPenalty) {
+            repairRows(false, null, room);
+            repairRows(true, null, room);
+        } else {
+            HashSet<Passage> passages = room.getPassages();
+            passages.addAll(room.getExits());
+            for (Passage passage : passages) {
+                repairThrough(false, passage);
+                if (!passage.isStair()) {
+                    repairThrough(true, passage);
+                }
             }
-        });
-        int posP1 = allPassagesWithoutStairs.indexOf(p1);
-        int posP2 = allPassagesWithoutStairs.indexOf(p2);
-        return shortestPathsDisabled[posP1][posP2];
+        }
+
+    }
+
+    /**
+     * calculates the paths from every passage again that has a path through the closed
+     * passage or the room
+     */
+    private void repairRows(boolean disabled, Passage closed, Room room) {
+
+        Passage[] passages = getMatrixPassages(disabled);
+        Path[][] paths = disabled ? shortestPathsDisabled : shortestPaths;
+
+        for (int i = 0; i < passages.length; i++) {
+            boolean affected = passages[i].equals(closed);
+            for (int j = 0; j < passages.length && !affected; j++) {
+                if (closed != null) {
+                    // the paths to the closed passage itself are handled below
+                    affected = !passages[j].equals(closed) && paths[i][j].contains(closed);
+                } else {
+                    affected = paths[i][j].crosses(room);
+                }
+            }
+            if (affected) {
+                calculateRow(disabled, i);
+            } else if (closed != null) {
+                int c = getMatrixIndex(disabled, closed);
+                paths[i][c] = new Path(new LinkedList<>(Arrays.asList(passages[i], closed)), Integer.MAX_VALUE);
+            }
+        }
 
     }
 
+    /**
+     * calculates the paths from and to a passage again and shortens all other paths that are
+     * shorter through it
+     */
+    private void repairThrough(boolean disabled, Passage passage) {
+
+        Passage[] passages = getMatrixPassages(disabled);
+        Path[][] paths = disabled ? shortestPathsDisabled : shortestPaths;
+        int k = getMatrixIndex(disabled, passage);
+
+        calculateRow(disabled, k);
+        calculateColumn(disabled, k);
+
+        float crossing = getCrossingCost(disabled, passage);
+        for (int i = 0; i < passages.length; i++) {
+            if (i == k || paths[i][k].getCosts() >= Integer.MAX_VALUE) {
+                continue;
+            }
+            for (int j = 0; j < passages.length; j++) {
+                if (j == k || i == j || paths[k][j].getCosts() >= Integer.MAX_VALUE) {
+                    continue;
+                }
+                float costs = paths[i][k].getCosts() + crossing + paths[k][j].getCosts();
+                if (costs < paths[i][j].getCosts()) {
+                    LinkedList<Passage> way = paths[i][k].getWay();
+                    way.removeLast();
+                    way.addAll(paths[k][j].getWay());
+                    paths[i][j] = new Path(way, costs);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * calculates the shortest paths from one passage to all others with the dijkstra-algorithm
+     *
+     * @param s the position of the passage in the matrix
+     */
+    private void calculateRow(boolean disabled, int s) {
+        calculate(disabled, s, false);
+    }
+
+    /**
+     * calculates the shortest paths from all passages to one passage with the dijkstra-algorithm
+     *
+     * @param t the position of the passage in the matrix
+     */
+    private void calculateColumn(boolean disabled, int t) {
+        calculate(disabled, t, true);
+    }
+
+    /**
+     * calculates the shortest paths from or to one passage with the dijkstra-algorithm, over the
+     * passages that are connected through a room. Like in the matrix, a path costs the distances
+     * between its passages and the crossing costs of all passages except the first and the last.
+     *
+     * @param s        the position of the passage in the matrix
+     * @param backward whether the paths lead to the passage instead of from it
+     */
+    private void calculate(boolean disabled, int s, boolean backward) {
+
+        Passage[] passages = getMatrixPassages(disabled);
+        Path[][] paths = disabled ? shortestPathsDisabled : shortestPaths;
+        int n = passages.length;
+
+        float[] costs = new float[n];
+        int[] next = new int[n];
+        boolean[] done = new boolean[n];
+        Arrays.fill(costs, Integer.MAX_VALUE);
+        Arrays.fill(next, -1);
+        if (!passages[s].isClosed()) {
+            costs[s] = 0;
+        }
+
+        while (true) {
+            int u = -1;
+            for (int v = 0; v < n; v++) {
+                if (!done[v] && costs[v] < Integer.MAX_VALUE && (u < 0 || costs[v] < costs[u])) {
+                    u = v;
+                }
+            }
+            if (u < 0) {
+                break;
+            }
+            done[u] = true;
+            float base = costs[u] + (u == s ? 0 : getCrossingCost(disabled, passages[u]));
+            Passage[] neighbours = getNeighbours(passages[u]);
+            for (int k = 0; k < neighbours.length; k++) {
+                int v = getMatrixIndex(disabled, neighbours[k]);
+                if (v < 0 || done[v] || neighbours[k].isClosed()) {
+                    continue;
+                }
+                // the distance between two passages is the same in both directions
+                float distance = neighbourDistances[passages[u].id][k] + neighbourRooms[passages[u].id][k].getPenalty();
+                if (base + distance < costs[v]) {
+                    costs[v] = base + distance;
+                    next[v] = u;
+                }
+            }
+        }
+
+        for (int v = 0; v < n; v++) {
+            LinkedList<Passage> way = new LinkedList<>();
+            if (v == s) {
+                way.add(passages[s]);
+            } else if (next[v] < 0) {
+                way.add(backward ? passages[v] : passages[s]);
+                way.add(backward ? passages[s] : passages[v]);
+            } else {
+                for (int w = v; w >= 0; w = next[w]) {
+                    if (backward) {
+                        way.addLast(passages[w]);
+                    } else {
+                        way.addFirst(passages[w]);
+                    }
+                }
+            }
+            Path path = new Path(way, v == s ? 0 : costs[v]);
+            if (backward) {
+                paths[v][s] = path;
+            } else {
+                paths[s][v] = path;
+            }
+        }
+
+    }
+
+    /**
+     * @return the passages of a matrix, by their position
+     */
+    private Passage[] getMatrixPassages(boolean disabled) {
+
+        if (matrixPassages == null) {
+            matrixPassages = new Passage[shortestPaths.length];
+            int[] indices = getDisabledIndices();
+            matrixPassagesDisabled = new Passage[shortestPathsDisabled.length];
+            for (Passage passage : building.getPassages()) {
+                matrixPassages[passage.id] = passage;
+                if (indices[passage.id] >= 0) {
+                    matrixPassagesDisabled[indices[passage.id]] = passage;
+                }
+            }
+        }
+        return disabled ? matrixPassagesDisabled : matrixPassages;
+
+    }
+
+    /**
+     * @return the position of a passage in a matrix; -1 if it is not part of it
+     */
+    private int getMatrixIndex(boolean disabled, Passage passage) {
+        return disabled ? getDisabledIndices()[passage.id] : passage.id;
+    }
+
+    /**
+     * @return the costs of going through a passage in the middle of a path, as used for the
+     * matrix; the same for all passages of disabled persons
+     */
+    private float getCrossingCost(boolean disabled, Passage passage) {
+        return disabled ? getMatrixPassages(true)[0].getRoomChangingCells().size() / 2 : passage.getCrossingCost();
+    }
+
+    /**
+     * @return all passages that share a room with the passage; their distances to it, without
+     * penalties, and the rooms they share are kept as well
+     */
+    private Passage[] getNeighbours(Passage passage) {
+
+        if (neighbours == null) {
+            neighbours = new Passage[shortestPaths.length][];
+            neighbourDistances = new float[shortestPaths.length][];
+            neighbourRooms = new Room[shortestPaths.length][];
+        }
+        if (neighbours[passage.id] == null) {
+            HashSet<Passage> connected = new HashSet<>();
+            Pair<Room, Room> rooms = passage.getConnectsInOut();
+            for (Room room : Arrays.asList(rooms.getKey(), rooms.getValue())) {
+                if (room != null) {
+                    connected.addAll(room.getPassages());
+                    connected.addAll(room.getExits());
+                }
+            }
+            connected.remove(passage);
+            Passage[] found = connected.toArray(new Passage[connected.size()]);
+            float[] distances = new float[found.length];
+            Room[] connections = new Room[found.length];
+            for (int k = 0; k < found.length; k++) {
+                connections[k] = passage.getConnected(found[k]);
+                distances[k] = getPackedCells(passage, connections[k])
+                        .averageDistance(getPackedCells(found[k], connections[k]));
+            }
+            neighbours[passage.id] = found;
+            neighbourDistances[passage.id] = distances;
+            neighbourRooms[passage.id] = connections;
+        }
+        return neighbours[passage.id];
+
+    }
 
     @Override
     public String toString() {
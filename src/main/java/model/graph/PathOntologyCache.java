@@ -0,0 +1,178 @@
+package model.graph;
+
+import model.graph.building.Building;
+import model.graph.building.Building.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedList;
+
+/**
+ * Stores the precomputed shortest paths of a <code>PathOntology</code> in a sidecar file next
+ * to the JSON file of its building, so that they do not have to be recomputed every time the
+ * building is opened. The file is keyed by the topology hash of the building and is read
+ * with memory-mapped I/O.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see PathOntology
+ * @see Building#getTopologyHash()
+ */
+final class PathOntologyCache {
+
+    /**
+     * the first bytes of every cache file ("PAOC")
+     */
+    private static final int MAGIC = 0x50414f43;
+
+    /**
+     * the version of the file format, has to be increased whenever the format or the way the
+     * paths are calculated changes
+     */
+    private static final int VERSION = 3;
+
+    private PathOntologyCache() {}
+
+    /**
+     * @param building the building the paths belong to
+     * @return the sidecar file of the building, or null if the building was not read from a file
+     */
+    static File getCacheFile(Building building) {
+        if (building.getSourceFile() == null) {
+            return null;
+        }
+        return new File(building.getSourceFile().getPath() + ".paths");
+    }
+
+    /**
+     * reads both path matrices from a cache file.
+     *
+     * @param file     the cache file
+     * @param hash     the topology hash of the building
+     * @param building the building the paths belong to
+     * @return the matrix of all shortest paths at index 0 and the matrix of the shortest paths
+     * for disabled persons at index 1; null if the file does not exist, is damaged or belongs to
+     * a different topology
+     */
+    static Path[][][] read(File file, long hash, Building building) {
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != hash) {
+                return null;
+            }
+
+            Passage[] passages = new Passage[building.getPassages().size()];
+            for (Passage passage : building.getPassages()) {
+                if (passage.id < 0 || passage.id >= passages.length) return null;
+                passages[passage.id] = passage;
+            }
+
+            int passageCount = buffer.getInt();
+            int doorCount = buffer.getInt();
+            if (passageCount != passages.length || doorCount != building.getDoors().size()) {
+                return null;
+            }
+
+            Path[][][] matrices = new Path[2][][];
+            matrices[0] = readMatrix(buffer, passageCount, passages);
+            matrices[1] = readMatrix(buffer, doorCount, passages);
+            if (matrices[0] == null || matrices[1] == null) {
+                return null;
+            }
+            return matrices;
+
+        } catch (IOException | BufferUnderflowException e) {
+            System.err.println("PathOntology cache " + file + " could not be read, recalculating");
+            return null;
+        }
+
+    }
+
+    /**
+     * reads a quadratic matrix of paths
+     *
+     * @return the matrix, or null if a path contains an unknown passage
+     */
+    private static Path[][] readMatrix(MappedByteBuffer buffer, int size, Passage[] passages) {
+
+        Path[][] matrix = new Path[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                float costs = buffer.getFloat();
+                int length = buffer.getInt();
+                LinkedList<Passage> way = new LinkedList<>();
+                for (int k = 0; k < length; k++) {
+                    int id = buffer.getInt();
+                    if (id < 0 || id >= passages.length) return null;
+                    way.add(passages[id]);
+                }
+                matrix[i][j] = new Path(way, costs);
+            }
+        }
+        return matrix;
+
+    }
+
+    /**
+     * writes both path matrices to a cache file. The file is written to a temporary file first
+     * and then moved, so that a damaged file is never left behind.
+     *
+     * @param file                  the cache file
+     * @param hash                  the topology hash of the building
+     * @param shortestPaths         the matrix of all shortest paths
+     * @param shortestPathsDisabled the matrix of the shortest paths for disabled persons
+     */
+    static void write(File file, long hash, Path[][] shortestPaths, Path[][] shortestPathsDisabled) {
+
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(hash);
+                out.writeInt(shortestPaths.length);
+                out.writeInt(shortestPathsDisabled.length);
+                writeMatrix(out, shortestPaths);
+                writeMatrix(out, shortestPathsDisabled);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("PathOntology cache " + file + " could not be written");
+            temp.delete();
+        }
+
+    }
+
+    private static void writeMatrix(DataOutputStream out, Path[][] matrix) throws IOException {
+
+        for (Path[] row : matrix) {
+            for (Path path : row) {
+                LinkedList<Passage> way = path.getWay();
+                out.writeFloat(path.getCosts());
+                out.writeInt(way.size());
+                for (Passage passage : way) {
+                    out.writeInt(passage.id);
+                }
+            }
+        }
+
+    }
+
+}
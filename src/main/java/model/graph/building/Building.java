@@ -1,20 +1,32 @@
 package model.graph.building;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import model.graph.Path;
 import model.graph.evacuation.EvacuationStrategy;
 import model.graph.useragent.Person;
+import model.helper.Instrumentation;
 import model.helper.Pair;
+import model.helper.SimulationRandom;
 import model.graph.building.Grid.*;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringReader;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.Set;
 
 /**
  * Represents a complete building with rooms, passages and people.
@@ -66,6 +78,30 @@ public class Building {
      */
     private transient EvacuationStrategy evacuationStrategy;
 
+    /**
+     * whether the evacuation of the strategy was ended, because all persons left
+     */
+    private transient boolean evacuationStrategyEnded;
+
+    /**
+     * the persons in the building, sorted by their id, and the persons that were not moved yet
+     * in a tick that is ticked in slices, in the order they are moved
+     */
+    private transient PersonOrder personOrder = new PersonOrder();
+
+    /**
+     * the persons in the building whose path leads through a passage next, for every passage
+     * that is the next one of somebody
+     *
+     * @see #getPersonsHeadingTo(Passage)
+     */
+    private transient HashMap<Passage, LinkedHashSet<Person>> personsHeadingTo = new HashMap<>();
+
+    /**
+     * the probability that a person is added at the end of the current tick
+     */
+    private transient float pAddPerson;
+
     /**
      * the states in which the building can be in, namely normal and evacuation mode.
      */
@@ -130,6 +166,54 @@ public class Building {
      */
     private transient HashSet<Cell> entryCells;
 
+    /**
+     * the JSON file this building was read from; null if it was built in code.
+     */
+    private transient File sourceFile;
+
+    /**
+     * the random number generator used for everything that happens in this building,
+     * so that a run can be saved and continued exactly.
+     */
+    private transient SimulationRandom random = new SimulationRandom();
+
+    /**
+     * the number of ticks that have passed in this building.
+     */
+    private transient long tickNumber = 0;
+
+    /**
+     * all listeners that are informed after every tick.
+     *
+     * @see TickListener
+     */
+    private transient LinkedList<TickListener> tickListeners = new LinkedList<>();
+
+    /**
+     * all listeners that are informed when a passage is closed or reopened or the penalty of a
+     * room changes.
+     *
+     * @see HazardListener
+     */
+    private transient LinkedList<HazardListener> hazardListeners = new LinkedList<>();
+
+    /**
+     * all listeners that are informed when a room gets over its capacity or not anymore.
+     *
+     * @see CapacityListener
+     */
+    private transient LinkedList<CapacityListener> capacityListeners = new LinkedList<>();
+
+    /**
+     * the density and flow of persons in every cell, null if they are not tracked.
+     */
+    private transient DensityField densityField;
+
+    /**
+     * measures the evacuation of this building.
+     */
+    private transient EvacuationMetrics metrics = new EvacuationMetrics(this);
+
     /**
      * the <code>Singleton</code> instance of this building.
      */
@@ -175,6 +259,8 @@ public class Building {
 
         this.averageCapacity = 0;
         this.personsInBuilding = new HashSet<>();
+        this.personOrder = new PersonOrder();
+        this.personsHeadingTo = new HashMap<>();
         this.state = STATE.NORMAL;
 
     }
@@ -202,6 +288,8 @@ public class Building {
         this.entryCells = new HashSet<>();
         this.averageCapacity = averageCapacity;
         this.personsInBuilding = new HashSet<>();
+        this.personOrder = new PersonOrder();
+        this.personsHeadingTo = new HashMap<>();
         this.state = STATE.NORMAL;
     }
 
@@ -326,6 +414,111 @@ public class Building {
         return grid.distance(c1, c2);
     }
 
+    /**
+     * @return the JSON file this building was read from, or null if it was not read from a file
+     */
+    public File getSourceFile() {
+        return sourceFile;
+    }
+
+    /**
+     * calculates a hash of the building's topology, that is its size and all its rooms,
+     * doors and stairs. People and the state of the building are not part of it, so the hash
+     * can be used to check whether precomputed data (e.g. the paths of the
+     * <code>PathOntology</code>) still belongs to this building.
+     *
+     * @return a 64-bit FNV-1a hash of the topology
+     */
+    public long getTopologyHash() {
+
+        long hash = 0xcbf29ce484222325L;
+        hash = hashInt(hash, gridSizeX);
+        hash = hashInt(hash, gridSizeY);
+        hash = hashInt(hash, floors);
+
+        LinkedList<Room> sortedRooms = new LinkedList<>(rooms);
+        sortedRooms.sort(Comparator.comparingInt(room -> room.id));
+        for (Room room : sortedRooms) {
+            hash = hashInt(hash, room.id);
+            hash = hashCell(hash, room.beginning);
+            hash = hashCell(hash, room.end);
+        }
+
+        LinkedList<Passage> sortedPassages = new LinkedList<>(getPassages());
+        sortedPassages.sort(Comparator.comparingInt(passage -> passage.id));
+        for (Passage passage : sortedPassages) {
+            hash = hashInt(hash, passage.id);
+            // the cells of a passage are unordered, so their hashes are summed up
+            long cellSum = 0;
+            if (passage.isStair()) {
+                Stair stair = (Stair) passage;
+                hash = hashInt(hash, stair.direction);
+                hash = hashInt(hash, stair.changeFloor ? 1 : 0);
+                for (Cell cell : stair.lowerStairCells) {
+                    cellSum += hashCell(0xcbf29ce484222325L, cell);
+                }
+            } else {
+                for (CellPair cellPair : ((Door) passage).connectedCells) {
+                    cellSum += hashCell(hashCell(0xcbf29ce484222325L, cellPair.getCell1()), cellPair.getCell2());
+                }
+            }
+            hash = hashInt(hash, (int) cellSum);
+            hash = hashInt(hash, (int) (cellSum >>> 32));
+        }
+
+        return hash;
+
+    }
+
+    /**
+     * adds the coordinates of a cell to a FNV-1a hash
+     */
+    private static long hashCell(long hash, Cell cell) {
+        hash = hashInt(hash, cell.getX());
+        hash = hashInt(hash, cell.getY());
+        return hashInt(hash, cell.getFloor());
+    }
+
+    /**
+     * adds the four bytes of an integer to a FNV-1a hash
+     */
+    private static long hashInt(long hash, int value) {
+        for (int i = 0; i < 4; i++) {
+            hash ^= (value >>> (8 * i)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * returns the room with the given id
+     *
+     * @param id the id of the room
+     * @return the room, or null if there is none with this id
+     */
+    public Room getRoom(int id) {
+        for (Room room : rooms) {
+            if (room.id == id) return room;
+        }
+        return null;
+    }
+
+    /**
+     * returns the passage with the given id
+     *
+     * @param id the id of the passage
+     * @return the passage, or null if there is none with this id
+     */
+    public Passage getPassage(int id) {
+        for (Door door : doors) {
+            if (door.id == id) return door;
+        }
+        for (Stair stair : stairs) {
+            if (stair.id == id) return stair;
+        }
+        return null;
+    }
+
     /**
      * adds a new Room to the Building
      *
@@ -349,18 +542,30 @@ public class Building {
     }
 
     /**
-     * creates a Building from a JSON file by using a <code>Gson</code>
+     * creates a Building from a JSON file by streaming through it once
      *
      * @param json the JSON file
      * @return the created Building
      */
     public static Building fromJSON(File json) {
+        return fromJSON(json, true);
+    }
 
-        try {
-            GsonBuilder gb = new GsonBuilder();
-            gb.registerTypeAdapter(Building.class, new BuildingInstanceCreator());
-            Gson gson = gb.create();
-            return gson.fromJson(new FileReader(json), Building.class);
+    /**
+     * creates a Building from a JSON file by streaming through it once
+     *
+     * @param json   the JSON file
+     * @param people whether the persons in the file are added, or only the rooms, doors and
+     *               stairs are read, e.g. to continue the building from a checkpoint
+     * @return the created Building
+     * @see Checkpoint#restore(Building, File)
+     */
+    public static Building fromJSON(File json, boolean people) {
+
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(json)))) {
+            Building building = new BuildingStreamReader(reader, people).read();
+            building.sourceFile = json;
+            return building;
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -378,11 +583,8 @@ public class Building {
      */
     public static Building fromJSON(String json) {
 
-        try {
-            GsonBuilder gb = new GsonBuilder();
-            gb.registerTypeAdapter(Building.class, new BuildingInstanceCreator());
-            Gson gson = gb.create();
-            return gson.fromJson(json, Building.class);
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            return new BuildingStreamReader(reader).read();
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -561,6 +763,7 @@ public class Building {
 
         Stair stair = new Stair(stairCells, changeFloor, direction);
         stairs.add(stair);
+        grid.stairsChanged();
 
         addExit(stair);
 
@@ -579,6 +782,7 @@ public class Building {
 
         Stair stair = new Stair(stairCells, changeFloor, direction, id);
         stairs.add(stair);
+        grid.stairsChanged();
 
         addExit(stair);
 
@@ -596,6 +800,7 @@ public class Building {
             room.addExit(passage);
             exits.add(passage);
             entryCells.addAll(passage.getRoomChangingCells(null));
+            grid.entryCellsChanged();
         }
     }
 
@@ -645,6 +850,123 @@ public class Building {
         return new HashSet<>(entryCells);
     }
 
+    /**
+     * @param disabled whether the cell is for a disabled person, who can not enter on a stair
+     * @return a random free entry cell, null if there is none
+     */
+    public Cell getRandomFreeEntryCell(boolean disabled) {
+        return grid.getFreeEntryCells().getRandomFreeCell(Grid.ENTRY_CELLS,
+                disabled ? Grid.ENTRY_CELLS : Grid.STAIR_ENTRY_CELLS, random);
+    }
+
+
+    /**
+     * puts persons on random free cells of a room, but not on its stairs. Disabled persons can
+     * not use stairs, so they are only put into rooms on the ground floor.
+     *
+     * @param room          the room
+     * @param persons       the number of persons
+     * @param disabledRatio the probability that a person is disabled
+     * @param state         the state of the persons
+     * @return the added persons
+     * @throws IllegalArgumentException if the room has not enough free cells, the ratio is not
+     *                                  between 0 and 1 or persons of a room above the ground
+     *                                  floor should be disabled
+     */
+    public ArrayList<Person> seedRoom(Room room, int persons, float disabledRatio, Person.STATE state) {
+
+        if (disabledRatio > 0 && room.getFloor() != 0) {
+            throw new IllegalArgumentException("Disabled persons can not leave room " + room.getId()
+                    + " on floor " + room.getFloor() + " without stairs");
+        }
+        ArrayList<Person> added = new ArrayList<>(persons);
+        seed(grid.getFreeCellsInRooms(), room.getId(), persons, disabledRatio, state, added);
+        return added;
+
+    }
+
+    /**
+     * puts persons on random free cells in the rooms of a floor, but not on its stairs. Disabled
+     * persons can not use stairs, so they are only put on the ground floor.
+     *
+     * @param floor         the floor
+     * @param persons       the number of persons
+     * @param disabledRatio the probability that a person is disabled
+     * @param state         the state of the persons
+     * @return the added persons
+     * @throws IllegalArgumentException if the floor has not enough free cells, the ratio is not
+     *                                  between 0 and 1 or persons above the ground floor should
+     *                                  be disabled
+     */
+    public ArrayList<Person> seedFloor(int floor, int persons, float disabledRatio, Person.STATE state) {
+
+        if (floor < 0 || floor >= floors) {
+            throw new IllegalArgumentException("The building has no floor " + floor);
+        }
+        if (disabledRatio > 0 && floor != 0) {
+            throw new IllegalArgumentException("Disabled persons can not leave floor " + floor
+                    + " without stairs");
+        }
+        ArrayList<Person> added = new ArrayList<>(persons);
+        seed(grid.getFreeCellsOnFloors(), floor, persons, disabledRatio, state, added);
+        return added;
+
+    }
+
+    /**
+     * puts persons on random free cells of every room, so that the given share of the free cells
+     * of each room is occupied by them afterwards; stairs stay free. Disabled persons can not use
+     * stairs, so only the persons in the rooms on the ground floor may be disabled.
+     *
+     * @param density       the share of the free cells that get a person, between 0 and 1
+     * @param disabledRatio the probability that a person on the ground floor is disabled
+     * @param state         the state of the persons
+     * @return the added persons
+     * @throws IllegalArgumentException if the density or the ratio is not between 0 and 1
+     */
+    public ArrayList<Person> seedRooms(float density, float disabledRatio, Person.STATE state) {
+
+        if (!(density >= 0 && density <= 1)) {
+            throw new IllegalArgumentException("The density has to be between 0 and 1, not " + density);
+        }
+        if (!(disabledRatio >= 0 && disabledRatio <= 1)) {
+            throw new IllegalArgumentException("The ratio has to be between 0 and 1, not " + disabledRatio);
+        }
+        ArrayList<Room> sorted = new ArrayList<>(rooms);
+        sorted.sort(Comparator.comparingInt(Room::getId));
+        FreeCellIndex freeCells = grid.getFreeCellsInRooms();
+        ArrayList<Person> added = new ArrayList<>();
+        for (Room room : sorted) {
+            int persons = Math.round(density * freeCells.getFreeCount(room.getId()));
+            seed(freeCells, room.getId(), persons, room.getFloor() == 0 ? disabledRatio : 0, state, added);
+        }
+        return added;
+
+    }
+
+    /**
+     * puts persons on random free cells of a group of an index
+     */
+    private void seed(FreeCellIndex freeCells, int group, int persons, float disabledRatio, Person.STATE state,
+                      ArrayList<Person> added) {
+
+        if (!(disabledRatio >= 0 && disabledRatio <= 1)) {
+            throw new IllegalArgumentException("The ratio has to be between 0 and 1, not " + disabledRatio);
+        }
+        if (freeCells.getFreeCount(group) < persons) {
+            throw new IllegalArgumentException("Only " + freeCells.getFreeCount(group) + " cells are free, not "
+                    + persons);
+        }
+        for (int i = 0; i < persons; i++) {
+            Cell cell = freeCells.getRandomFreeCell(group, random);
+            boolean disabled = random.nextFloat() < disabledRatio;
+            // the person occupies the cell, which removes it from the free cells
+            Person person = new Person("RandomPerson" + Person.getNextId(), cell, disabled, state, this);
+            addPerson(person);
+            added.add(person);
+        }
+
+    }
 
     /**
      * adds a pre-specified person to the building.
@@ -653,7 +975,14 @@ public class Building {
      * @see Person
      */
     public void addPerson(Person person) {
-        personsInBuilding.add(person);
+        if (personsInBuilding.add(person)) {
+            personOrder.add(person);
+            if (densityField != null) {
+                densityField.enter(person.getIsOnCell());
+            }
+            enterRoom(person.getIsInRoom());
+            headTo(person, person.getNextPassage());
+        }
     }
 
     /**
@@ -663,7 +992,108 @@ public class Building {
      * @see Person
      */
     public void removePerson(Person person) {
-        personsInBuilding.remove(person);
+        if (personsInBuilding.remove(person)) {
+            personOrder.remove(person);
+            if (densityField != null) {
+                densityField.leave(person.getIsOnCell());
+            }
+            leaveRoom(person.getIsInRoom());
+            turnFrom(person, person.getNextPassage());
+            metrics.personRemoved(person);
+        }
+    }
+
+    /**
+     * is called by a person that went from one room to another, so that the rooms count their
+     * persons; persons that are not in the building are not counted
+     *
+     * @param person the person
+     * @param from   the room the person was in, null if it was outside
+     * @param to     the room the person is in now, null if it is outside
+     */
+    public void personChangedRoom(Person person, Room from, Room to) {
+        if (from != to && personsInBuilding.contains(person)) {
+            leaveRoom(from);
+            enterRoom(to);
+        }
+    }
+
+    /**
+     * is called by a person that fell asleep or was woken up, so that it is left out of the ticks
+     * while it sleeps and its stays are counted without it; persons that are not in the building
+     * are not counted
+     *
+     * @param person   the person
+     * @param sleeping whether the person sleeps now
+     * @see PersonOrder
+     */
+    public void personChangedSleep(Person person, boolean sleeping) {
+        if (personsInBuilding.contains(person)) {
+            personOrder.setSleeping(person, sleeping);
+            metrics.personChangedSleep(person, sleeping);
+        }
+    }
+
+    /**
+     * is called by a person whose path leads through another passage next, because it went
+     * through one or got a new path; persons that are not in the building are not counted
+     *
+     * @param person the person
+     * @param from   the passage the path led through next, null if there was none
+     * @param to     the passage the path leads through next now, null if there is none
+     */
+    public void personChangedPassage(Person person, Passage from, Passage to) {
+        if (from != to && personsInBuilding.contains(person)) {
+            turnFrom(person, from);
+            headTo(person, to);
+        }
+    }
+
+    /**
+     * @param passage a passage
+     * @return the persons in the building whose path leads through the passage next, in the
+     * order in which they headed there; a view that must not be iterated while paths change
+     */
+    public Set<Person> getPersonsHeadingTo(Passage passage) {
+        LinkedHashSet<Person> heading = personsHeadingTo.get(passage);
+        return heading == null ? Collections.<Person>emptySet() : Collections.unmodifiableSet(heading);
+    }
+
+    private void headTo(Person person, Passage passage) {
+        if (passage != null) {
+            personsHeadingTo.computeIfAbsent(passage, p -> new LinkedHashSet<>()).add(person);
+        }
+    }
+
+    private void turnFrom(Person person, Passage passage) {
+        if (passage != null) {
+            LinkedHashSet<Person> heading = personsHeadingTo.get(passage);
+            if (heading != null && heading.remove(person) && heading.isEmpty()) {
+                personsHeadingTo.remove(passage);
+            }
+        }
+    }
+
+    private void enterRoom(Room room) {
+        if (room != null) {
+            room.occupancy++;
+            if (room.capacity > 0 && room.occupancy == room.capacity + 1) {
+                for (CapacityListener listener : capacityListeners) {
+                    listener.capacityExceeded(room);
+                }
+            }
+        }
+    }
+
+    private void leaveRoom(Room room) {
+        if (room != null) {
+            room.occupancy--;
+            if (room.capacity > 0 && room.occupancy == room.capacity) {
+                for (CapacityListener listener : capacityListeners) {
+                    listener.capacityRestored(room);
+                }
+            }
+        }
     }
 
 
@@ -674,6 +1104,23 @@ public class Building {
         return new HashSet<>(personsInBuilding);
     }
 
+    /**
+     * @return an unmodifiable view of all the persons in the building; in contrast to
+     * {@link #getPersonsInBuilding()} nothing is copied, so it may only be used on the thread
+     * that ticks the building
+     */
+    public Set<Person> getPersonsInBuildingView() {
+        return Collections.unmodifiableSet(personsInBuilding);
+    }
+
+    /**
+     * @param person a person
+     * @return whether the person is in the building; unlike the view, this creates nothing
+     */
+    public boolean isInBuilding(Person person) {
+        return personsInBuilding.contains(person);
+    }
+
     /**
      * @param number the number to which the average capacity of this building shall be set
      */
@@ -684,62 +1131,401 @@ public class Building {
 
     /**
      * sets the State of the building to evacuation-mode and tells every person to
-     * move outside the building.
+     * move outside the building. A tick that is ticked in slices is finished first.
      *
      * @param es the used EvacuationStrategy, gets called in the Menu depending on user input
      */
     public void startEvacuation(EvacuationStrategy es) {
 
-        this.evacuationStrategy = es;
+        finishTick();
+
+        replaceEvacuationStrategy(es);
 
         this.state = STATE.EVACUATION;
 
         evacuationStrategy.startEvacuation();
 
+        metrics.start();
+
+    }
+
+    /**
+     * ends the evacuation of the former strategy, if there is one, so that it does not stay
+     * registered at this building
+     *
+     * @param es the new evacuation strategy
+     */
+    private void replaceEvacuationStrategy(EvacuationStrategy es) {
+        if (evacuationStrategy != es) {
+            endEvacuationStrategy();
+        }
+        this.evacuationStrategy = es;
+        this.evacuationStrategyEnded = false;
+    }
+
+    /**
+     * ends the evacuation of the current strategy once
+     */
+    private void endEvacuationStrategy() {
+        if (evacuationStrategy != null && !evacuationStrategyEnded) {
+            evacuationStrategyEnded = true;
+            evacuationStrategy.endEvacuation();
+        }
+    }
+
+    /**
+     * @return the measurements of the evacuation of this building
+     */
+    public EvacuationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the actual evacuation Strategy of the building
+     */
+    public EvacuationStrategy getEvacuationStrategy() {
+        return evacuationStrategy;
+    }
+
+    /**
+     * @return the actual state of the building
+     */
+    public STATE getState() {
+        return state;
+    }
+
+    /**
+     * @return the average number of people that should be in the building
+     */
+    public int getAverageCapacity() {
+        return averageCapacity;
+    }
+
+    /**
+     * @return the random number generator of this building; everything random that happens
+     * in this building has to use it
+     */
+    public SimulationRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * @return the number of ticks that have passed in this building
+     */
+    public long getTickNumber() {
+        return tickNumber;
+    }
+
+    /**
+     * @return the density and flow of persons in every cell, null if they are not tracked
+     */
+    public DensityField getDensityField() {
+        return densityField;
+    }
+
+    /**
+     * @param tracked whether the density and flow of persons in every cell are tracked from now on
+     */
+    public void setDensityTracked(boolean tracked) {
+        if (!tracked) {
+            densityField = null;
+        } else if (densityField == null) {
+            densityField = new DensityField(this, 20);
+        }
+    }
+
+    /**
+     * @param listener a listener that is informed after every tick
+     */
+    public void addTickListener(TickListener listener) {
+        tickListeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener that will not be informed anymore
+     */
+    public void removeTickListener(TickListener listener) {
+        tickListeners.remove(listener);
+    }
+
+    /**
+     * @param listener a listener that is informed when a room gets over its capacity or not
+     *                 anymore
+     */
+    public void addCapacityListener(CapacityListener listener) {
+        capacityListeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener that will not be informed anymore
+     */
+    public void removeCapacityListener(CapacityListener listener) {
+        capacityListeners.remove(listener);
+    }
+
+    /**
+     * @param listener a listener that is informed when passages are closed or reopened or the
+     *                 penalty of a room changes
+     */
+    public void addHazardListener(HazardListener listener) {
+        hazardListeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener that will not be informed anymore
+     */
+    public void removeHazardListener(HazardListener listener) {
+        hazardListeners.remove(listener);
+    }
+
+    /**
+     * closes a passage, e.g. a door that got stuck; nobody can pass it until it is reopened.
+     * Persons whose path leads through the passage look for a new path.
+     *
+     * @param passage the passage of this building
+     */
+    public void closePassage(Passage passage) {
+
+        if (passage.closed) {
+            return;
+        }
+        passage.closed = true;
+        if (passage.isStair()) {
+            grid.stairsChanged();
+        }
+        for (HazardListener listener : hazardListeners) {
+            listener.passageClosed(passage);
+        }
+        for (Person person : personsInBuilding) {
+            Path path = person.getPath();
+            if (path != null && path.contains(passage)) {
+                person.setPath(null);
+            }
+        }
+
+    }
+
+    /**
+     * opens a closed passage again. Persons keep their paths.
+     *
+     * @param passage the passage of this building
+     */
+    public void reopenPassage(Passage passage) {
+
+        if (!passage.closed) {
+            return;
+        }
+        passage.closed = false;
+        if (passage.isStair()) {
+            grid.stairsChanged();
+        }
+        for (HazardListener listener : hazardListeners) {
+            listener.passageReopened(passage);
+        }
+
+    }
+
+    /**
+     * sets how many persons may be in a room. Persons do not choose a full room as their goal
+     * anymore; the room is not closed, though, so it can still get over its capacity, e.g.
+     * during an evacuation.
+     *
+     * @param room     the room of this building
+     * @param capacity the number of persons, 0 if there is no limit
+     * @see CapacityListener
+     */
+    public void setRoomCapacity(Room room, int capacity) {
+
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The capacity has to be at least 0, not " + capacity);
+        }
+        boolean wasOver = room.isOverCapacity();
+        room.capacity = capacity;
+        if (!wasOver && room.isOverCapacity()) {
+            for (CapacityListener listener : capacityListeners) {
+                listener.capacityExceeded(room);
+            }
+        } else if (wasOver && !room.isOverCapacity()) {
+            for (CapacityListener listener : capacityListeners) {
+                listener.capacityRestored(room);
+            }
+        }
+
+    }
+
+    /**
+     * sets the penalty of a room, e.g. because it fills with smoke: every path through the room
+     * costs this many steps more. Persons whose path leads through the room look for a new path.
+     *
+     * @param room    the room of this building
+     * @param penalty the additional steps, 0 for none
+     */
+    public void setRoomPenalty(Room room, float penalty) {
+
+        if (penalty < 0 || Float.isNaN(penalty) || Float.isInfinite(penalty)) {
+            throw new IllegalArgumentException("The penalty has to be a positive number");
+        }
+        float oldPenalty = room.penalty;
+        if (oldPenalty == penalty) {
+            return;
+        }
+        room.penalty = penalty;
+        for (HazardListener listener : hazardListeners) {
+            listener.roomPenaltyChanged(room, oldPenalty);
+        }
+        if (penalty > oldPenalty) {
+            for (Person person : personsInBuilding) {
+                Path path = person.getPath();
+                if (path != null && path.crosses(room)) {
+                    person.setPath(null);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * @return whether a passage is closed or a room has a penalty
+     */
+    public boolean hasHazards() {
+
+        for (Passage passage : getPassages()) {
+            if (passage.closed) {
+                return true;
+            }
+        }
+        for (Room room : rooms) {
+            if (room.penalty > 0) {
+                return true;
+            }
+        }
+        return false;
+
+    }
+
+    /**
+     * sets the state of a building that is continued from a checkpoint. Only used by
+     * <code>Checkpoint</code>; the persons have to be added before.
+     *
+     * @param tickNumber      the number of ticks that had passed
+     * @param randomState     the state of the random number generator
+     * @param state           the state of the building
+     * @param averageCapacity the average number of people in the building
+     * @param es              the evacuation strategy, if the building was being evacuated
+     * @param metrics         the state of the measurements of the evacuation, null if none were
+     *                        saved
+     * @see Checkpoint
+     */
+    void restore(long tickNumber, long randomState, STATE state, int averageCapacity, EvacuationStrategy es,
+                 JsonObject metrics) {
+        this.tickNumber = tickNumber;
+        this.random.setState(randomState);
+        this.state = state;
+        this.averageCapacity = averageCapacity;
+        replaceEvacuationStrategy(es);
+        personOrder.endTick();
+        if (metrics != null) {
+            this.metrics.resume(metrics);
+        } else if (state == STATE.EVACUATION) {
+            // the measurements start again at the checkpoint
+            this.metrics.start();
+        }
+    }
+
+
+    /**
+     * in every step, this method tells every person inside to update itself,
+     * and randomly adds persons so that in average, the number of persons stays constant.
+     * If a tick was begun with {@link #tickSliced(long)}, it is finished instead.
+     */
+    public void tick() {
+
+        long tickStart = Instrumentation.start();
+        if (!personOrder.isTicking()) {
+            beginTick();
+        }
+        movePersons(0);
+        endTick(tickStart);
+    }
+
+    /**
+     * ticks the building in slices, so that a tick that takes long does not stop everything
+     * else, e.g. the window. Every call moves the persons of the current tick for about the given
+     * time; the tick is done once all persons moved. The persons are moved in the same order
+     * and with the same random numbers as by {@link #tick()}, so the result is the same. While a
+     * tick is not done, the building should not be changed; methods that have to see whole ticks
+     * finish it first.
+     *
+     * @param budgetNanos how long the persons may be moved, in nanoseconds
+     * @return whether the tick is done
+     */
+    public boolean tickSliced(long budgetNanos) {
+
+        long sliceStart = Instrumentation.start();
+        long deadline = System.nanoTime() + budgetNanos;
+        if (!personOrder.isTicking()) {
+            beginTick();
+        }
+        boolean done = movePersons(deadline);
+        Instrumentation.stop(Instrumentation.Phase.TICK_SLICE, sliceStart);
+        if (done) {
+            endTick(0);
+        }
+        return done;
     }
 
     /**
-     * @return the actual evacuation Strategy of the building
+     * @return whether a tick was begun with {@link #tickSliced(long)} and is not done yet
      */
-    public EvacuationStrategy getEvacuationStrategy() {
-        return evacuationStrategy;
+    public boolean isTickInProgress() {
+        return personOrder.isTicking();
     }
 
     /**
-     * @return the actual state of the building
+     * moves all persons that were not moved yet in a tick that was begun with
+     * {@link #tickSliced(long)}; does nothing between two ticks
      */
-    public STATE getState() {
-        return state;
+    public void finishTick() {
+        if (personOrder.isTicking()) {
+            tick();
+        }
     }
 
-
     /**
-     * in every step, this method tells every person inside to update itself,
-     * and randomly adds persons so that in average, the number of persons stays constant
+     * begins a tick: unblocks the cells, puts the persons in a random order and moves the first
+     * one that may leave the building. Sleeping persons are left out of the order, their stays
+     * are counted at once, see {@link PersonOrder}
      */
-    public void tick() {
+    private void beginTick() {
+
+        Instrumentation.count(Instrumentation.Counter.TICKS);
+        tickNumber++;
 
         float diminish = 0.3f;
         float pDeletePerson = 1;
-        float pAddPerson = 0;
+        pAddPerson = 0;
         if (averageCapacity != 0) {
             pDeletePerson = ((float) personsInBuilding.size() / (float) (averageCapacity * 2)) * diminish;
             pAddPerson = diminish - pDeletePerson;
         }
         // cells are blocked if people move diagonally - must be unblocked after every step
+        long start = Instrumentation.start();
         grid.unblock();
-        LinkedList<Person> personCopy = new LinkedList<>(personsInBuilding);
-        // persons who are in the building the longest are first
-        //personCopy.sort(Comparator.comparingInt(Person::getId));
-        Collections.shuffle(personCopy);
+        Instrumentation.stop(Instrumentation.Phase.UNBLOCK, start);
+        start = Instrumentation.start();
+        // the persons are kept sorted by their id, so that the order only depends on the random
+        // number generator
+        personOrder.shuffle(random);
+        Instrumentation.stop(Instrumentation.Phase.SHUFFLE, start);
+        metrics.tickBegun();
         // lets persons leave the building with some earlier defined probability
         // <code>pDeletePerson</code>
         while (true) {
-            if (!personCopy.isEmpty()) {
-                Person person = personCopy.poll();
+            if (personOrder.hasNext()) {
+                Person person = personOrder.next();
                 if ((person.getState() != Person.STATE.GOTOROOM || person.getGoalRoom() != null)
                         && person.getState() != Person.STATE.STANDSTILL) {
-                    person.tick(Math.random() < pDeletePerson);
+                    person.tick(random.nextDouble() < pDeletePerson);
                     break;
                 } else {
                     person.tick();
@@ -748,13 +1534,52 @@ public class Building {
                 break;
             }
         }
-        // tells every other person to update as well
-        for (Person person : personCopy) {
-            person.tick();
+    }
+
+    /**
+     * tells every other person of the tick to update as well
+     *
+     * @param deadline the time at which the persons stop moving, as by {@link System#nanoTime()};
+     *                 0 if all of them are moved
+     * @return whether all persons of the tick moved
+     */
+    private boolean movePersons(long deadline) {
+
+        while (personOrder.hasNext()) {
+            personOrder.next().tick();
+            if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                return !personOrder.hasNext();
+            }
         }
+        return true;
+    }
+
+    /**
+     * ends a tick after all persons moved
+     *
+     * @param tickStart the value returned by {@link Instrumentation#start()} when the tick began
+     */
+    private void endTick(long tickStart) {
+
+        personOrder.endTick();
         //if the state is not evacuation-state, add a person
         if (state != STATE.EVACUATION && state != STATE.STANDSTILL) {
+            long start = Instrumentation.start();
             addRandomPerson(pAddPerson);
+            Instrumentation.stop(Instrumentation.Phase.SPAWN, start);
+        } else if (state == STATE.EVACUATION && evacuationStrategy != null) {
+            evacuationStrategy.tick();
+        }
+
+        metrics.tick();
+        if (metrics.isFinished()) {
+            endEvacuationStrategy();
+        }
+
+        Instrumentation.stop(Instrumentation.Phase.TICK, tickStart);
+
+        for (TickListener listener : tickListeners) {
+            listener.ticked(this);
         }
     }
 
@@ -770,24 +1595,14 @@ public class Building {
 
         float pDisabled = 0.2f;
 
-        if (Math.random() < pAdd) {
-
-            if (Math.random() < pDisabled) {
-                for (Cell cell : getEntryCells()) {
-                    if (!cell.isOccupied() && !cell.isStair()) {
-                        addPerson(new Person(true, this));
-                        break;
-                    }
-                }
-            } else {
+        if (random.nextDouble() < pAdd) {
 
-
-                for (Cell cell : getEntryCells()) {
-                    if (!cell.isOccupied()) {
-                        addPerson(new Person(false, this));
-                        break;
-                    }
-                }
+            boolean disabled = random.nextDouble() < pDisabled;
+            FreeCellIndex freeEntryCells = grid.getFreeEntryCells();
+            if (freeEntryCells.getFreeCount(Grid.ENTRY_CELLS) > 0
+                    || !disabled && freeEntryCells.getFreeCount(Grid.STAIR_ENTRY_CELLS) > 0) {
+                addPerson(new Person(disabled, this));
+                Instrumentation.count(Instrumentation.Counter.SPAWNED_PERSONS);
             }
         }
     }
@@ -814,6 +1629,13 @@ public class Building {
          */
         transient boolean exit;
 
+        /**
+         * states whether this Passage can not be passed at the moment
+         *
+         * @see Building#closePassage(Passage)
+         */
+        transient boolean closed;
+
         /**
          * constructor that only assigns the ID
          */
@@ -845,6 +1667,13 @@ public class Building {
             return exit;
         }
 
+        /**
+         * @return if the passage can not be passed at the moment
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
         /**
          * @return if the passage is a stair - returns default value false.
          * @see Stair overwrites the method
@@ -853,6 +1682,22 @@ public class Building {
             return false;
         }
 
+        /**
+         * @return the costs of going through this passage, in steps
+         * @see Stair#getCrossingCost()
+         */
+        public float getCrossingCost() {
+            return 1;
+        }
+
+        /**
+         * @return how many persons can go through this passage side by side, at least 1
+         * @see Door#getWidth()
+         */
+        public int getWidth() {
+            return Math.max(1, getRoomChangingCells().size() / 2);
+        }
+
         /**
          * @return the Pair of rooms that are connected by this Passage;
          * one of the Rooms may be null in case of this being an exit
@@ -1010,6 +1855,14 @@ public class Building {
 
         }
 
+        /**
+         * @return the number of cell-pairs of this door
+         */
+        @Override
+        public int getWidth() {
+            return connectedCells.size();
+        }
+
         @Override
         public Pair<Room, Room> getConnectsInOut() {
             return connectsInOut;
@@ -1087,6 +1940,12 @@ public class Building {
      */
     public class Stair extends Passage {
 
+        /**
+         * the costs of climbing from one floor to the next, in steps, in addition to the
+         * steps over the stair itself
+         */
+        public static final int FLOOR_CHANGE_COST = 4;
+
         /**
          * rooms that are connected by this stair; one might be null if it's an Exit
          */
@@ -1305,6 +2164,21 @@ public class Building {
             return true;
         }
 
+        /**
+         * @return whether this stair leads from one floor to the next
+         */
+        public boolean isChangingFloor() {
+            return changeFloor;
+        }
+
+        /**
+         * @return one step, and the costs of climbing to the next floor if this stair changes the floor
+         */
+        @Override
+        public float getCrossingCost() {
+            return changeFloor ? 1 + FLOOR_CHANGE_COST : 1;
+        }
+
         public boolean isInFloor(int floor) {
 
             if (connectsInOut.getKey() != null) {
@@ -1441,6 +2315,21 @@ public class Building {
          */
         private transient HashSet<Cell> cells;
 
+        /**
+         * the steps every path through this room costs more, e.g. because of smoke
+         *
+         * @see Building#setRoomPenalty(Room, float)
+         */
+        private transient float penalty;
+
+        /**
+         * the number of persons in this room and how many may be in it, 0 if there is no limit
+         *
+         * @see Building#setRoomCapacity(Room, int)
+         */
+        private transient int occupancy;
+        private transient int capacity;
+
 
         /**
          * constructor that builds up a new Room. Also assigns room to each cell that belongs
@@ -1550,10 +2439,52 @@ public class Building {
             return end;
         }
 
+        /**
+         * @return the steps every path through this room costs more
+         */
+        public float getPenalty() {
+            return penalty;
+        }
+
+        /**
+         * @return the number of persons in this room
+         */
+        public int getOccupancy() {
+            return occupancy;
+        }
+
+        /**
+         * @return how many persons may be in this room, 0 if there is no limit
+         */
+        public int getCapacity() {
+            return capacity;
+        }
+
+        /**
+         * @return whether no more persons may enter this room
+         */
+        public boolean isFull() {
+            return capacity > 0 && occupancy >= capacity;
+        }
+
+        /**
+         * @return whether more persons are in this room than may be
+         */
+        public boolean isOverCapacity() {
+            return capacity > 0 && occupancy > capacity;
+        }
+
         public int getFloor() {
             return floor;
         }
 
+        /**
+         * @return the unique id of this room
+         */
+        public int getId() {
+            return id;
+        }
+
         /**
          * @return all the passages that are connected to this room
          */
@@ -1728,4 +2659,410 @@ public class Building {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * reads a Building from JSON in one single pass with a <code>JsonReader</code>, without building
+     * a tree of the whole document first. Rooms, doors and stairs are added to the building as soon
+     * as they are read. Persons need the complete building, so they are created directly if they come
+     * after the rooms, doors and stairs; if they come before, they are kept in a compact form until
+     * the building is complete.
+     * Accepts the same schema as the <code>BuildingInstanceCreator</code>.
+     *
+     * @see BuildingInstanceCreator
+     */
+    public static class BuildingStreamReader {
+
+        /**
+         * the reader the building is read from
+         */
+        private final JsonReader reader;
+
+        /**
+         * whether the persons are read, or skipped
+         */
+        private final boolean people;
+
+        /**
+         * the building that is read; null as long as the header was not completely read
+         */
+        private Building building;
+
+        private String name;
+        private int gridSizeX = -1;
+        private int gridSizeY = -1;
+        private int floors = -1;
+
+        private boolean roomsRead = false;
+        private boolean doorsRead = false;
+        private boolean stairsRead = false;
+
+        /**
+         * names of the persons that were read before the building was complete
+         */
+        private ArrayList<String> pendingNames = new ArrayList<>();
+
+        /**
+         * x, y, floor and disabled-flag of the persons that were read before the building was
+         * complete, four entries per person
+         */
+        private int[] pendingPersons = new int[64];
+
+        /**
+         * @param reader the reader the building will be read from
+         */
+        public BuildingStreamReader(JsonReader reader) {
+            this(reader, true);
+        }
+
+        /**
+         * @param reader the reader the building will be read from
+         * @param people whether the persons are read, or skipped
+         */
+        public BuildingStreamReader(JsonReader reader, boolean people) {
+            this.reader = reader;
+            this.people = people;
+            // malformed files, e.g. with comments or unquoted names, are rejected
+            reader.setLenient(false);
+        }
+
+        /**
+         * reads the complete building including its persons, unless they are skipped
+         *
+         * @return the building
+         * @throws IOException        if the underlying reader fails
+         * @throws JsonParseException if the JSON does not describe a building
+         */
+        public Building read() throws IOException {
+
+            boolean withPeople = false;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                switch (key) {
+                    case "name":
+                        name = reader.nextString();
+                        break;
+                    case "gridSizeX":
+                        gridSizeX = reader.nextInt();
+                        break;
+                    case "gridSizeY":
+                        gridSizeY = reader.nextInt();
+                        break;
+                    case "floors":
+                        floors = reader.nextInt();
+                        break;
+                    case "rooms":
+                        createBuilding();
+                        readArray(key);
+                        break;
+                    case "doors":
+                        createBuilding();
+                        readArray(key);
+                        break;
+                    case "stairs":
+                        createBuilding();
+                        readArray(key);
+                        break;
+                    case "personsInBuilding":
+                        createBuilding();
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else if (!people) {
+                            reader.skipValue();
+                        } else {
+                            withPeople = true;
+                            readArray(key);
+                        }
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            createBuilding();
+            building.updateNumbers();
+
+            for (int i = 0; i < pendingNames.size(); i++) {
+                building.addPerson(new Person(pendingNames.get(i),
+                        building.getCell(pendingPersons[4 * i], pendingPersons[4 * i + 1], pendingPersons[4 * i + 2]),
+                        pendingPersons[4 * i + 3] == 1, Person.STATE.STANDSTILL, building));
+            }
+            pendingNames = null;
+            pendingPersons = null;
+
+            if (withPeople) {
+                building.state = STATE.STANDSTILL;
+            }
+
+            return building;
+
+        }
+
+        /**
+         * creates the building as soon as its name, size and number of floors are known
+         *
+         * @throws JsonParseException if one of them is missing
+         */
+        private void createBuilding() {
+            if (building == null) {
+                if (name == null || gridSizeX < 0 || gridSizeY < 0 || floors < 0) {
+                    throw new JsonParseException("name, gridSizeX, gridSizeY and floors have to be " +
+                            "specified before rooms, doors, stairs and persons");
+                }
+                building = new Building(name, gridSizeX, gridSizeY, floors);
+            }
+        }
+
+        /**
+         * reads one of the arrays of the building and adds every element directly
+         *
+         * @param key the name of the array
+         */
+        private void readArray(String key) throws IOException {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                switch (key) {
+                    case "rooms":
+                        readRoom();
+                        break;
+                    case "doors":
+                        readDoor();
+                        break;
+                    case "stairs":
+                        readStair();
+                        break;
+                    default:
+                        readPerson();
+                }
+            }
+            reader.endArray();
+
+            if (key.equals("rooms")) roomsRead = true;
+            if (key.equals("doors")) doorsRead = true;
+            if (key.equals("stairs")) stairsRead = true;
+            if (!key.equals("personsInBuilding") && roomsRead && doorsRead && stairsRead) {
+                building.updateNumbers();
+            }
+        }
+
+        /**
+         * reads a room and adds it to the building
+         */
+        private void readRoom() throws IOException {
+            int id = -1;
+            Cell beginning = null;
+            Cell end = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        id = reader.nextInt();
+                        break;
+                    case "beginning":
+                        beginning = readCell();
+                        break;
+                    case "end":
+                        end = readCell();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (id < 0 || beginning == null || end == null) {
+                throw new JsonParseException("Room is not completely specified");
+            }
+            building.addRoom(beginning, end, id);
+        }
+
+        /**
+         * reads a door and adds it to the building
+         */
+        private void readDoor() throws IOException {
+            int id = -1;
+            HashSet<CellPair> connectedCells = new HashSet<>();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        id = reader.nextInt();
+                        break;
+                    case "connectedCells":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            Cell cell1 = null;
+                            Cell cell2 = null;
+                            reader.beginObject();
+                            while (reader.hasNext()) {
+                                switch (reader.nextName()) {
+                                    case "cell1":
+                                        cell1 = readCell();
+                                        break;
+                                    case "cell2":
+                                        cell2 = readCell();
+                                        break;
+                                    default:
+                                        reader.skipValue();
+                                }
+                            }
+                            reader.endObject();
+                            if (cell1 == null || cell2 == null) {
+                                throw new JsonParseException("CellPair is not completely specified");
+                            }
+                            connectedCells.add(building.getGrid().getCellPair(cell1, cell2));
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (id < 0) {
+                throw new JsonParseException("Door has no id");
+            }
+            building.addDoor(connectedCells, id);
+        }
+
+        /**
+         * reads a stair and adds it to the building
+         */
+        private void readStair() throws IOException {
+            int id = -1;
+            int direction = 0;
+            boolean changeFloor = false;
+            LinkedList<Cell> stairCells = new LinkedList<>();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        id = reader.nextInt();
+                        break;
+                    case "direction":
+                        direction = reader.nextInt();
+                        break;
+                    case "changeFloor":
+                        changeFloor = reader.nextBoolean();
+                        break;
+                    case "lowerStairCells":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            stairCells.add(readCell());
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (id < 0 || direction == 0) {
+                throw new JsonParseException("Stair is not completely specified");
+            }
+            building.addStair(stairCells, changeFloor, direction, id);
+        }
+
+        /**
+         * reads a person and adds it to the building, or keeps it until the building is complete
+         */
+        private void readPerson() throws IOException {
+            String name = null;
+            boolean isDisabled = false;
+            int x = 0, y = 0, floor = 0;
+            boolean cellRead = false;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "name":
+                        name = reader.nextString();
+                        break;
+                    case "isDisabled":
+                        isDisabled = reader.nextBoolean();
+                        break;
+                    case "isOnCell":
+                        int[] coordinates = readCoordinates();
+                        x = coordinates[0];
+                        y = coordinates[1];
+                        floor = coordinates[2];
+                        cellRead = true;
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (name == null || !cellRead) {
+                throw new JsonParseException("Person is not completely specified");
+            }
+
+            if (roomsRead && doorsRead && stairsRead) {
+                building.addPerson(new Person(name, building.getCell(x, y, floor), isDisabled,
+                        Person.STATE.STANDSTILL, building));
+            } else {
+                int index = 4 * pendingNames.size();
+                if (index + 4 > pendingPersons.length) {
+                    pendingPersons = Arrays.copyOf(pendingPersons, pendingPersons.length * 2);
+                }
+                pendingPersons[index] = x;
+                pendingPersons[index + 1] = y;
+                pendingPersons[index + 2] = floor;
+                pendingPersons[index + 3] = isDisabled ? 1 : 0;
+                pendingNames.add(name);
+            }
+        }
+
+        /**
+         * reads a cell of the building
+         */
+        private Cell readCell() throws IOException {
+            int[] coordinates = readCoordinates();
+            return building.getCell(coordinates[0], coordinates[1], coordinates[2]);
+        }
+
+        /**
+         * reads the coordinates of a cell
+         *
+         * @return x, y and floor of the cell
+         */
+        private int[] readCoordinates() throws IOException {
+            int[] coordinates = new int[3];
+            boolean[] found = new boolean[3];
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "x":
+                        coordinates[0] = reader.nextInt();
+                        found[0] = true;
+                        break;
+                    case "y":
+                        coordinates[1] = reader.nextInt();
+                        found[1] = true;
+                        break;
+                    case "floor":
+                        coordinates[2] = reader.nextInt();
+                        found[2] = true;
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (!found[0] || !found[1] || !found[2]) {
+                throw new JsonParseException("Cell is not completely specified");
+            }
+            return coordinates;
+        }
+    }
+
+}
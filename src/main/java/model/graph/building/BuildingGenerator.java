@@ -0,0 +1,304 @@
+package model.graph.building;
+
+import model.graph.building.Grid.*;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+
+/**
+ * Creates buildings of any size from a few parameters, only through <code>addRoom</code>,
+ * <code>addDoor</code> and <code>addStair</code>, so that they are built exactly like a
+ * building that is drawn by hand. There are four layouts:
+ * <ul>
+ * <li>an office grid: square offices, each one connected to its neighbours</li>
+ * <li>a corridor with rooms on both sides</li>
+ * <li>a tower: office grids on top of each other, connected by stair cores in the corner offices</li>
+ * <li>a stadium: blocks of seats around a pitch, reached through a concourse around them</li>
+ * </ul>
+ * All created buildings are empty.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ */
+public final class BuildingGenerator {
+
+    /**
+     * the width of doors between rooms, in cells
+     */
+    private static final int DOOR_WIDTH = 2;
+
+    private BuildingGenerator() {}
+
+    /**
+     * creates an office building on one floor. Two doors in the middle of the upper and lower
+     * wall and two stairs in the middle of the left and right wall lead outside.
+     *
+     * @param roomsX   the number of offices in x-direction
+     * @param roomsY   the number of offices in y-direction
+     * @param roomSize the width and height of an office, at least 4
+     * @return the building
+     */
+    public static Building office(int roomsX, int roomsY, int roomSize) {
+        return tower(1, roomsX, roomsY, roomSize, 0);
+    }
+
+    /**
+     * creates an office building for a number of persons, which fill about half of it
+     *
+     * @param persons the number of persons
+     * @return the building
+     */
+    public static Building officeFor(int persons) {
+
+        // one office per side for every 20 persons per side, at least 2 and at most 16
+        int rooms = (int) Math.max(2, Math.min(16, Math.round(Math.sqrt(persons) / 20)));
+        int roomSize = (int) Math.max(6, Math.ceil(Math.sqrt(2.0 * persons) / rooms));
+        return office(rooms, rooms, roomSize);
+
+    }
+
+    /**
+     * creates an office building with several floors. Every floor is an office grid; the
+     * floors are connected by stairs in the corner offices, which lead up one floor each and
+     * alternate between two places, so that they do not overlap. Only the ground floor has exits.
+     *
+     * @param floors     the number of floors
+     * @param roomsX     the number of offices in x-direction on every floor
+     * @param roomsY     the number of offices in y-direction on every floor
+     * @param roomSize   the width and height of an office, at least 7 if there is more than one floor
+     * @param stairCores the number of corner offices with stairs, between 1 and 4; ignored if
+     *                   there is only one floor
+     * @return the building
+     */
+    public static Building tower(int floors, int roomsX, int roomsY, int roomSize, int stairCores) {
+
+        if (floors < 1 || roomsX < 1 || roomsY < 1 || roomSize < 4) {
+            throw new IllegalArgumentException("A building needs at least one floor and offices of size 4");
+        }
+        if (floors > 1 && (roomSize < 7 || stairCores < 1 || stairCores > 4
+                || stairCores > Math.min(roomsX, 2) * Math.min(roomsY, 2))) {
+            throw new IllegalArgumentException("Every stair core needs its own corner office of size 7");
+        }
+
+        int sizeX = roomsX * roomSize;
+        int sizeY = roomsY * roomSize;
+        String name = floors == 1 ? "Office " + roomsX + "x" + roomsY : "Tower " + floors + "x" + roomsX + "x" + roomsY;
+        Building building = new Building(name, sizeX, sizeY, floors);
+
+        for (int f = 0; f < floors; f++) {
+            for (int i = 0; i < roomsX; i++) {
+                for (int j = 0; j < roomsY; j++) {
+                    addRoom(building, i * roomSize, j * roomSize, roomSize, roomSize, f);
+                }
+            }
+        }
+
+        int middle = roomSize / 2 - DOOR_WIDTH / 2;
+        for (int f = 0; f < floors; f++) {
+            for (int i = 0; i < roomsX; i++) {
+                for (int j = 0; j < roomsY; j++) {
+                    int x = i * roomSize, y = j * roomSize;
+                    if (i + 1 < roomsX) {
+                        addDoor(building, x + roomSize - 1, y + middle, f, DIR.RIGHT, DOOR_WIDTH);
+                    }
+                    if (j + 1 < roomsY) {
+                        addDoor(building, x + middle, y + roomSize - 1, f, DIR.DOWN, DOOR_WIDTH);
+                    }
+                }
+            }
+        }
+
+        // the corners of the building, in the order the stair cores are added
+        int[][] corners = {{0, 0}, {roomsX - 1, roomsY - 1}, {roomsX - 1, 0}, {0, roomsY - 1}};
+        for (int f = 0; f + 1 < floors; f++) {
+            int offset = f % 2 == 0 ? 1 : 4;
+            for (int c = 0; c < stairCores; c++) {
+                int x = corners[c][0] * roomSize + offset;
+                int y = corners[c][1] * roomSize + roomSize - 3;
+                LinkedList<Cell> stairCells = new LinkedList<>();
+                stairCells.add(building.getCell(x, y, f));
+                stairCells.add(building.getCell(x + 1, y, f));
+                building.addStair(stairCells, true, DIR.UP);
+            }
+        }
+
+        int centerX = (roomsX / 2) * roomSize + middle;
+        int centerY = (roomsY / 2) * roomSize + middle;
+        addDoor(building, centerX, 0, 0, DIR.UP, 1);
+        addDoor(building, centerX, sizeY - 1, 0, DIR.DOWN, 1);
+        addExitStair(building, -1, centerY, DIR.RIGHT);
+        addExitStair(building, sizeX, centerY, DIR.LEFT);
+
+        return building;
+
+    }
+
+    /**
+     * creates a building that consists of a long corridor with rooms on both sides. Every room
+     * has a door to the corridor, and neighbouring rooms are connected as well. Both ends of
+     * the corridor lead outside, one through a door, one over a stair.
+     *
+     * @param roomsPerSide  the number of rooms on each side of the corridor
+     * @param roomWidth     the width of a room, at least 3
+     * @param roomDepth     the depth of a room, at least 3
+     * @param corridorWidth the width of the corridor, at least 2
+     * @return the building
+     */
+    public static Building corridor(int roomsPerSide, int roomWidth, int roomDepth, int corridorWidth) {
+
+        if (roomsPerSide < 1 || roomWidth < 3 || roomDepth < 3 || corridorWidth < 2) {
+            throw new IllegalArgumentException("Rooms need a size of 3 and the corridor a width of 2");
+        }
+
+        int sizeX = roomsPerSide * roomWidth;
+        int sizeY = 2 * roomDepth + corridorWidth;
+        Building building = new Building("Corridor " + roomsPerSide + "x2", sizeX, sizeY, 1);
+
+        addRoom(building, 0, roomDepth, sizeX, corridorWidth, 0);
+        for (int i = 0; i < roomsPerSide; i++) {
+            addRoom(building, i * roomWidth, 0, roomWidth, roomDepth, 0);
+            addRoom(building, i * roomWidth, roomDepth + corridorWidth, roomWidth, roomDepth, 0);
+        }
+
+        int middle = roomWidth / 2 - DOOR_WIDTH / 2;
+        for (int i = 0; i < roomsPerSide; i++) {
+            int x = i * roomWidth;
+            addDoor(building, x + middle, roomDepth - 1, 0, DIR.DOWN, DOOR_WIDTH);
+            addDoor(building, x + middle, roomDepth + corridorWidth, 0, DIR.UP, DOOR_WIDTH);
+            if (i + 1 < roomsPerSide) {
+                addDoor(building, x + roomWidth - 1, roomDepth / 2, 0, DIR.RIGHT, 1);
+                addDoor(building, x + roomWidth - 1, roomDepth + corridorWidth + roomDepth / 2, 0, DIR.RIGHT, 1);
+            }
+        }
+
+        addDoor(building, 0, roomDepth, 0, DIR.LEFT, corridorWidth);
+        addExitStair(building, sizeX, roomDepth, DIR.LEFT);
+
+        return building;
+
+    }
+
+    /**
+     * creates a stadium: a square pitch with blocks of seats on all four sides, surrounded by a
+     * concourse. The pitch does not belong to the building. Every block has a door to the
+     * concourse and to its neighbours on the same side; the concourse is split into four parts
+     * that are connected at the corners and has exits in its outer walls.
+     *
+     * @param blocksPerSide  the number of blocks on the upper and lower side
+     * @param blockWidth     the width of a block, at least 3
+     * @param blockDepth     the depth of a block, at least 3
+     * @param concourseWidth the width of the concourse, at least 2
+     * @param exitsPerSide   the number of exits in every outer wall, at least 1
+     * @return the building
+     */
+    public static Building stadium(int blocksPerSide, int blockWidth, int blockDepth, int concourseWidth,
+                                   int exitsPerSide) {
+
+        if (blocksPerSide < 1 || blockWidth < 3 || blockDepth < 3 || concourseWidth < 2 || exitsPerSide < 1) {
+            throw new IllegalArgumentException("Blocks need a size of 3, the concourse a width of 2 and one exit");
+        }
+        // the pitch has to be at least one block wide
+        int inner = Math.max(blocksPerSide * blockWidth, 2 * blockDepth + blockWidth);
+        int size = inner + 2 * concourseWidth;
+        if (exitsPerSide > size / 2) {
+            throw new IllegalArgumentException("Too many exits for the size of the stadium");
+        }
+        Building building = new Building("Stadium " + blocksPerSide, size, size, 1);
+        int c = concourseWidth;
+
+        // the concourse: the upper and lower part span the whole width
+        addRoom(building, 0, 0, size, c, 0);
+        addRoom(building, 0, size - c, size, c, 0);
+        addRoom(building, 0, c, c, inner, 0);
+        addRoom(building, size - c, c, c, inner, 0);
+        addDoor(building, 0, c - 1, 0, DIR.DOWN, c);
+        addDoor(building, size - c, c - 1, 0, DIR.DOWN, c);
+        addDoor(building, 0, size - c - 1, 0, DIR.DOWN, c);
+        addDoor(building, size - c, size - c - 1, 0, DIR.DOWN, c);
+
+        // the blocks on the upper and lower side, the last one takes what is left
+        for (int i = 0; i < blocksPerSide; i++) {
+            int x = c + i * blockWidth;
+            int width = i + 1 < blocksPerSide ? blockWidth : inner - i * blockWidth;
+            addRoom(building, x, c, width, blockDepth, 0);
+            addRoom(building, x, size - c - blockDepth, width, blockDepth, 0);
+        }
+        int middle = blockWidth / 2 - DOOR_WIDTH / 2;
+        for (int i = 0; i < blocksPerSide; i++) {
+            int x = c + i * blockWidth;
+            addDoor(building, x + middle, c, 0, DIR.UP, DOOR_WIDTH);
+            addDoor(building, x + middle, size - c - 1, 0, DIR.DOWN, DOOR_WIDTH);
+            if (i + 1 < blocksPerSide) {
+                addDoor(building, x + blockWidth - 1, c + blockDepth / 2, 0, DIR.RIGHT, 1);
+                addDoor(building, x + blockWidth - 1, size - c - 1 - blockDepth / 2, 0, DIR.RIGHT, 1);
+            }
+        }
+
+        // the blocks on the left and right side, between the upper and lower blocks
+        int sideLength = inner - 2 * blockDepth;
+        int sideBlocks = Math.max(1, sideLength / blockWidth);
+        for (int i = 0; i < sideBlocks; i++) {
+            int y = c + blockDepth + i * blockWidth;
+            int height = i + 1 < sideBlocks ? blockWidth : sideLength - i * blockWidth;
+            addRoom(building, c, y, blockDepth, height, 0);
+            addRoom(building, size - c - blockDepth, y, blockDepth, height, 0);
+            addDoor(building, c, y + height / 2, 0, DIR.LEFT, 1);
+            addDoor(building, size - c - 1, y + height / 2, 0, DIR.RIGHT, 1);
+        }
+
+        // the exits, spread evenly over the outer walls
+        for (int e = 0; e < exitsPerSide; e++) {
+            int position = (int) ((e + 0.5) * size / exitsPerSide);
+            position = Math.min(Math.max(position, 1), size - 2);
+            addDoor(building, position, 0, 0, DIR.UP, 1);
+            addDoor(building, position, size - 1, 0, DIR.DOWN, 1);
+            if (position >= c && position < size - c) {
+                addDoor(building, 0, position, 0, DIR.LEFT, 1);
+                addDoor(building, size - 1, position, 0, DIR.RIGHT, 1);
+            }
+        }
+
+        return building;
+
+    }
+
+    /**
+     * adds a room given by its upper left corner and its size
+     */
+    private static void addRoom(Building building, int x, int y, int width, int height, int floor) {
+        building.addRoom(building.getCell(x, y, floor), building.getCell(x + width - 1, y + height - 1, floor));
+    }
+
+    /**
+     * adds a door that leads from a row of cells to the cells next to them in one direction.
+     * The door is as wide as given, along the wall, starting at the given cell.
+     *
+     * @param direction the direction in which the door is crossed; one of UP, DOWN, LEFT and RIGHT
+     */
+    private static void addDoor(Building building, int x, int y, int floor, int direction, int width) {
+
+        boolean vertical = direction == DIR.LEFT || direction == DIR.RIGHT;
+        HashSet<CellPair> connectedCells = new HashSet<>();
+        for (int i = 0; i < width; i++) {
+            Cell cell = vertical ? building.getCell(x, y + i, floor) : building.getCell(x + i, y, floor);
+            connectedCells.add(building.getGrid().getCellPair(cell, cell.getNextCell(direction, 0)));
+        }
+        building.addDoor(connectedCells);
+
+    }
+
+    /**
+     * adds an exit stair of two cells outside the building that leads up into the building
+     *
+     * @param direction the direction into the building; LEFT or RIGHT
+     */
+    private static void addExitStair(Building building, int x, int y, int direction) {
+
+        LinkedList<Cell> stairCells = new LinkedList<>();
+        stairCells.add(building.getCell(x, y, 0));
+        stairCells.add(building.getCell(x, y + 1, 0));
+        building.addStair(stairCells, false, direction);
+
+    }
+
+}
@@ -0,0 +1,33 @@
+package model.graph.building;
+
+import model.graph.building.Building.Room;
+
+/**
+ * A listener that is informed by a <code>Building</code> when more persons are in a room than
+ * its capacity allows, and when they are not anymore. Is called on the thread that ticks the
+ * building, while the person that entered or left the room is moved.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see Building#addCapacityListener(CapacityListener)
+ * @see Building#setRoomCapacity(Room, int)
+ */
+public interface CapacityListener {
+
+    /**
+     * is called after a person entered a room that was full, or after the capacity of a room was
+     * lowered below the number of persons in it
+     *
+     * @param room the room
+     */
+    void capacityExceeded(Room room);
+
+    /**
+     * is called after a room that was over its capacity is not anymore, because a person left
+     * it or its capacity changed
+     *
+     * @param room the room
+     */
+    void capacityRestored(Room room);
+
+}
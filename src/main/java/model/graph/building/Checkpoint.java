@@ -0,0 +1,655 @@
+package model.graph.building;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.graph.Path;
+import model.graph.building.Building.*;
+import model.graph.building.Grid.*;
+import model.graph.evacuation.EvacuationStrategies;
+import model.graph.evacuation.EvacuationStrategy;
+import model.graph.useragent.Person;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+
+/**
+ * A snapshot of the dynamic state of a <code>Building</code>: all persons with their positions,
+ * states, goals, the rest of their paths and the cells sleeping persons wait for; the closed
+ * passages, the penalties and capacities of the rooms; the state of the random number
+ * generator; the evacuation strategy with its own state, the measurements of the evacuation
+ * and the density field, if it is tracked. The snapshot is taken on the thread that ticks the
+ * building and only consists of copies, so that it can be written on another thread while the
+ * simulation goes on. A building with the same topology can be continued from a written
+ * checkpoint exactly.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see CheckpointWriter
+ */
+public final class Checkpoint {
+
+    /**
+     * the version of the file format
+     */
+    private static final int VERSION = 2;
+
+    private final String buildingName;
+    private final long topologyHash;
+    private final long tickNumber;
+    private final long randomState;
+    private final int nextPersonId;
+    private final Building.STATE state;
+    private final int averageCapacity;
+    /**
+     * the class of the evacuation strategy and its name in the registry, and its state; null if
+     * there is none
+     */
+    private final String evacuationStrategy;
+    private final String strategyName;
+    private final JsonObject strategyState;
+
+    /**
+     * the measurements of the evacuation, null if none is measured, and the density field, null
+     * if it is not tracked
+     */
+    private final JsonObject metrics;
+    private final JsonArray density;
+
+    /**
+     * the ids of the closed passages, and the ids and penalties and capacities of the rooms that
+     * have one
+     */
+    private final int[] closedPassages;
+    private final int[] penaltyRooms;
+    private final float[] penalties;
+    private final int[] capacityRooms;
+    private final int[] capacities;
+
+    private final int[] ids;
+    private final String[] names;
+    private final boolean[] disabled;
+    private final Person.STATE[] states;
+    /**
+     * x, y and floor of the cell a person is on and of the cell it was on; six entries per person
+     */
+    private final int[] cells;
+    /**
+     * the id of the goal room of every person, -1 if it has none
+     */
+    private final int[] goalRooms;
+    /**
+     * the ids of the passages in the path of every person; null if a person has no path
+     */
+    private final int[][] paths;
+    private final float[] pathCosts;
+    /**
+     * x, y and floor of the cells every sleeping person waits for; null if a person is awake
+     */
+    private final int[][] awaitedCells;
+
+    /**
+     * takes a snapshot of the building
+     *
+     * @param building     the building
+     * @param topologyHash the topology hash of the building
+     * @throws IllegalStateException if a tick of the building is ticked in slices and not done
+     */
+    Checkpoint(Building building, long topologyHash) {
+
+        if (building.isTickInProgress()) {
+            throw new IllegalStateException("A checkpoint can not be taken in the middle of a tick");
+        }
+        this.buildingName = building.name;
+        this.topologyHash = topologyHash;
+        this.tickNumber = building.getTickNumber();
+        this.randomState = building.getRandom().getState();
+        this.nextPersonId = Person.getNextId();
+        this.state = building.getState();
+        this.averageCapacity = building.getAverageCapacity();
+        EvacuationStrategy strategy = building.getEvacuationStrategy();
+        this.evacuationStrategy = strategy == null ? null : strategy.getClass().getName();
+        this.strategyName = strategy == null ? null : strategy.getName();
+        this.strategyState = strategy == null ? null : strategy.getState();
+        this.metrics = building.getMetrics().getState();
+        this.density = building.getDensityField() == null ? null : building.getDensityField().getState();
+
+        ArrayList<Passage> closed = new ArrayList<>();
+        for (Passage passage : building.getPassages()) {
+            if (passage.isClosed()) {
+                closed.add(passage);
+            }
+        }
+        closed.sort(Comparator.comparingInt(passage -> passage.id));
+        closedPassages = new int[closed.size()];
+        for (int i = 0; i < closedPassages.length; i++) {
+            closedPassages[i] = closed.get(i).id;
+        }
+        ArrayList<Room> rooms = new ArrayList<>(building.getRooms());
+        rooms.sort(Comparator.comparingInt(Room::getId));
+        ArrayList<Room> penalised = new ArrayList<>();
+        ArrayList<Room> limited = new ArrayList<>();
+        for (Room room : rooms) {
+            if (room.getPenalty() > 0) {
+                penalised.add(room);
+            }
+            if (room.getCapacity() > 0) {
+                limited.add(room);
+            }
+        }
+        penaltyRooms = new int[penalised.size()];
+        penalties = new float[penalised.size()];
+        for (int i = 0; i < penaltyRooms.length; i++) {
+            penaltyRooms[i] = penalised.get(i).getId();
+            penalties[i] = penalised.get(i).getPenalty();
+        }
+        capacityRooms = new int[limited.size()];
+        capacities = new int[limited.size()];
+        for (int i = 0; i < capacityRooms.length; i++) {
+            capacityRooms[i] = limited.get(i).getId();
+            capacities[i] = limited.get(i).getCapacity();
+        }
+
+        LinkedList<Person> persons = new LinkedList<>(building.getPersonsInBuilding());
+        persons.sort((p1, p2) -> Integer.compare(p1.getId(), p2.getId()));
+        int size = persons.size();
+        ids = new int[size];
+        names = new String[size];
+        disabled = new boolean[size];
+        states = new Person.STATE[size];
+        cells = new int[6 * size];
+        goalRooms = new int[size];
+        paths = new int[size][];
+        pathCosts = new float[size];
+        awaitedCells = new int[size][];
+
+        int i = 0;
+        for (Person person : persons) {
+            ids[i] = person.getId();
+            names[i] = person.getName();
+            disabled[i] = person.isDisabled();
+            states[i] = person.getState();
+            Cell isOnCell = person.getIsOnCell();
+            Cell wasOnCell = person.getWasOnCell();
+            cells[6 * i] = isOnCell.getX();
+            cells[6 * i + 1] = isOnCell.getY();
+            cells[6 * i + 2] = isOnCell.getFloor();
+            cells[6 * i + 3] = wasOnCell.getX();
+            cells[6 * i + 4] = wasOnCell.getY();
+            cells[6 * i + 5] = wasOnCell.getFloor();
+            goalRooms[i] = person.getGoalRoom() == null ? -1 : person.getGoalRoom().id;
+            Path path = person.getPath();
+            if (path != null) {
+                LinkedList<Passage> way = path.getWay();
+                paths[i] = new int[way.size()];
+                int j = 0;
+                for (Passage passage : way) {
+                    paths[i][j++] = passage.id;
+                }
+                pathCosts[i] = path.getCosts();
+            }
+            Cell[] awaited = person.getAwaitedCells();
+            if (awaited != null) {
+                awaitedCells[i] = new int[3 * awaited.length];
+                for (int j = 0; j < awaited.length; j++) {
+                    awaitedCells[i][3 * j] = awaited[j].getX();
+                    awaitedCells[i][3 * j + 1] = awaited[j].getY();
+                    awaitedCells[i][3 * j + 2] = awaited[j].getFloor();
+                }
+            }
+            i++;
+        }
+
+    }
+
+    /**
+     * takes a snapshot of a building on the calling thread
+     *
+     * @param building the building
+     * @return the snapshot, which can be written on any thread
+     */
+    public static Checkpoint take(Building building) {
+        return new Checkpoint(building, building.getTopologyHash());
+    }
+
+    /**
+     * @return the tick at which this snapshot was taken
+     */
+    public long getTickNumber() {
+        return tickNumber;
+    }
+
+    /**
+     * streams this snapshot to a file. The snapshot is written to a temporary file first
+     * and then moved, so that the file always contains a complete checkpoint.
+     *
+     * @param file the file the checkpoint will be written to
+     * @throws IOException if the file could not be written
+     */
+    public void write(File file) throws IOException {
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(new FileWriter(temp)))) {
+
+            writer.beginObject();
+            writer.name("version").value(VERSION);
+            writer.name("building").value(buildingName);
+            writer.name("topologyHash").value(topologyHash);
+            writer.name("tick").value(tickNumber);
+            writer.name("randomState").value(randomState);
+            writer.name("nextPersonId").value(nextPersonId);
+            writer.name("state").value(state.name());
+            writer.name("averageCapacity").value(averageCapacity);
+            writer.name("evacuationStrategy").value(evacuationStrategy);
+            writer.name("strategyName").value(strategyName);
+            Gson gson = new Gson();
+            if (strategyState != null) {
+                writer.name("strategyState");
+                gson.toJson(strategyState, writer);
+            }
+            if (metrics != null) {
+                writer.name("metrics");
+                gson.toJson(metrics, writer);
+            }
+            if (density != null) {
+                writer.name("density");
+                gson.toJson(density, writer);
+            }
+
+            writer.name("closedPassages").beginArray();
+            for (int passage : closedPassages) {
+                writer.value(passage);
+            }
+            writer.endArray();
+            writer.name("rooms").beginArray();
+            for (int r = 0; r < penaltyRooms.length; r++) {
+                writer.beginObject();
+                writer.name("id").value(penaltyRooms[r]);
+                writer.name("penalty").value(penalties[r]);
+                writer.endObject();
+            }
+            for (int r = 0; r < capacityRooms.length; r++) {
+                writer.beginObject();
+                writer.name("id").value(capacityRooms[r]);
+                writer.name("capacity").value(capacities[r]);
+                writer.endObject();
+            }
+            writer.endArray();
+
+            writer.name("persons").beginArray();
+            for (int i = 0; i < ids.length; i++) {
+                writer.beginObject();
+                writer.name("id").value(ids[i]);
+                writer.name("name").value(names[i]);
+                writer.name("isDisabled").value(disabled[i]);
+                writer.name("state").value(states[i].name());
+                writer.name("isOnCell");
+                writeCell(writer, cells, 6 * i);
+                writer.name("wasOnCell");
+                writeCell(writer, cells, 6 * i + 3);
+                writer.name("goalRoom").value(goalRooms[i]);
+                if (paths[i] != null) {
+                    writer.name("path").beginObject();
+                    writer.name("way").beginArray();
+                    for (int passage : paths[i]) {
+                        writer.value(passage);
+                    }
+                    writer.endArray();
+                    writer.name("costs").value(pathCosts[i]);
+                    writer.endObject();
+                }
+                if (awaitedCells[i] != null) {
+                    writer.name("awaitedCells").beginArray();
+                    for (int j = 0; j < awaitedCells[i].length; j += 3) {
+                        writeCell(writer, awaitedCells[i], j);
+                    }
+                    writer.endArray();
+                }
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    }
+
+    private static void writeCell(JsonWriter writer, int[] cells, int index) throws IOException {
+        writer.beginObject();
+        writer.name("x").value(cells[index]);
+        writer.name("y").value(cells[index + 1]);
+        writer.name("floor").value(cells[index + 2]);
+        writer.endObject();
+    }
+
+    /**
+     * continues a building from a checkpoint file. The building has to have the same topology
+     * as the building the checkpoint was taken from, and must not contain any persons yet. The
+     * passages are closed and the rooms get their penalties and capacities before the persons
+     * are added, so that they keep their paths; the evacuation strategy is resumed with its
+     * state afterwards.
+     *
+     * @param building the building, e.g. freshly read from its JSON file
+     * @param file     the checkpoint file
+     * @throws IOException              if the file could not be read
+     * @throws IllegalArgumentException if the checkpoint belongs to another topology
+     * @throws IllegalStateException    if the building already contains persons
+     */
+    public static void restore(Building building, File file) throws IOException {
+
+        if (!building.getPersonsInBuilding().isEmpty()) {
+            throw new IllegalStateException("A checkpoint can only be restored into an empty building");
+        }
+
+        long tick = 0;
+        long randomState = 0;
+        int nextPersonId = 0;
+        Building.STATE state = Building.STATE.NORMAL;
+        int averageCapacity = 0;
+        String strategy = null;
+        String strategyName = null;
+        JsonObject strategyState = null;
+        JsonObject metrics = null;
+        JsonArray density = null;
+        ArrayList<Integer> closedPassages = new ArrayList<>();
+        ArrayList<Room> penaltyRooms = new ArrayList<>();
+        ArrayList<Float> penalties = new ArrayList<>();
+        ArrayList<Room> capacityRooms = new ArrayList<>();
+        ArrayList<Integer> capacities = new ArrayList<>();
+        ArrayList<Person> persons = new ArrayList<>();
+        ArrayList<Cell[]> awaitedCells = new ArrayList<>();
+        JsonParser parser = new JsonParser();
+
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(file)))) {
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "version":
+                        if (reader.nextInt() != VERSION) {
+                            throw new JsonParseException("Unknown checkpoint version");
+                        }
+                        break;
+                    case "topologyHash":
+                        if (reader.nextLong() != building.getTopologyHash()) {
+                            throw new IllegalArgumentException("Checkpoint belongs to another building");
+                        }
+                        break;
+                    case "tick":
+                        tick = reader.nextLong();
+                        break;
+                    case "randomState":
+                        randomState = reader.nextLong();
+                        break;
+                    case "nextPersonId":
+                        nextPersonId = reader.nextInt();
+                        break;
+                    case "state":
+                        state = Building.STATE.valueOf(reader.nextString());
+                        break;
+                    case "averageCapacity":
+                        averageCapacity = reader.nextInt();
+                        break;
+                    case "evacuationStrategy":
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else {
+                            strategy = reader.nextString();
+                        }
+                        break;
+                    case "strategyName":
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else {
+                            strategyName = reader.nextString();
+                        }
+                        break;
+                    case "strategyState":
+                        strategyState = parser.parse(reader).getAsJsonObject();
+                        break;
+                    case "metrics":
+                        metrics = parser.parse(reader).getAsJsonObject();
+                        break;
+                    case "density":
+                        density = parser.parse(reader).getAsJsonArray();
+                        break;
+                    case "closedPassages":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            closedPassages.add(reader.nextInt());
+                        }
+                        reader.endArray();
+                        break;
+                    case "rooms":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            JsonObject room = parser.parse(reader).getAsJsonObject();
+                            Room r = building.getRoom(room.get("id").getAsInt());
+                            if (r == null) throw new JsonParseException("Unknown room " + room.get("id"));
+                            if (room.has("penalty")) {
+                                penaltyRooms.add(r);
+                                penalties.add(room.get("penalty").getAsFloat());
+                            }
+                            if (room.has("capacity")) {
+                                capacityRooms.add(r);
+                                capacities.add(room.get("capacity").getAsInt());
+                            }
+                        }
+                        reader.endArray();
+                        break;
+                    case "persons":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            Cell[][] awaited = new Cell[1][];
+                            persons.add(readPerson(reader, building, awaited));
+                            awaitedCells.add(awaited[0]);
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+        }
+
+        for (int id : closedPassages) {
+            Passage passage = building.getPassage(id);
+            if (passage == null) throw new JsonParseException("Unknown passage " + id);
+            building.closePassage(passage);
+        }
+        for (int r = 0; r < penaltyRooms.size(); r++) {
+            building.setRoomPenalty(penaltyRooms.get(r), penalties.get(r));
+        }
+        for (int r = 0; r < capacityRooms.size(); r++) {
+            building.setRoomCapacity(capacityRooms.get(r), capacities.get(r));
+        }
+        for (Person person : persons) {
+            building.addPerson(person);
+        }
+        for (int i = 0; i < persons.size(); i++) {
+            if (awaitedCells.get(i) != null) {
+                persons.get(i).sleepUntilLeft(awaitedCells.get(i));
+            }
+        }
+
+        Person.reserveIds(nextPersonId);
+        EvacuationStrategy es = createStrategy(strategyName, strategy, building);
+        building.restore(tick, randomState, state, averageCapacity, es, metrics);
+        if (density != null) {
+            building.setDensityTracked(true);
+            building.getDensityField().resume(density);
+        }
+        if (es != null) {
+            es.resumeEvacuation(strategyState == null ? new JsonObject() : strategyState);
+        }
+
+    }
+
+    /**
+     * reads a person and creates it exactly as it was saved
+     *
+     * @param awaited gets the cells the person waits for at its first place, null if it is awake
+     */
+    private static Person readPerson(JsonReader reader, Building building, Cell[][] awaited) throws IOException {
+
+        int id = -1;
+        String name = null;
+        boolean isDisabled = false;
+        Person.STATE state = null;
+        Cell isOnCell = null;
+        Cell wasOnCell = null;
+        Room goalRoom = null;
+        Path path = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = reader.nextInt();
+                    break;
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "isDisabled":
+                    isDisabled = reader.nextBoolean();
+                    break;
+                case "state":
+                    state = Person.STATE.valueOf(reader.nextString());
+                    break;
+                case "isOnCell":
+                    isOnCell = readCell(reader, building);
+                    break;
+                case "wasOnCell":
+                    wasOnCell = readCell(reader, building);
+                    break;
+                case "goalRoom":
+                    int roomId = reader.nextInt();
+                    if (roomId >= 0) {
+                        goalRoom = building.getRoom(roomId);
+                        if (goalRoom == null) throw new JsonParseException("Unknown room " + roomId);
+                    }
+                    break;
+                case "path":
+                    path = readPath(reader, building);
+                    break;
+                case "awaitedCells":
+                    ArrayList<Cell> cells = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        cells.add(readCell(reader, building));
+                    }
+                    reader.endArray();
+                    awaited[0] = cells.toArray(new Cell[cells.size()]);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id < 0 || name == null || state == null || isOnCell == null) {
+            throw new JsonParseException("Person is not completely specified");
+        }
+        if (wasOnCell == null) {
+            wasOnCell = isOnCell;
+        }
+        return new Person(id, name, isOnCell, wasOnCell, isDisabled, state, goalRoom, path, building);
+
+    }
+
+    private static Path readPath(JsonReader reader, Building building) throws IOException {
+
+        LinkedList<Passage> way = new LinkedList<>();
+        float costs = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "way":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        int passageId = reader.nextInt();
+                        Passage passage = building.getPassage(passageId);
+                        if (passage == null) throw new JsonParseException("Unknown passage " + passageId);
+                        way.add(passage);
+                    }
+                    reader.endArray();
+                    break;
+                case "costs":
+                    costs = (float) reader.nextDouble();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Path(way, costs);
+
+    }
+
+    private static Cell readCell(JsonReader reader, Building building) throws IOException {
+
+        int x = 0, y = 0, floor = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "x":
+                    x = reader.nextInt();
+                    break;
+                case "y":
+                    y = reader.nextInt();
+                    break;
+                case "floor":
+                    floor = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return building.getCell(x, y, floor);
+
+    }
+
+    /**
+     * creates the evacuation strategy of a checkpoint without starting it, as the persons
+     * already have their paths; by its name in the registry, or by its class if it was not
+     * created by the registry
+     */
+    private static EvacuationStrategy createStrategy(String name, String className, Building building) {
+
+        if (name != null && EvacuationStrategies.get(name) != null) {
+            return EvacuationStrategies.create(name, building);
+        }
+        if (className == null) {
+            return null;
+        }
+        try {
+            return Class.forName(className).asSubclass(EvacuationStrategy.class)
+                    .getConstructor(Building.class).newInstance(building);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalStateException("EvacuationStrategy " + className + " can not be created", e);
+        }
+
+    }
+
+}
@@ -0,0 +1,109 @@
+package model.graph.building;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a <code>Checkpoint</code> of a building every few ticks, so that long runs can be
+ * continued after a crash. The snapshot is taken on the ticking thread, the file is written
+ * on a separate thread, so that the simulation is not stalled. If the previous checkpoint is
+ * still being written when the next one is due, the next one is skipped.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see Checkpoint
+ * @see Building#addTickListener(TickListener)
+ */
+public class CheckpointWriter implements TickListener {
+
+    /**
+     * the file the newest checkpoint is written to
+     */
+    private final File file;
+
+    /**
+     * the number of ticks between two checkpoints
+     */
+    private final int interval;
+
+    /**
+     * the thread that writes the checkpoints
+     */
+    private final ExecutorService executor;
+
+    /**
+     * the checkpoint that is currently written, null if none was written yet
+     */
+    private Future<?> pending;
+
+    /**
+     * the building the topology hash belongs to; it is only calculated once per building
+     */
+    private Building hashedBuilding;
+    private long topologyHash;
+
+    /**
+     * @param file     the file the newest checkpoint is written to
+     * @param interval the number of ticks between two checkpoints
+     */
+    public CheckpointWriter(File file, int interval) {
+
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval has to be positive");
+        }
+        this.file = file;
+        this.interval = interval;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CheckpointWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    }
+
+    @Override
+    public void ticked(Building building) {
+
+        if (building.getTickNumber() % interval != 0) {
+            return;
+        }
+        if (pending != null && !pending.isDone()) {
+            System.err.println("Checkpoint of tick " + building.getTickNumber() +
+                    " skipped, the last one is still being written");
+            return;
+        }
+        if (hashedBuilding != building) {
+            hashedBuilding = building;
+            topologyHash = building.getTopologyHash();
+        }
+
+        Checkpoint checkpoint = new Checkpoint(building, topologyHash);
+        pending = executor.submit(() -> {
+            try {
+                checkpoint.write(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+
+    }
+
+    /**
+     * waits until the last checkpoint is written and stops the writing thread
+     */
+    public void close() {
+
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+}
@@ -27,7 +27,12 @@ public class DIR {
 
     public static int getRandomDirection() {
 
-        Random r = new Random();
+        return getRandomDirection(new Random());
+
+    }
+
+    public static int getRandomDirection(Random r) {
+
         return DIRECTIONS[r.nextInt(9)];
 
     }
@@ -0,0 +1,217 @@
+package model.graph.building;
+
+import com.google.gson.JsonArray;
+import model.graph.building.Grid.Cell;
+import model.graph.useragent.Person;
+
+import java.util.Arrays;
+
+/**
+ * The density and the flow of persons for every cell of a building, kept up to date while
+ * the building ticks. The density of a cell is the share of the recent ticks it was occupied,
+ * the flow is the number of persons that entered it per tick; both forget the past
+ * exponentially with the given half-life.
+ * <p>
+ * Only cells that are entered or left are updated, at the moment it happens: the time that
+ * passed since the last update of a cell is applied at once. Reading a value applies it the
+ * same way without changing the cell, so the field costs nothing for cells nobody moves on.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see Building#setDensityTracked(boolean)
+ */
+public class DensityField {
+
+    private final Building building;
+
+    private final Grid grid;
+
+    /**
+     * the number of ticks after which a value is halved
+     */
+    private final int halfLife;
+
+    /**
+     * how much of a value is left after a number of ticks; after more ticks nothing is left
+     */
+    private final float[] decay;
+
+    /**
+     * for every cell: the density and flow at its last update, the tick of its last update and
+     * the number of persons on it since then
+     */
+    private final float[] density;
+    private final float[] flow;
+    private final long[] lastUpdate;
+    private final short[] occupants;
+
+    /**
+     * creates a field and adds all persons that are in the building right now
+     *
+     * @param building the building
+     * @param halfLife the number of ticks after which a value is halved
+     */
+    DensityField(Building building, int halfLife) {
+
+        if (halfLife <= 0) {
+            throw new IllegalArgumentException("The half-life has to be positive");
+        }
+        this.building = building;
+        this.grid = building.getGrid();
+        this.halfLife = halfLife;
+
+        decay = new float[halfLife * 16];
+        double perTick = Math.pow(0.5, 1.0 / halfLife);
+        for (int i = 0; i < decay.length; i++) {
+            decay[i] = (float) Math.pow(perTick, i);
+        }
+
+        int cells = grid.getCellCount();
+        density = new float[cells];
+        flow = new float[cells];
+        lastUpdate = new long[cells];
+        occupants = new short[cells];
+
+        long tick = building.getTickNumber();
+        Arrays.fill(lastUpdate, tick);
+        for (Person person : building.getPersonsInBuildingView()) {
+            enter(person.getIsOnCell());
+        }
+
+    }
+
+    /**
+     * @return the number of ticks after which a value is halved
+     */
+    public int getHalfLife() {
+        return halfLife;
+    }
+
+    /**
+     * @return the index, density, flow and tick of the last update of every cell that has a
+     * density or a flow, as copies, for a checkpoint; the other cells are empty
+     */
+    JsonArray getState() {
+
+        JsonArray state = new JsonArray();
+        for (int index = 0; index < density.length; index++) {
+            if (density[index] != 0 || flow[index] != 0) {
+                JsonArray cell = new JsonArray();
+                cell.add(index);
+                cell.add(density[index]);
+                cell.add(flow[index]);
+                cell.add(lastUpdate[index]);
+                state.add(cell);
+            }
+        }
+        return state;
+
+    }
+
+    /**
+     * continues with the values of a checkpoint; the persons on the cells have to be added
+     * before
+     *
+     * @param state what {@link #getState()} returned
+     */
+    void resume(JsonArray state) {
+
+        Arrays.fill(density, 0);
+        Arrays.fill(flow, 0);
+        Arrays.fill(lastUpdate, building.getTickNumber());
+        for (int i = 0; i < state.size(); i++) {
+            JsonArray cell = state.get(i).getAsJsonArray();
+            int index = cell.get(0).getAsInt();
+            density[index] = cell.get(1).getAsFloat();
+            flow[index] = cell.get(2).getAsFloat();
+            lastUpdate[index] = cell.get(3).getAsLong();
+        }
+
+    }
+
+    private float decay(long ticks) {
+        return ticks < decay.length ? decay[(int) ticks] : 0f;
+    }
+
+    /**
+     * applies the ticks that passed since the last update of a cell
+     */
+    private void update(int index) {
+
+        long tick = building.getTickNumber();
+        float left = decay(tick - lastUpdate[index]);
+        density[index] = density[index] * left + (1 - left) * Math.min(occupants[index], 1);
+        flow[index] *= left;
+        lastUpdate[index] = tick;
+
+    }
+
+    /**
+     * a person was put on a cell
+     *
+     * @param cell the cell
+     */
+    public void enter(Cell cell) {
+
+        int index = cell == null ? -1 : grid.getIndex(cell);
+        if (index < 0) {
+            return;
+        }
+        update(index);
+        occupants[index]++;
+        flow[index]++;
+
+    }
+
+    /**
+     * a person was removed from a cell
+     *
+     * @param cell the cell
+     */
+    public void leave(Cell cell) {
+
+        int index = cell == null ? -1 : grid.getIndex(cell);
+        if (index < 0) {
+            return;
+        }
+        update(index);
+        if (occupants[index] > 0) {
+            occupants[index]--;
+        }
+
+    }
+
+    /**
+     * a person moved from one cell to another
+     *
+     * @param from the cell the person was on
+     * @param to   the cell the person is on now
+     */
+    public void move(Cell from, Cell to) {
+        if (from != to) {
+            leave(from);
+            enter(to);
+        }
+    }
+
+    /**
+     * @param index the index of a cell
+     * @return the share of the recent ticks the cell was occupied, between 0 and 1
+     * @see Grid#getIndex(Cell)
+     */
+    public float getDensity(int index) {
+        float left = decay(building.getTickNumber() - lastUpdate[index]);
+        return density[index] * left + (1 - left) * Math.min(occupants[index], 1);
+    }
+
+    /**
+     * @param index the index of a cell
+     * @return the number of persons that recently entered the cell per tick
+     * @see Grid#getIndex(Cell)
+     */
+    public float getFlow(int index) {
+        float left = decay(building.getTickNumber() - lastUpdate[index]);
+        return flow[index] * left * (1 - decay[1]);
+    }
+
+}
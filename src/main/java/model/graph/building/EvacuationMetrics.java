@@ -0,0 +1,541 @@
+package model.graph.building;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import model.graph.building.Building.Passage;
+import model.graph.building.Building.Room;
+import model.graph.building.Grid.Cell;
+import model.graph.useragent.Person;
+import model.helper.Instrumentation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Measures an evacuation of a building: how many persons leave through every exit per tick,
+ * when every room and the whole building are empty, how many ticks persons wait and how
+ * many persons queue in front of every passage.
+ * <p>
+ * All tables are built when the evacuation starts; afterwards every tick only updates
+ * arrays of numbers, nothing is allocated.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see Building#getMetrics()
+ */
+public class EvacuationMetrics {
+
+    /**
+     * persons within this distance of a passage's cells are counted as queueing in front of it
+     */
+    private static final int QUEUE_DISTANCE = 2;
+
+    private final Building building;
+
+    private boolean running = false;
+    private boolean finished = false;
+
+    private long startTick;
+    private long endTick;
+
+    private int initialPersons;
+    private int evacuatedPersons;
+    private long waitTicks;
+
+    /**
+     * the passages and rooms, ordered by their id
+     */
+    private Passage[] passages = new Passage[0];
+    private Room[] rooms = new Room[0];
+
+    /**
+     * for every cell index: the passage a person on it queues in front of, the exit a person
+     * on it leaves the building through and the room it belongs to; -1 if there is none
+     */
+    private int[] queueOf = new int[0];
+    private int[] exitOf = new int[0];
+    private int[] roomOf = new int[0];
+
+    /**
+     * for every passage: the number of persons that left through it in total, in the last tick
+     * and at most in one tick, and the number of persons queueing in front of it
+     */
+    private int[] exitCounts = new int[0];
+    private int[] currentFlow = new int[0];
+    private int[] lastFlow = new int[0];
+    private int[] peakFlow = new int[0];
+    private int[] currentQueue = new int[0];
+    private int[] lastQueue = new int[0];
+    private int[] maxQueue = new int[0];
+
+    /**
+     * the number of sleeping persons and, for every passage, how many of them queue in front of
+     * it; sleeping persons are not ticked, so their stays are counted at once in every tick
+     */
+    private int sleepingPersons;
+    private int[] sleepingQueue = new int[0];
+
+    /**
+     * for every room: the number of persons in it and the tick it was empty the first time
+     * since the start, -1 if it was not yet
+     */
+    private int[] roomPersons = new int[0];
+    private long[] clearedAt = new long[0];
+
+    EvacuationMetrics(Building building) {
+        this.building = building;
+    }
+
+    /**
+     * builds the tables and starts measuring; is called when the evacuation starts
+     */
+    void start() {
+
+        Grid grid = building.getGrid();
+        int cells = grid.getCellCount();
+
+        ArrayList<Passage> passageList = new ArrayList<>(building.getPassages());
+        passageList.sort(Comparator.comparingInt(p -> p.id));
+        passages = passageList.toArray(new Passage[0]);
+        ArrayList<Room> roomList = new ArrayList<>(building.getRooms());
+        roomList.sort(Comparator.comparingInt(r -> r.id));
+        rooms = roomList.toArray(new Room[0]);
+
+        queueOf = new int[cells];
+        exitOf = new int[cells];
+        roomOf = new int[cells];
+        Arrays.fill(queueOf, -1);
+        Arrays.fill(exitOf, -1);
+        Arrays.fill(roomOf, -1);
+        int[] queueDistance = new int[cells];
+        Arrays.fill(queueDistance, Integer.MAX_VALUE);
+
+        for (int r = 0; r < rooms.length; r++) {
+            Cell beginning = rooms[r].getBeginning(), end = rooms[r].getEnd();
+            for (int y = beginning.getY(); y <= end.getY(); y++) {
+                for (int x = beginning.getX(); x <= end.getX(); x++) {
+                    int index = grid.getIndex(x, y, rooms[r].getFloor());
+                    if (index >= 0) {
+                        roomOf[index] = r;
+                    }
+                }
+            }
+        }
+
+        for (int p = 0; p < passages.length; p++) {
+            for (Cell cell : passages[p].getRoomChangingCells()) {
+                if (passages[p].isExit() && cell.isOutside() && grid.getIndex(cell) >= 0) {
+                    exitOf[grid.getIndex(cell)] = p;
+                }
+                // the cells around the passage, on the same floor; the nearest passage wins
+                for (int dX = -QUEUE_DISTANCE; dX <= QUEUE_DISTANCE; dX++) {
+                    for (int dY = -QUEUE_DISTANCE; dY <= QUEUE_DISTANCE; dY++) {
+                        int index = grid.getIndex(cell.getX() + dX, cell.getY() + dY, cell.getFloor());
+                        int distance = Math.max(Math.abs(dX), Math.abs(dY));
+                        if (index >= 0 && distance < queueDistance[index]) {
+                            queueDistance[index] = distance;
+                            queueOf[index] = p;
+                        }
+                    }
+                }
+            }
+        }
+
+        exitCounts = new int[passages.length];
+        currentFlow = new int[passages.length];
+        lastFlow = new int[passages.length];
+        peakFlow = new int[passages.length];
+        currentQueue = new int[passages.length];
+        lastQueue = new int[passages.length];
+        maxQueue = new int[passages.length];
+
+        roomPersons = new int[rooms.length];
+        clearedAt = new long[rooms.length];
+        Arrays.fill(clearedAt, -1);
+        for (int r = 0; r < rooms.length; r++) {
+            roomPersons[r] = rooms[r].getOccupancy();
+        }
+
+        sleepingPersons = 0;
+        sleepingQueue = new int[passages.length];
+        for (Person person : building.getPersonsInBuildingView()) {
+            if (person.isSleeping()) {
+                countSleeping(person, 1);
+            }
+        }
+
+        startTick = building.getTickNumber();
+        endTick = -1;
+        initialPersons = building.getPersonsInBuildingView().size();
+        evacuatedPersons = 0;
+        waitTicks = 0;
+        finished = false;
+        running = true;
+        for (int r = 0; r < rooms.length; r++) {
+            if (roomPersons[r] == 0) {
+                clearedAt[r] = startTick;
+            }
+        }
+        checkFinished();
+
+    }
+
+    private int roomOf(Cell cell) {
+        int index = cell == null ? -1 : building.getGrid().getIndex(cell);
+        return index < 0 ? -1 : roomOf[index];
+    }
+
+    /**
+     * is called by a person after it ticked
+     *
+     * @param person    the person
+     * @param wasOnCell the cell the person was on before the tick
+     * @param isOnCell  the cell the person is on now
+     * @param inside    whether the person is still in the building after the tick
+     */
+    public void personTicked(Person person, Cell wasOnCell, Cell isOnCell, boolean inside) {
+
+        if (!running) {
+            return;
+        }
+
+        int index = building.getGrid().getIndex(isOnCell);
+        if (wasOnCell == isOnCell) {
+            if (!inside) {
+                // the person left the building in this tick
+                return;
+            }
+            waitTicks++;
+            if (index >= 0 && queueOf[index] >= 0) {
+                currentQueue[queueOf[index]]++;
+            }
+            return;
+        }
+
+        int from = roomOf(wasOnCell);
+        int to = index < 0 ? -1 : roomOf[index];
+        if (from != to) {
+            leftRoom(from);
+            if (to >= 0) {
+                roomPersons[to]++;
+            }
+        }
+
+    }
+
+    /**
+     * is called when a person in the building fell asleep or was woken up
+     *
+     * @param person   the person
+     * @param sleeping whether the person sleeps now
+     */
+    void personChangedSleep(Person person, boolean sleeping) {
+
+        if (running) {
+            countSleeping(person, sleeping ? 1 : -1);
+        }
+
+    }
+
+    private void countSleeping(Person person, int change) {
+
+        sleepingPersons += change;
+        int index = building.getGrid().getIndex(person.getIsOnCell());
+        if (index >= 0 && queueOf[index] >= 0) {
+            sleepingQueue[queueOf[index]] += change;
+        }
+
+    }
+
+    /**
+     * is called by the building when a tick begins; counts the stays of the persons that sleep
+     * in it
+     */
+    void tickBegun() {
+
+        if (!running || sleepingPersons == 0) {
+            return;
+        }
+        waitTicks += sleepingPersons;
+        for (int p = 0; p < passages.length; p++) {
+            currentQueue[p] += sleepingQueue[p];
+        }
+        Instrumentation.count(Instrumentation.Counter.STAYS, sleepingPersons);
+
+    }
+
+    /**
+     * is called when a person is removed from the building
+     *
+     * @param person the person
+     */
+    void personRemoved(Person person) {
+
+        if (!running) {
+            return;
+        }
+
+        Cell cell = person.getIsOnCell();
+        int index = cell == null ? -1 : building.getGrid().getIndex(cell);
+        if (index >= 0) {
+            leftRoom(roomOf[index]);
+            if (exitOf[index] >= 0) {
+                exitCounts[exitOf[index]]++;
+                currentFlow[exitOf[index]]++;
+            }
+        }
+        evacuatedPersons++;
+        checkFinished();
+
+    }
+
+    private void leftRoom(int room) {
+        if (room >= 0 && roomPersons[room] > 0 && --roomPersons[room] == 0 && clearedAt[room] < 0) {
+            clearedAt[room] = building.getTickNumber();
+        }
+    }
+
+    private void checkFinished() {
+        if (!finished && building.getPersonsInBuildingView().isEmpty()) {
+            finished = true;
+            endTick = building.getTickNumber();
+        }
+    }
+
+    /**
+     * is called by the building at the end of every tick
+     */
+    void tick() {
+
+        if (!running) {
+            return;
+        }
+        for (int p = 0; p < passages.length; p++) {
+            lastFlow[p] = currentFlow[p];
+            peakFlow[p] = Math.max(peakFlow[p], currentFlow[p]);
+            currentFlow[p] = 0;
+            lastQueue[p] = currentQueue[p];
+            maxQueue[p] = Math.max(maxQueue[p], currentQueue[p]);
+            currentQueue[p] = 0;
+        }
+        checkFinished();
+
+    }
+
+    /**
+     * @return the counters of the measurement, as copies, for a checkpoint; null if nothing is
+     * measured. The tables are built again from the building.
+     */
+    JsonObject getState() {
+
+        if (!running) {
+            return null;
+        }
+        JsonObject state = new JsonObject();
+        state.addProperty("startTick", startTick);
+        state.addProperty("endTick", endTick);
+        state.addProperty("finished", finished);
+        state.addProperty("initialPersons", initialPersons);
+        state.addProperty("evacuatedPersons", evacuatedPersons);
+        state.addProperty("waitTicks", waitTicks);
+        state.add("exitCounts", toArray(exitCounts));
+        state.add("lastFlow", toArray(lastFlow));
+        state.add("peakFlow", toArray(peakFlow));
+        state.add("lastQueue", toArray(lastQueue));
+        state.add("maxQueue", toArray(maxQueue));
+        state.add("roomPersons", toArray(roomPersons));
+        JsonArray cleared = new JsonArray();
+        for (long tick : clearedAt) {
+            cleared.add(tick);
+        }
+        state.add("clearedAt", cleared);
+        return state;
+
+    }
+
+    /**
+     * starts measuring again and continues with the counters of a checkpoint
+     *
+     * @param state what {@link #getState()} returned
+     * @throws IllegalArgumentException if the counters belong to other passages or rooms
+     */
+    void resume(JsonObject state) {
+
+        start();
+        startTick = state.get("startTick").getAsLong();
+        endTick = state.get("endTick").getAsLong();
+        finished = state.get("finished").getAsBoolean();
+        initialPersons = state.get("initialPersons").getAsInt();
+        evacuatedPersons = state.get("evacuatedPersons").getAsInt();
+        waitTicks = state.get("waitTicks").getAsLong();
+        fromArray(state.getAsJsonArray("exitCounts"), exitCounts);
+        fromArray(state.getAsJsonArray("lastFlow"), lastFlow);
+        fromArray(state.getAsJsonArray("peakFlow"), peakFlow);
+        fromArray(state.getAsJsonArray("lastQueue"), lastQueue);
+        fromArray(state.getAsJsonArray("maxQueue"), maxQueue);
+        fromArray(state.getAsJsonArray("roomPersons"), roomPersons);
+        JsonArray cleared = state.getAsJsonArray("clearedAt");
+        if (cleared.size() != clearedAt.length) {
+            throw new IllegalArgumentException("The measurement belongs to other rooms");
+        }
+        for (int r = 0; r < clearedAt.length; r++) {
+            clearedAt[r] = cleared.get(r).getAsLong();
+        }
+
+    }
+
+    private static JsonArray toArray(int[] values) {
+        JsonArray array = new JsonArray();
+        for (int value : values) {
+            array.add(value);
+        }
+        return array;
+    }
+
+    private static void fromArray(JsonArray array, int[] values) {
+        if (array.size() != values.length) {
+            throw new IllegalArgumentException("The measurement belongs to other passages or rooms");
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = array.get(i).getAsInt();
+        }
+    }
+
+    /**
+     * @return whether an evacuation is being measured
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return whether the building is empty since the evacuation started
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return the tick the evacuation started at
+     */
+    public long getStartTick() {
+        return startTick;
+    }
+
+    /**
+     * @return the number of ticks the evacuation took until the building was empty, or the
+     * number of ticks it takes so far
+     */
+    public long getEvacuationTime() {
+        return (finished ? endTick : building.getTickNumber()) - startTick;
+    }
+
+    /**
+     * @return the number of persons in the building when the evacuation started
+     */
+    public int getInitialPersons() {
+        return initialPersons;
+    }
+
+    /**
+     * @return the number of persons that left the building since the evacuation started
+     */
+    public int getEvacuatedPersons() {
+        return evacuatedPersons;
+    }
+
+    /**
+     * @return the number of ticks all persons together did not move since the evacuation started
+     */
+    public long getWaitTicks() {
+        return waitTicks;
+    }
+
+    /**
+     * @return the number of passages
+     */
+    public int getPassageCount() {
+        return passages.length;
+    }
+
+    /**
+     * @param p the number of a passage, between 0 and {@link #getPassageCount()}
+     * @return the passage
+     */
+    public Passage getPassage(int p) {
+        return passages[p];
+    }
+
+    /**
+     * @param p the number of a passage
+     * @return the number of persons that left the building through it
+     */
+    public int getExitCount(int p) {
+        return exitCounts[p];
+    }
+
+    /**
+     * @param p the number of a passage
+     * @return the number of persons that left the building through it in the last tick
+     */
+    public int getFlow(int p) {
+        return lastFlow[p];
+    }
+
+    /**
+     * @param p the number of a passage
+     * @return the highest number of persons that left the building through it in one tick
+     */
+    public int getPeakFlow(int p) {
+        return peakFlow[p];
+    }
+
+    /**
+     * @param p the number of a passage
+     * @return the number of persons that waited in front of it in the last tick
+     */
+    public int getQueueLength(int p) {
+        return lastQueue[p];
+    }
+
+    /**
+     * @param p the number of a passage
+     * @return the highest number of persons that waited in front of it in one tick
+     */
+    public int getMaxQueueLength(int p) {
+        return maxQueue[p];
+    }
+
+    /**
+     * @return the number of rooms
+     */
+    public int getRoomCount() {
+        return rooms.length;
+    }
+
+    /**
+     * @param r the number of a room, between 0 and {@link #getRoomCount()}
+     * @return the room
+     */
+    public Room getRoom(int r) {
+        return rooms[r];
+    }
+
+    /**
+     * @param r the number of a room
+     * @return the number of persons in the room
+     */
+    public int getRoomPersons(int r) {
+        return roomPersons[r];
+    }
+
+    /**
+     * @param r the number of a room
+     * @return the number of ticks after the start until the room was empty, -1 if it is not yet
+     */
+    public long getClearanceTime(int r) {
+        return clearedAt[r] < 0 ? -1 : clearedAt[r] - startTick;
+    }
+
+}
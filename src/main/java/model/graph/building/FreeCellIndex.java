@@ -0,0 +1,192 @@
+package model.graph.building;
+
+import model.graph.building.Grid.Cell;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The free cells of a grid, split into groups, e.g. by room or by floor. Every group keeps its
+ * cells in the order of their indices and counts the free ones in a Fenwick tree, so that a
+ * random free cell is found by its rank without looking at the others. Which cell is found for
+ * a random number only depends on which cells are free, not on the order in which they were
+ * occupied and left, so a building that is restored from a checkpoint finds the same cells.
+ * The grid tells the index whenever a cell is occupied or left.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see Grid#getFreeCellsInRooms()
+ * @see Grid#getFreeCellsOnFloors()
+ * @see Grid#getFreeEntryCells()
+ */
+public final class FreeCellIndex {
+
+    private final Grid grid;
+
+    /**
+     * the group of every cell, by its index; -1 for cells that are in no group
+     */
+    private final int[] groupOf;
+
+    /**
+     * the indices of the cells of every group, in ascending order, and the position of every
+     * cell in the array of its group, by its index; -1 for cells that are in no group
+     */
+    private final int[][] cells;
+    private final int[] positions;
+
+    /**
+     * whether every cell is free and in the index, by its index
+     */
+    private final boolean[] free;
+
+    /**
+     * the Fenwick tree of the free cells of every group, one-based, and how many there are
+     */
+    private final int[][] trees;
+    private final int[] sizes;
+
+    /**
+     * @param grid    the grid
+     * @param groupOf the group of every cell, by its index; -1 for cells that are in no group
+     * @param groups  the number of groups
+     */
+    FreeCellIndex(Grid grid, int[] groupOf, int groups) {
+
+        this.grid = grid;
+        this.groupOf = groupOf;
+
+        int[] counts = new int[groups];
+        for (int group : groupOf) {
+            if (group >= 0) {
+                counts[group]++;
+            }
+        }
+        cells = new int[groups][];
+        trees = new int[groups][];
+        for (int g = 0; g < groups; g++) {
+            cells[g] = new int[counts[g]];
+            trees[g] = new int[counts[g] + 1];
+        }
+        sizes = new int[groups];
+        positions = new int[groupOf.length];
+        free = new boolean[groupOf.length];
+        Arrays.fill(positions, -1);
+        Arrays.fill(counts, 0);
+        for (int index = 0; index < groupOf.length; index++) {
+            int group = groupOf[index];
+            if (group >= 0) {
+                positions[index] = counts[group];
+                cells[group][counts[group]++] = index;
+                if (!grid.getCellByIndex(index).isOccupied()) {
+                    free[index] = true;
+                    trees[group][positions[index] + 1] = 1;
+                    sizes[group]++;
+                }
+            }
+        }
+        for (int[] tree : trees) {
+            for (int i = 1; i < tree.length; i++) {
+                int parent = i + (i & -i);
+                if (parent < tree.length) {
+                    tree[parent] += tree[i];
+                }
+            }
+        }
+
+    }
+
+    /**
+     * @return the number of groups
+     */
+    public int getGroupCount() {
+        return sizes.length;
+    }
+
+    /**
+     * @param group a group
+     * @return the number of free cells in the group
+     */
+    public int getFreeCount(int group) {
+        return sizes[group];
+    }
+
+    /**
+     * @param group  a group
+     * @param random the random numbers
+     * @return a random free cell of the group, null if there is none. It stays in the index
+     * until it is occupied.
+     */
+    public Cell getRandomFreeCell(int group, Random random) {
+        return getRandomFreeCell(group, group, random);
+    }
+
+    /**
+     * @param firstGroup the first of the groups
+     * @param lastGroup  the last of the groups
+     * @param random     the random numbers
+     * @return a random free cell of the groups from the first to the last one, each free cell
+     * with the same probability; null if there is none
+     */
+    public Cell getRandomFreeCell(int firstGroup, int lastGroup, Random random) {
+
+        int count = 0;
+        for (int group = firstGroup; group <= lastGroup; group++) {
+            count += sizes[group];
+        }
+        if (count == 0) {
+            return null;
+        }
+        int chosen = random.nextInt(count);
+        int group = firstGroup;
+        while (chosen >= sizes[group]) {
+            chosen -= sizes[group++];
+        }
+        return grid.getCellByIndex(cells[group][find(trees[group], chosen)]);
+
+    }
+
+    /**
+     * is called by the grid when a cell was occupied or left
+     *
+     * @param index the index of the cell
+     */
+    void changed(int index) {
+
+        if (index < 0 || groupOf[index] < 0) {
+            return;
+        }
+        boolean occupied = grid.getCellByIndex(index).isOccupied();
+        if (occupied == free[index]) {
+            free[index] = !occupied;
+            int group = groupOf[index];
+            int delta = occupied ? -1 : 1;
+            sizes[group] += delta;
+            int[] tree = trees[group];
+            for (int i = positions[index] + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+    }
+
+    /**
+     * @param tree   the Fenwick tree of a group
+     * @param chosen the rank of a free cell of the group, from 0
+     * @return the position of the free cell with that rank in the array of the group
+     */
+    private static int find(int[] tree, int chosen) {
+
+        int position = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < tree.length && tree[next] <= chosen) {
+                position = next;
+                chosen -= tree[next];
+            }
+        }
+        return position;
+
+    }
+
+}
@@ -3,8 +3,12 @@ package model.graph.building;
 import model.helper.Logger;
 import model.helper.Pair;
 import model.graph.building.Building.*;
+import model.graph.useragent.Person;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 
@@ -34,12 +38,55 @@ public class Grid {
      */
     private final HashMap<Pair<Pair<Integer, Integer>, Integer>, Cell> existingCells = new HashMap<>();
 
+    /**
+     * all cells of the grid and the ring of cells around it, ordered by their index
+     *
+     * @see #getIndex(Cell)
+     */
+    private final Cell[] indexedCells;
+
+    /**
+     * the ends of all stairs that change the floor, the lower and the higher end of every stair,
+     * the floor of every end, the ends on every floor and the costs of the cheapest way between
+     * any two ends. They are calculated when a distance between floors is needed the first time
+     * after a stair was added; null until then.
+     *
+     * @see #distance(Cell, Cell)
+     */
+    private ArrayList<HashSet<Cell>> stairEnds;
+    private int[] stairEndFloors;
+    private int[][] stairEndsOnFloor;
+    private float[][] stairCosts;
+
+    /**
+     * the free cells of every room and of every floor, without stairs; created the first time
+     * they are needed, and forgotten when a cell gets a room or becomes a stair
+     */
+    private FreeCellIndex freeCellsInRooms;
+    private FreeCellIndex freeCellsOnFloors;
+
+    /**
+     * the groups of the index of the free entry cells: the entry cells that are no stairs, and
+     * those that are
+     *
+     * @see #getFreeEntryCells()
+     */
+    public static final int ENTRY_CELLS = 0;
+    public static final int STAIR_ENTRY_CELLS = 1;
+
+    /**
+     * the free entry cells of the building; created the first time they are needed, and
+     * forgotten when an exit is added or a cell becomes a stair
+     */
+    private FreeCellIndex freeEntryCells;
+
     Grid(Building building) {
 
         this.building = building;
         xSize = building.gridSizeX;
         ySize = building.gridSizeY;
         floors = building.floors;
+        indexedCells = new Cell[(xSize + 2) * (ySize + 2) * floors];
 
         for (int i = -1; i <= xSize; i++) {
             for (int j = -1; j <= ySize; j++) {
@@ -85,11 +132,147 @@ public class Grid {
 
         Cell newCell = new Cell(x, y, f);
         existingCells.put(new Pair<>(new Pair<>(x, y), f), newCell);
+        int index = getIndex(x, y, f);
+        if (index >= 0) {
+            indexedCells[index] = newCell;
+        }
 
         return newCell;
 
     }
 
+    /**
+     * @return the number of cells that have an index: all cells of the grid and the ring of
+     * cells around it on every floor
+     */
+    public int getCellCount() {
+        return indexedCells.length;
+    }
+
+    /**
+     * returns the unique index of a cell, which is stable for a building and can be used
+     * to store cells compactly. Only cells of the grid and the ring of cells around it
+     * (e.g. the outside cells of exits) have an index.
+     *
+     * @param cell the cell
+     * @return the index between 0 and {@link #getCellCount()}, -1 if the cell has none
+     */
+    public int getIndex(Cell cell) {
+        return getIndex(cell.x, cell.y, cell.floor);
+    }
+
+    /**
+     * @param x the x-coordinate of a cell
+     * @param y the y-coordinate of a cell
+     * @param f the floor of a cell
+     * @return the index of the cell between 0 and {@link #getCellCount()}, -1 if it has none
+     * @see #getIndex(Cell)
+     */
+    public int getIndex(int x, int y, int f) {
+        if (x < -1 || x > xSize || y < -1 || y > ySize || f < 0 || f >= floors) {
+            return -1;
+        }
+        return ((f * (ySize + 2)) + y + 1) * (xSize + 2) + x + 1;
+    }
+
+    /**
+     * @param index the index of a cell
+     * @return the cell with this index
+     * @see #getIndex(Cell)
+     */
+    public Cell getCellByIndex(int index) {
+        return indexedCells[index];
+    }
+
+    /**
+     * @return the free cells of every room without its stairs; the group of a room is its id
+     */
+    public FreeCellIndex getFreeCellsInRooms() {
+
+        if (freeCellsInRooms == null) {
+            int[] groupOf = new int[indexedCells.length];
+            int groups = 0;
+            for (Room room : building.getRooms()) {
+                groups = Math.max(groups, room.getId() + 1);
+            }
+            for (int index = 0; index < indexedCells.length; index++) {
+                Cell cell = indexedCells[index];
+                groupOf[index] = cell.isOutside() || cell.isStair() ? -1 : cell.getRoom().getId();
+                groups = Math.max(groups, groupOf[index] + 1);
+            }
+            freeCellsInRooms = new FreeCellIndex(this, groupOf, groups);
+        }
+        return freeCellsInRooms;
+
+    }
+
+    /**
+     * @return the free cells in the rooms of every floor without the stairs; the group of a
+     * floor is its number
+     */
+    public FreeCellIndex getFreeCellsOnFloors() {
+
+        if (freeCellsOnFloors == null) {
+            int[] groupOf = new int[indexedCells.length];
+            for (int index = 0; index < indexedCells.length; index++) {
+                Cell cell = indexedCells[index];
+                groupOf[index] = cell.isOutside() || cell.isStair() ? -1 : cell.getFloor();
+            }
+            freeCellsOnFloors = new FreeCellIndex(this, groupOf, floors);
+        }
+        return freeCellsOnFloors;
+
+    }
+
+    /**
+     * @return the free cells through which persons can enter the building, in the groups
+     * {@link #ENTRY_CELLS} and {@link #STAIR_ENTRY_CELLS}
+     * @see Building#getEntryCells()
+     */
+    public FreeCellIndex getFreeEntryCells() {
+
+        if (freeEntryCells == null) {
+            int[] groupOf = new int[indexedCells.length];
+            Arrays.fill(groupOf, -1);
+            for (Cell cell : building.getEntryCells()) {
+                int index = getIndex(cell);
+                if (index >= 0) {
+                    groupOf[index] = cell.isStair() ? STAIR_ENTRY_CELLS : ENTRY_CELLS;
+                }
+            }
+            freeEntryCells = new FreeCellIndex(this, groupOf, 2);
+        }
+        return freeEntryCells;
+
+    }
+
+    /**
+     * is called when an exit was added, so that the free entry cells are found again
+     */
+    void entryCellsChanged() {
+        freeEntryCells = null;
+    }
+
+    /**
+     * tells the indices of the free cells that a cell was occupied or left
+     */
+    private void occupancyChanged(Cell cell) {
+
+        if (freeCellsInRooms != null || freeCellsOnFloors != null || freeEntryCells != null) {
+            int index = getIndex(cell);
+            if (freeCellsInRooms != null) {
+                freeCellsInRooms.changed(index);
+            }
+            if (freeCellsOnFloors != null) {
+                freeCellsOnFloors.changed(index);
+            }
+            if (freeEntryCells != null) {
+                freeEntryCells.changed(index);
+            }
+        }
+
+    }
+
     public void unblock() {
 
         for (Cell cell : existingCells.values()) {
@@ -123,15 +306,120 @@ public class Grid {
         return room;
     }
 
+    /**
+     * calculates the distance between two cells in steps. On the same floor, this is the larger
+     * distance in x- or y-direction. Between floors, it is the cheapest way over the stairs that
+     * change the floor: the distance to a stair on the first floor, the costs from there to a
+     * stair on the second floor, including climbing, and the distance from that stair.
+     * Walls are not taken into account.
+     *
+     * @param c1 the first cell
+     * @param c2 the second cell
+     * @return the distance; <code>Integer.MAX_VALUE</code> if no stairs lead from one floor to the other
+     */
     public int distance(Cell c1, Cell c2) {
         if (c1.floor == c2.floor) {
             int dX = Math.abs(c1.x - c2.x);
             int dY = Math.abs(c1.y - c2.y);
             return dX < dY ? dY : dX;
-        } else {
-            //TODO
-            throw new IllegalStateException("Cells are not on same floor");
         }
+
+        if (stairCosts == null) {
+            calculateStairCosts();
+        }
+        float distance = Float.POSITIVE_INFINITY;
+        for (int i : stairEndsOnFloor[c1.floor]) {
+            float toStair = distance(c1, stairEnds.get(i));
+            for (int j : stairEndsOnFloor[c2.floor]) {
+                distance = Math.min(distance, toStair + stairCosts[i][j] + distance(c2, stairEnds.get(j)));
+            }
+        }
+        return distance == Float.POSITIVE_INFINITY ? Integer.MAX_VALUE : Math.round(distance);
+    }
+
+    /**
+     * is called when a stair was added, closed or reopened, so that the costs between the stairs
+     * are calculated again
+     */
+    void stairsChanged() {
+        stairCosts = null;
+    }
+
+    /**
+     * calculates the costs of the cheapest way between any two ends of stairs that change the
+     * floor, with the Floyd-Warshall algorithm. Ends on the same floor are connected directly,
+     * the two ends of a stair by the steps between them and the costs of climbing.
+     */
+    private void calculateStairCosts() {
+
+        ArrayList<Stair> stairs = new ArrayList<>();
+        for (Stair stair : building.getStairs()) {
+            if (stair.isChangingFloor() && !stair.isClosed()) {
+                stairs.add(stair);
+            }
+        }
+        stairs.sort(Comparator.comparingInt(stair -> stair.id));
+
+        int ends = stairs.size() * 2;
+        stairEnds = new ArrayList<>(ends);
+        stairEndFloors = new int[ends];
+        int[] endsPerFloor = new int[floors];
+        for (Stair stair : stairs) {
+            stairEndFloors[stairEnds.size()] = stair.getLowerFloor();
+            stairEnds.add(new HashSet<>(stair.getLowerCells()));
+            stairEndFloors[stairEnds.size()] = stair.getHigherFloor();
+            stairEnds.add(stair.getHigherCells());
+        }
+        for (int floor : stairEndFloors) {
+            endsPerFloor[floor]++;
+        }
+        stairEndsOnFloor = new int[floors][];
+        for (int f = 0; f < floors; f++) {
+            stairEndsOnFloor[f] = new int[endsPerFloor[f]];
+            endsPerFloor[f] = 0;
+        }
+        for (int i = 0; i < ends; i++) {
+            stairEndsOnFloor[stairEndFloors[i]][endsPerFloor[stairEndFloors[i]]++] = i;
+        }
+
+        float[][] costs = new float[ends][ends];
+        for (int i = 0; i < ends; i++) {
+            for (int j = 0; j < ends; j++) {
+                if (i == j) {
+                    costs[i][j] = 0;
+                } else if (stairEndFloors[i] == stairEndFloors[j]) {
+                    float distance = 0;
+                    for (Cell cell : stairEnds.get(i)) {
+                        distance += distance(cell, stairEnds.get(j));
+                    }
+                    costs[i][j] = distance / stairEnds.get(i).size();
+                } else {
+                    costs[i][j] = Float.POSITIVE_INFINITY;
+                }
+            }
+        }
+        for (int s = 0; s < stairs.size(); s++) {
+            float steps = 0;
+            for (Cell lower : stairEnds.get(2 * s)) {
+                for (Cell higher : stairEnds.get(2 * s + 1)) {
+                    steps += Math.max(Math.abs(lower.x - higher.x), Math.abs(lower.y - higher.y));
+                }
+            }
+            steps /= stairEnds.get(2 * s).size() * stairEnds.get(2 * s + 1).size();
+            costs[2 * s][2 * s + 1] = costs[2 * s + 1][2 * s] = steps + Stair.FLOOR_CHANGE_COST;
+        }
+
+        for (int k = 0; k < ends; k++) {
+            for (int i = 0; i < ends; i++) {
+                for (int j = 0; j < ends; j++) {
+                    if (costs[i][k] + costs[k][j] < costs[i][j]) {
+                        costs[i][j] = costs[i][k] + costs[k][j];
+                    }
+                }
+            }
+        }
+        stairCosts = costs;
+
     }
 
 
@@ -158,6 +446,11 @@ public class Grid {
 
         private transient boolean isOccupied = false;
 
+        /**
+         * the person on this cell, null if it is not occupied or the cell is outside
+         */
+        private transient Person occupant = null;
+
         private transient boolean isBlocked = false;
 
         private Cell(int x, int y, int floor) {
@@ -321,6 +614,8 @@ public class Grid {
         void setRoom(Room isInRoom) {
             if (this.isInRoom == null) {
                 this.isInRoom = isInRoom;
+                freeCellsInRooms = null;
+                freeCellsOnFloors = null;
             } else throw new IllegalStateException("Cell " + this + " is already in a room!");
         }
 
@@ -334,6 +629,9 @@ public class Grid {
 
         void setStair() {
             isStair = true;
+            freeCellsInRooms = null;
+            freeCellsOnFloors = null;
+            freeEntryCells = null;
         }
 
         public boolean isOccupied() {
@@ -341,7 +639,35 @@ public class Grid {
         }
 
         public void setOccupied(boolean occupied) {
+            boolean changed = isOccupied != occupied;
             isOccupied = occupied;
+            if (!occupied) {
+                occupant = null;
+            }
+            if (changed) {
+                occupancyChanged(this);
+            }
+        }
+
+        /**
+         * @return the person on this cell, null if there is none
+         */
+        public Person getOccupant() {
+            return occupant;
+        }
+
+        /**
+         * occupies this cell by a person
+         *
+         * @param occupant the person on this cell, null if this cell is left
+         */
+        public void setOccupant(Person occupant) {
+            boolean changed = isOccupied != (occupant != null);
+            this.occupant = occupant;
+            isOccupied = occupant != null;
+            if (changed) {
+                occupancyChanged(this);
+            }
         }
 
         public boolean isBlocked() {
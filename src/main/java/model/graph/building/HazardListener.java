@@ -0,0 +1,40 @@
+package model.graph.building;
+
+import model.graph.building.Building.Passage;
+import model.graph.building.Building.Room;
+
+/**
+ * A listener that is informed by a <code>Building</code> when a passage is closed or reopened
+ * or the penalty of a room changes, e.g. to repair the shortest paths. Is called on the thread
+ * that changes the building, before the paths of the persons are reset.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see Building#addHazardListener(HazardListener)
+ */
+public interface HazardListener {
+
+    /**
+     * is called after a passage was closed
+     *
+     * @param passage the passage that can not be passed anymore
+     */
+    void passageClosed(Passage passage);
+
+    /**
+     * is called after a closed passage was opened again
+     *
+     * @param passage the passage that can be passed again
+     */
+    void passageReopened(Passage passage);
+
+    /**
+     * is called after the penalty of a room changed
+     *
+     * @param room       the room
+     * @param oldPenalty the penalty before
+     * @see Room#getPenalty()
+     */
+    void roomPenaltyChanged(Room room, float oldPenalty);
+
+}
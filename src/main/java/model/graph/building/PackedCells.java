@@ -0,0 +1,178 @@
+package model.graph.building;
+
+import model.graph.building.Grid.Cell;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The coordinates of a set of cells, packed into sorted int arrays, so that the average
+ * distance to a cell or to another set can be calculated without comparing every pair of cells.
+ * <p>
+ * The distance of two cells on the same floor is the larger distance in x- or y-direction.
+ * Turned by 45 degrees, with <code>u = x + y</code> and <code>v = x - y</code>, it is half of
+ * <code>|u1 - u2| + |v1 - v2|</code>, so the sum of the distances splits into two sums of
+ * absolute differences. With sorted coordinates and their prefix sums, these take a binary
+ * search for a single cell and one merge for another set.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see Grid#distance(Cell, Cell)
+ */
+public final class PackedCells {
+
+    /**
+     * the grid the cells belong to; needed for the distances between floors
+     */
+    private final Grid grid;
+
+    /**
+     * the cells themselves
+     */
+    private final Cell[] cells;
+
+    /**
+     * the floor of all cells; -1 if they are on different floors
+     */
+    private final int floor;
+
+    /**
+     * the sorted turned coordinates and their prefix sums; <code>uSums[i]</code> is the sum of
+     * the first i values of <code>u</code>
+     */
+    private final int[] u, v;
+    private final long[] uSums, vSums;
+
+    /**
+     * @param grid  the grid the cells belong to
+     * @param cells the cells to pack
+     */
+    public PackedCells(Grid grid, Collection<Cell> cells) {
+
+        this.grid = grid;
+        this.cells = cells.toArray(new Cell[cells.size()]);
+
+        int n = this.cells.length;
+        int floor = n == 0 ? -1 : this.cells[0].getFloor();
+        u = new int[n];
+        v = new int[n];
+        for (int i = 0; i < n; i++) {
+            Cell cell = this.cells[i];
+            if (cell.getFloor() != floor) {
+                floor = -1;
+            }
+            u[i] = cell.getX() + cell.getY();
+            v[i] = cell.getX() - cell.getY();
+        }
+        this.floor = floor;
+
+        Arrays.sort(u);
+        Arrays.sort(v);
+        uSums = prefixSums(u);
+        vSums = prefixSums(v);
+
+    }
+
+    /**
+     * @return the number of packed cells
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * calculates the average distance of a cell to the packed cells; the same as
+     * {@link Grid#distance(Cell, java.util.HashSet)}
+     *
+     * @param cell the cell
+     * @return the average distance
+     */
+    public float averageDistance(Cell cell) {
+
+        int n = cells.length;
+        if (cell.getFloor() != floor) {
+            float distance = 0;
+            for (Cell other : cells) {
+                distance += grid.distance(cell, other);
+            }
+            return distance / n;
+        }
+
+        long sum = sumOfDifferences(cell.getX() + cell.getY(), u, uSums) +
+                sumOfDifferences(cell.getX() - cell.getY(), v, vSums);
+        return (float) (sum / 2) / n;
+
+    }
+
+    /**
+     * calculates the average distance between the cells of two sets, over all pairs of cells
+     *
+     * @param other the other cells
+     * @return the average distance
+     */
+    public float averageDistance(PackedCells other) {
+
+        if (floor == -1 || floor != other.floor) {
+            float distance = 0;
+            for (Cell cell : cells) {
+                distance += other.averageDistance(cell);
+            }
+            return distance / cells.length;
+        }
+
+        long sum = sumOfDifferences(u, other.u, other.uSums) + sumOfDifferences(v, other.v, other.vSums);
+        return (float) (sum / 2) / ((long) cells.length * other.cells.length);
+
+    }
+
+    /**
+     * @return the sums of the first 0 to n values
+     */
+    private static long[] prefixSums(int[] values) {
+
+        long[] sums = new long[values.length + 1];
+        for (int i = 0; i < values.length; i++) {
+            sums[i + 1] = sums[i] + values[i];
+        }
+        return sums;
+
+    }
+
+    /**
+     * @return the sum of <code>|value - values[i]|</code> over all sorted values
+     */
+    private static long sumOfDifferences(int value, int[] values, long[] sums) {
+
+        // the number of values that are smaller than value
+        int lower = Arrays.binarySearch(values, value);
+        if (lower < 0) {
+            lower = -lower - 1;
+        }
+        while (lower > 0 && values[lower - 1] == value) {
+            lower--;
+        }
+        int n = values.length;
+        return (long) value * lower - sums[lower] + (sums[n] - sums[lower]) - (long) value * (n - lower);
+
+    }
+
+    /**
+     * @return the sum of <code>|a[i] - b[j]|</code> over all pairs of the sorted values
+     */
+    private static long sumOfDifferences(int[] a, int[] b, long[] bSums) {
+
+        int m = b.length;
+        long sum = 0;
+        int lower = 0;
+        for (int value : a) {
+            // a is sorted, so the number of smaller values in b only grows
+            while (lower < m && b[lower] < value) {
+                lower++;
+            }
+            sum += (long) value * lower - bSums[lower] + (bSums[m] - bSums[lower]) - (long) value * (m - lower);
+        }
+        return sum;
+
+    }
+
+}
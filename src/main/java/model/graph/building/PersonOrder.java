@@ -0,0 +1,217 @@
+package model.graph.building;
+
+import model.graph.useragent.Person;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The persons of a building, sorted by their id, and the order in which they are moved in the
+ * current tick. The persons are kept sorted while they come and go, so that a tick does not
+ * have to copy them out of a set and sort them again. The order of a tick is drawn like
+ * {@link java.util.Collections#shuffle(java.util.List, Random)} draws it for the sorted list of
+ * the persons that are awake, with the same random numbers, so it does not depend on the hash
+ * codes of the persons.
+ * <p>
+ * Sleeping persons keep their place in the sorted list, but are marked, and are left out of the
+ * order of a tick; they are neither moved nor do they draw random numbers. A person that is
+ * woken during a tick is moved again in the next one.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see Building#tick()
+ */
+final class PersonOrder {
+
+    /**
+     * the persons and their ids, sorted by the ids. A removed person leaves a gap, null, until
+     * the next tick begins; its id stays, so that the ids can still be searched.
+     */
+    private Person[] persons = new Person[16];
+    private int[] ids = new int[16];
+    private int size;
+    private int gaps;
+
+    /**
+     * whether every person of the sorted list sleeps, and how many do
+     */
+    private boolean[] asleep = new boolean[16];
+    private int sleepers;
+
+    /**
+     * the persons of the current tick in the order in which they are moved and how many of them
+     * were moved; null between two ticks
+     */
+    private Person[] ticking;
+    private int position;
+
+    /**
+     * @param person a person that came into the building
+     */
+    void add(Person person) {
+
+        int id = person.getId();
+        int index = size;
+        if (size > 0 && ids[size - 1] >= id) {
+            index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0 && persons[index] == null) {
+                // the person comes back into its own gap
+                persons[index] = person;
+                asleep[index] = false;
+                gaps--;
+                return;
+            }
+            index = index >= 0 ? index : -index - 1;
+        }
+
+        if (size == persons.length) {
+            persons = Arrays.copyOf(persons, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+            asleep = Arrays.copyOf(asleep, size * 2);
+        }
+        System.arraycopy(persons, index, persons, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        System.arraycopy(asleep, index, asleep, index + 1, size - index);
+        persons[index] = person;
+        ids[index] = id;
+        asleep[index] = false;
+        size++;
+
+    }
+
+    /**
+     * @param person a person that left the building
+     */
+    void remove(Person person) {
+
+        int index = indexOf(person);
+        if (index >= 0) {
+            setSleeping(index, false);
+            persons[index] = null;
+            gaps++;
+        }
+
+    }
+
+    /**
+     * @param person   a person in the building
+     * @param sleeping whether the person sleeps from now on, so that it is left out of the next
+     *                 ticks, or was woken up
+     */
+    void setSleeping(Person person, boolean sleeping) {
+
+        int index = indexOf(person);
+        if (index >= 0) {
+            setSleeping(index, sleeping);
+        }
+
+    }
+
+    private void setSleeping(int index, boolean sleeping) {
+
+        if (asleep[index] != sleeping) {
+            asleep[index] = sleeping;
+            sleepers += sleeping ? 1 : -1;
+        }
+
+    }
+
+    /**
+     * @return the position of the person in the sorted list, -1 if it is not in it
+     */
+    private int indexOf(Person person) {
+
+        int id = person.getId();
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return -1;
+        }
+        // persons that were created with the same id are next to each other
+        while (index > 0 && ids[index - 1] == id) {
+            index--;
+        }
+        for (; index < size && ids[index] == id; index++) {
+            if (persons[index] == person) {
+                return index;
+            }
+        }
+        return -1;
+
+    }
+
+    /**
+     * begins a tick: closes the gaps of the removed persons and puts the persons that are awake
+     * in a random order. Persons that come, go, fall asleep or wake up during the tick do not
+     * change this order.
+     *
+     * @param random the random number generator of the building
+     */
+    void shuffle(Random random) {
+
+        if (gaps > 0) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (persons[i] != null) {
+                    persons[kept] = persons[i];
+                    ids[kept] = ids[i];
+                    asleep[kept] = asleep[i];
+                    kept++;
+                }
+            }
+            Arrays.fill(persons, kept, size, null);
+            size = kept;
+            gaps = 0;
+        }
+
+        if (sleepers == 0) {
+            ticking = Arrays.copyOf(persons, size);
+        } else {
+            ticking = new Person[size - sleepers];
+            int awake = 0;
+            for (int i = 0; i < size; i++) {
+                if (!asleep[i]) {
+                    ticking[awake++] = persons[i];
+                }
+            }
+        }
+        for (int i = ticking.length; i > 1; i--) {
+            int j = random.nextInt(i);
+            Person person = ticking[i - 1];
+            ticking[i - 1] = ticking[j];
+            ticking[j] = person;
+        }
+        position = 0;
+
+    }
+
+    /**
+     * @return whether a tick was begun and is not done yet
+     */
+    boolean isTicking() {
+        return ticking != null;
+    }
+
+    /**
+     * @return whether there are persons left that were not moved in the current tick
+     */
+    boolean hasNext() {
+        return ticking != null && position < ticking.length;
+    }
+
+    /**
+     * @return the next person to move in the current tick
+     */
+    Person next() {
+        Person person = ticking[position];
+        ticking[position++] = null;
+        return person;
+    }
+
+    /**
+     * ends the current tick
+     */
+    void endTick() {
+        ticking = null;
+    }
+
+}
@@ -0,0 +1,20 @@
+package model.graph.building;
+
+/**
+ * A listener that is informed by a <code>Building</code> after every tick, e.g. to save or
+ * record the state of the building. Is called on the thread that ticks the building.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see Building#addTickListener(TickListener)
+ */
+public interface TickListener {
+
+    /**
+     * is called after the building finished a tick
+     *
+     * @param building the building that ticked
+     */
+    void ticked(Building building);
+
+}
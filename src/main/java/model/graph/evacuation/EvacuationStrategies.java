@@ -0,0 +1,96 @@
+package model.graph.evacuation;
+
+import model.graph.building.Building;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+
+/**
+ * The registry of all evacuation strategies that can be found at runtime. The providers are
+ * loaded once, the first time the registry is used; providers that can not be loaded are
+ * reported and left out.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see EvacuationStrategyProvider
+ */
+public final class EvacuationStrategies {
+
+    /**
+     * the name of the strategy that is used if no other one is chosen
+     */
+    public static final String DEFAULT = "ShortestPath";
+
+    private static TreeMap<String, EvacuationStrategyProvider> providers;
+
+    private EvacuationStrategies() {}
+
+    /**
+     * @return all providers by their name
+     */
+    private static synchronized TreeMap<String, EvacuationStrategyProvider> getProviders() {
+
+        if (providers == null) {
+            providers = new TreeMap<>();
+            try {
+                for (EvacuationStrategyProvider provider : ServiceLoader.load(EvacuationStrategyProvider.class)) {
+                    if (providers.containsKey(provider.getName())) {
+                        System.err.println("EvacuationStrategy " + provider.getName() + " is provided twice, "
+                                + provider.getClass().getName() + " is ignored");
+                    } else {
+                        providers.put(provider.getName(), provider);
+                    }
+                }
+            } catch (ServiceConfigurationError e) {
+                e.printStackTrace();
+            }
+        }
+        return providers;
+
+    }
+
+    /**
+     * @return the names of all strategies, the default one first, the others sorted
+     */
+    public static List<String> getNames() {
+
+        List<String> names = new ArrayList<>(getProviders().keySet());
+        if (names.remove(DEFAULT)) {
+            names.add(0, DEFAULT);
+        }
+        return names;
+
+    }
+
+    /**
+     * @param name the name of a strategy
+     * @return its provider, null if there is none with this name
+     */
+    public static EvacuationStrategyProvider get(String name) {
+        return getProviders().get(name);
+    }
+
+    /**
+     * creates a strategy by its name
+     *
+     * @param name     the name of the strategy
+     * @param building the building to evacuate
+     * @return the strategy, not started yet
+     * @throws IllegalArgumentException if there is no strategy with this name
+     */
+    public static EvacuationStrategy create(String name, Building building) {
+
+        EvacuationStrategyProvider provider = get(name);
+        if (provider == null) {
+            throw new IllegalArgumentException("Unknown EvacuationStrategy " + name);
+        }
+        EvacuationStrategy strategy = provider.create(building);
+        strategy.name = name;
+        return strategy;
+
+    }
+
+}
@@ -1,10 +1,18 @@
 package model.graph.evacuation;
 
+import com.google.gson.JsonObject;
 import model.graph.Path;
+import model.graph.PathOntology;
 import model.graph.building.Building;
+import model.graph.building.Building.Room;
+import model.graph.building.Grid.Cell;
 import model.graph.useragent.Person;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 public abstract class EvacuationStrategy {
 
@@ -12,6 +20,12 @@ public abstract class EvacuationStrategy {
 
     HashSet<Person> persons;
 
+    /**
+     * the name the strategy has in the registry, null if it was not created by it
+     *
+     * @see EvacuationStrategies#create(String, Building)
+     */
+    String name;
 
     public EvacuationStrategy(Building building) {
         this.building = building;
@@ -21,6 +35,111 @@ public abstract class EvacuationStrategy {
 
     public abstract Path getPath(Person person);
 
+    /**
+     * returns the paths of several persons at once; asks for the path of every person on its
+     * own by default
+     *
+     * @param persons the persons
+     * @return the path of every person, in the same order
+     */
+    public Path[] getPaths(List<Person> persons) {
+
+        Path[] paths = new Path[persons.size()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = getPath(persons.get(i));
+        }
+        return paths;
+
+    }
+
+    /**
+     * returns the shortest paths outside for several persons, grouped by their room and whether
+     * they are disabled, so that the exits behind the passages of a room are searched once for
+     * every group
+     *
+     * @param persons the persons
+     * @param po      the path ontology of the building
+     * @return the shortest path of every person, in the same order
+     * @see PathOntology#getShortestPathsOutside(Room, Cell[], boolean)
+     */
+    Path[] getShortestPaths(List<Person> persons, PathOntology po) {
+
+        Path[] paths = new Path[persons.size()];
+
+        // the positions of the persons in every room, for persons without and with a disability
+        List<Map<Room, ArrayList<Integer>>> groups = new ArrayList<>();
+        groups.add(new HashMap<>());
+        groups.add(new HashMap<>());
+        for (int i = 0; i < paths.length; i++) {
+            Person person = persons.get(i);
+            Room room = person.getIsOnCell().getRoom();
+            if (room == null) {
+                paths[i] = po.getShortestPath(person.getIsOnCell(), null, person.isDisabled());
+            } else {
+                groups.get(person.isDisabled() ? 1 : 0).computeIfAbsent(room, r -> new ArrayList<>()).add(i);
+            }
+        }
+
+        for (int d = 0; d < 2; d++) {
+            for (Map.Entry<Room, ArrayList<Integer>> group : groups.get(d).entrySet()) {
+                ArrayList<Integer> positions = group.getValue();
+                Cell[] starts = new Cell[positions.size()];
+                for (int i = 0; i < starts.length; i++) {
+                    starts[i] = persons.get(positions.get(i)).getIsOnCell();
+                }
+                Path[] found = po.getShortestPathsOutside(group.getKey(), starts, d == 1);
+                for (int i = 0; i < found.length; i++) {
+                    paths[positions.get(i)] = found[i];
+                }
+            }
+        }
+        return paths;
+
+    }
+
     public abstract void startEvacuation();
 
+    /**
+     * @return the name the strategy has in the registry, null if it was not created by it
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * returns what the strategy keeps from one tick to the next, as a copy, so that a checkpoint
+     * can continue the evacuation exactly; is called between two ticks. Returns an empty object
+     * by default
+     *
+     * @return the state of the strategy
+     * @see #resumeEvacuation(JsonObject)
+     */
+    public JsonObject getState() {
+        return new JsonObject();
+    }
+
+    /**
+     * continues the evacuation of a building that was restored from a checkpoint, instead of
+     * starting it; the persons already have their paths. Does nothing by default
+     *
+     * @param state the state the strategy had when the checkpoint was taken
+     * @see #getState()
+     */
+    public void resumeEvacuation(JsonObject state) {
+    }
+
+    /**
+     * is called after the persons of the building moved in a tick of the evacuation;
+     * does nothing by default
+     */
+    public void tick() {
+    }
+
+    /**
+     * is called once when all persons left the building or another strategy replaced this one;
+     * a strategy removes the listeners it added to the building here. Does nothing by default
+     */
+    public void endEvacuation() {
+    }
+
 }
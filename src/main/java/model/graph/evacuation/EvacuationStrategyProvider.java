@@ -0,0 +1,40 @@
+package model.graph.evacuation;
+
+import model.graph.building.Building;
+
+import java.util.Map;
+
+/**
+ * Creates an evacuation strategy and describes it. Providers are found at runtime with a
+ * {@link java.util.ServiceLoader}, so that strategies can be added without changing the
+ * controller: a provider has to be public, have a public constructor without parameters and be
+ * listed in <code>META-INF/services/model.graph.evacuation.EvacuationStrategyProvider</code>.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see EvacuationStrategies
+ */
+public interface EvacuationStrategyProvider {
+
+    /**
+     * @return the name under which the strategy is shown and chosen; has to be unique
+     */
+    String getName();
+
+    /**
+     * @return the parameters of the strategy and their values, in the order they are shown
+     */
+    Map<String, String> getParameters();
+
+    /**
+     * @return whether the paths of the strategy may be asked for from several threads at once
+     */
+    boolean isParallelSafe();
+
+    /**
+     * @param building the building to evacuate
+     * @return a new strategy for the building, not started yet
+     */
+    EvacuationStrategy create(Building building);
+
+}
@@ -0,0 +1,691 @@
+package model.graph.evacuation;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import model.graph.Path;
+import model.graph.PathOntology;
+import model.graph.building.Building;
+import model.graph.building.Building.Passage;
+import model.graph.building.Building.Room;
+import model.graph.useragent.Person;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An evacuation that spreads the persons over the exits, so that the nearest exits are not
+ * overloaded while others stay empty.
+ * <p>
+ * Every exit lets as many persons out per tick as it is wide, in the order in which they
+ * arrive. A person is expected to leave an exit when it arrived there and all persons that
+ * arrive earlier have left: <code>max(arrival, ahead / width) + 1 / width</code>. At the start
+ * of the evacuation, every person is assigned to its nearest exit. Then, beginning with the
+ * persons that are expected to leave last, every person changes to the exit where it leaves
+ * first, if it leaves there at least {@link #SWITCH_MARGIN} ticks earlier.
+ * <p>
+ * Every {@link #REBALANCE_TICKS} ticks, this is repeated for some of the persons only. The
+ * persons are split by their id into as many slices, and one slice is rebalanced in every
+ * tick, so that no tick has to rebalance all persons at once. The arrival ticks of all persons
+ * at their exits are kept from one rebalancing to the next; the costs of a person to the exits
+ * are calculated again only if it got into another room, its next passage or its exit changed.
+ * These persons are balanced again, together with the persons of exits that are expected to be
+ * cleared more than {@link #SWITCH_MARGIN} ticks later than when they were balanced last, and,
+ * if an exit is expected to be cleared that much earlier, the persons of the exits that are
+ * cleared later than it. Which exits these are is decided when the first slice is rebalanced,
+ * for all slices. The costs of all these persons are calculated again before they are balanced.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ */
+public class ExitBalancingEvacuation extends EvacuationStrategy {
+
+    /**
+     * the number of ticks between two rebalancings
+     */
+    static final int REBALANCE_TICKS = 10;
+
+    /**
+     * how many ticks earlier a person has to leave at another exit to change to it
+     */
+    static final float SWITCH_MARGIN = 5;
+
+    /**
+     * if more than this share of the persons changed their arrival, the arrivals of all exits
+     * are sorted again instead of moving every single one
+     */
+    private static final int RESORT_SHARE = 16;
+
+    private PathOntology po;
+
+    /**
+     * all exits, sorted by their id, and how many persons can leave through them per tick
+     */
+    private Passage[] exits;
+    private float[] widths;
+    private final HashMap<Passage, Integer> exitIndices = new HashMap<>();
+
+    /**
+     * the persons whose exits are balanced, split into {@link #REBALANCE_TICKS} slices by their id
+     * and sorted by it, so that the order does not depend on their hash codes; and how many there
+     * are in all slices
+     */
+    private final ArrayList<ArrayList<Balanced>> slices = new ArrayList<>();
+    private int balancedCount;
+
+    /**
+     * for every exit the sorted arrival ticks of the balanced persons that go there, and how
+     * many there are
+     */
+    private float[][] arrivals;
+    private int[] arrivalCounts;
+
+    /**
+     * the tick every exit was expected to be cleared in at the last rebalancing
+     */
+    private float[] clearances;
+
+    /**
+     * the exits that are expected to be cleared later or earlier than at the last rebalancing,
+     * and the earliest clearance of the latter; decided for all slices by the first one
+     */
+    private boolean[] delayed;
+    private boolean[] hastened;
+    private float earliest;
+
+    private int ticks;
+
+    public ExitBalancingEvacuation(Building building) {
+        super(building);
+        po = PathOntology.getInstance(building);
+
+        ArrayList<Passage> sorted = new ArrayList<>(building.getExits());
+        sorted.sort(Comparator.comparingInt(passage -> passage.id));
+        exits = sorted.toArray(new Passage[sorted.size()]);
+        widths = new float[exits.length];
+        for (int e = 0; e < exits.length; e++) {
+            widths[e] = exits[e].getWidth();
+            exitIndices.put(exits[e], e);
+        }
+        arrivals = new float[exits.length][0];
+        arrivalCounts = new int[exits.length];
+        delayed = new boolean[exits.length];
+        hastened = new boolean[exits.length];
+        for (int slice = 0; slice < REBALANCE_TICKS; slice++) {
+            slices.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * @return the shortest path outside; the person may change its exit with the next rebalancing
+     */
+    @Override
+    public Path getPath(Person person) {
+        return po.getShortestPath(person.getIsOnCell(), null, person.isDisabled());
+    }
+
+    /**
+     * @return the shortest paths outside, searched once for all persons of a room
+     */
+    @Override
+    public Path[] getPaths(List<Person> persons) {
+        return getShortestPaths(persons, po);
+    }
+
+    @Override
+    public void startEvacuation() {
+
+        ArrayList<Person> evacuated = new ArrayList<>();
+        for (Person person : new HashSet<>(persons)) {
+            if (person.getIsInRoom() == null) {
+                person.remove();
+            } else {
+                person.startEvacuation();
+                evacuated.add(person);
+            }
+        }
+        evacuated.sort(Comparator.comparingInt(Person::getId));
+
+        ArrayList<Balanced> all = new ArrayList<>();
+        for (ArrayList<Balanced> slice : slices) {
+            slice.clear();
+        }
+        for (Person person : evacuated) {
+            Balanced b = new Balanced(person);
+            measure(b);
+            b.exit = nearest(b.costs);
+            b.arrival = b.exit < 0 ? 0 : b.costs[b.exit];
+            all.add(b);
+            slices.get(person.getId() % REBALANCE_TICKS).add(b);
+        }
+        balancedCount = all.size();
+        sortArrivals();
+
+        balance(all);
+
+        for (Balanced b : all) {
+            Person person = b.person;
+            if (b.exit < 0) {
+                person.setPath(po.getShortestPath(person.getIsOnCell(), null, person.isDisabled()));
+            } else {
+                person.setPath(po.getShortestPathTo(person.getIsOnCell(), exits[b.exit], person.isDisabled()));
+            }
+            // the next passage is known once the person has its path
+            b.next = person.getNextPassage();
+        }
+        clearances = getClearances();
+
+    }
+
+    /**
+     * @return the balanced persons of every slice with their costs, exits and arrivals, and the
+     * clearances the exits are compared with
+     */
+    @Override
+    public JsonObject getState() {
+
+        JsonObject state = new JsonObject();
+        state.addProperty("ticks", ticks);
+        if (clearances == null) {
+            return state;
+        }
+        JsonArray exitStates = new JsonArray();
+        for (int e = 0; e < exits.length; e++) {
+            JsonObject exit = new JsonObject();
+            exit.addProperty("clearance", clearances[e]);
+            exit.addProperty("delayed", delayed[e]);
+            exit.addProperty("hastened", hastened[e]);
+            exitStates.add(exit);
+        }
+        state.add("exits", exitStates);
+        state.addProperty("earliest", earliest);
+
+        JsonArray persons = new JsonArray();
+        for (ArrayList<Balanced> slice : slices) {
+            for (Balanced b : slice) {
+                JsonObject person = new JsonObject();
+                person.addProperty("id", b.id);
+                JsonArray costs = new JsonArray();
+                for (float cost : b.costs) {
+                    costs.add(cost);
+                }
+                person.add("costs", costs);
+                person.addProperty("at", b.at);
+                person.addProperty("room", b.room == null ? -1 : b.room.getId());
+                person.addProperty("next", b.next == null ? -1 : b.next.id);
+                person.addProperty("exit", b.exit);
+                person.addProperty("arrival", b.arrival);
+                persons.add(person);
+            }
+        }
+        state.add("persons", persons);
+        return state;
+
+    }
+
+    /**
+     * continues the balancing with the persons, arrivals and clearances of a checkpoint.
+     * Persons that left the building before are kept until their slice is rebalanced, as they
+     * were.
+     */
+    @Override
+    public void resumeEvacuation(JsonObject state) {
+
+        ticks = state.get("ticks").getAsInt();
+        if (!state.has("exits")) {
+            return;
+        }
+        JsonArray exitStates = state.getAsJsonArray("exits");
+        if (exitStates.size() != exits.length) {
+            throw new IllegalArgumentException("The state belongs to a building with other exits");
+        }
+        clearances = new float[exits.length];
+        for (int e = 0; e < exits.length; e++) {
+            JsonObject exit = exitStates.get(e).getAsJsonObject();
+            clearances[e] = exit.get("clearance").getAsFloat();
+            delayed[e] = exit.get("delayed").getAsBoolean();
+            hastened[e] = exit.get("hastened").getAsBoolean();
+        }
+        earliest = state.get("earliest").getAsFloat();
+
+        HashMap<Integer, Person> byId = new HashMap<>();
+        for (Person person : persons) {
+            byId.put(person.getId(), person);
+        }
+        for (ArrayList<Balanced> slice : slices) {
+            slice.clear();
+        }
+        balancedCount = 0;
+        for (JsonElement element : state.getAsJsonArray("persons")) {
+            JsonObject person = element.getAsJsonObject();
+            int id = person.get("id").getAsInt();
+            Balanced b = new Balanced(byId.get(id), id);
+            JsonArray costs = person.getAsJsonArray("costs");
+            b.costs = new float[costs.size()];
+            for (int e = 0; e < b.costs.length; e++) {
+                b.costs[e] = costs.get(e).getAsFloat();
+            }
+            b.at = person.get("at").getAsInt();
+            int room = person.get("room").getAsInt();
+            b.room = room < 0 ? null : building.getRoom(room);
+            int next = person.get("next").getAsInt();
+            b.next = next < 0 ? null : building.getPassage(next);
+            b.exit = person.get("exit").getAsInt();
+            b.arrival = person.get("arrival").getAsFloat();
+            slices.get(id % REBALANCE_TICKS).add(b);
+            balancedCount++;
+        }
+        sortArrivals();
+
+    }
+
+    /**
+     * lets the persons of one slice change their exit in every tick, so that every person may
+     * change its exit every {@link #REBALANCE_TICKS} ticks
+     */
+    @Override
+    public void tick() {
+
+        rebalance(++ticks % REBALANCE_TICKS);
+
+    }
+
+    /**
+     * updates the arrivals of the persons of a slice that got into another room or changed their
+     * way, and lets the persons of the slice whose exits were delayed or that might get out
+     * faster elsewhere change to other exits. Persons that are not in a room keep their exits.
+     *
+     * @param slice the slice, from 0 to {@link #REBALANCE_TICKS} - 1
+     */
+    void rebalance(int slice) {
+
+        if (clearances == null) {
+            return;
+        }
+        ArrayList<Balanced> balanced = slices.get(slice);
+
+        // forgets the persons that left, and measures the ones whose way changed again
+        Set<Person> inBuilding = building.getPersonsInBuildingView();
+        ArrayList<Balanced> changed = new ArrayList<>();
+        boolean[] movable = new boolean[balanced.size()];
+        int kept = 0;
+        for (Balanced b : balanced) {
+            Person person = b.person;
+            if (!inBuilding.contains(person)) {
+                b.exit = -1;
+                changed.add(b);
+                continue;
+            }
+            balanced.set(kept, b);
+            Passage last = person.getLastPassage();
+            if (last != null && person.getIsInRoom() != null && person.getIsOnCell().getRoom() != null) {
+                Integer exit = exitIndices.get(last);
+                if (exit != null) {
+                    movable[kept] = true;
+                    if (exit != b.exit || person.getIsInRoom() != b.room || person.getNextPassage() != b.next) {
+                        measure(b);
+                        b.next = person.getNextPassage();
+                        b.exit = exit;
+                        b.arrival = b.at + b.costs[exit];
+                        b.measured = true;
+                        changed.add(b);
+                    }
+                }
+            }
+            kept++;
+        }
+        balancedCount -= balanced.size() - kept;
+        balanced.subList(kept, balanced.size()).clear();
+        updateArrivals(changed);
+
+        // the exits that are expected to be cleared later or earlier than at the last rebalancing
+        float[] current = getClearances();
+        if (slice == 0) {
+            earliest = Float.POSITIVE_INFINITY;
+            for (int e = 0; e < exits.length; e++) {
+                delayed[e] = current[e] > clearances[e] + SWITCH_MARGIN;
+                hastened[e] = current[e] < clearances[e] - SWITCH_MARGIN;
+                if (hastened[e]) {
+                    earliest = Math.min(earliest, current[e]);
+                }
+            }
+        }
+
+        // the candidates walked since their costs were calculated, so they are calculated again
+        ArrayList<Balanced> candidates = new ArrayList<>();
+        ArrayList<Balanced> measured = new ArrayList<>();
+        for (int i = 0; i < balanced.size(); i++) {
+            Balanced b = balanced.get(i);
+            if (movable[i] && (b.measured || delayed[b.exit] || current[b.exit] > earliest + SWITCH_MARGIN)) {
+                candidates.add(b);
+                if (!b.measured) {
+                    measure(b);
+                    b.arrival = b.at + b.costs[b.exit];
+                    measured.add(b);
+                }
+            }
+            b.measured = false;
+        }
+        updateArrivals(measured);
+
+        int[] before = new int[candidates.size()];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = candidates.get(i).exit;
+        }
+        balance(candidates);
+        for (int i = 0; i < before.length; i++) {
+            Balanced b = candidates.get(i);
+            if (b.exit != before[i]) {
+                Person person = b.person;
+                Path path = po.getShortestPathTo(person.getIsOnCell(), exits[b.exit], person.isDisabled());
+                if (path.getCosts() < Integer.MAX_VALUE) {
+                    person.setPath(path);
+                    b.next = person.getNextPassage();
+                }
+            }
+        }
+        // the exits that were not balanced again keep the clearance they were compared with
+        if (slice == REBALANCE_TICKS - 1) {
+            float[] after = getClearances();
+            for (int e = 0; e < exits.length; e++) {
+                if (delayed[e] || hastened[e]) {
+                    clearances[e] = after[e];
+                }
+            }
+        }
+
+    }
+
+    /**
+     * calculates the costs of a person to every exit from where it is now
+     */
+    private void measure(Balanced b) {
+
+        Person person = b.person;
+        b.costs = po.getCostsTo(person.getIsOnCell(), exits, true, person.isDisabled());
+        b.at = ticks;
+        b.room = person.getIsInRoom();
+
+    }
+
+    /**
+     * lets persons change their exits, beginning with the ones that are expected to leave last
+     *
+     * @param candidates the persons that may change their exits, sorted by their id
+     */
+    private void balance(List<Balanced> candidates) {
+
+        int n = candidates.size();
+        final float now = ticks;
+
+        final float[] expected = new float[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            Balanced b = candidates.get(i);
+            expected[i] = b.exit < 0 ? 0 : leaving(b.arrival - now,
+                    personsBefore(arrivals[b.exit], arrivalCounts[b.exit], b.arrival), b.exit);
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                int compared = Float.compare(expected[o2], expected[o1]);
+                return compared != 0 ? compared : o1 - o2;
+            }
+        });
+
+        // persons that changed to an exit are counted as arriving before anybody else there,
+        // so that not all of them change to the same exit. Persons that leave an exit do not
+        // make it faster for the others, as they would have arrived after them.
+        int[] changed = new int[exits.length];
+        float[] ahead = new float[exits.length];
+        int[] chosen = new int[n];
+        Arrays.fill(chosen, -1);
+        for (int i : order) {
+            Balanced b = candidates.get(i);
+            if (b.exit < 0) {
+                continue;
+            }
+            for (int e = 0; e < exits.length; e++) {
+                ahead[e] = personsBefore(arrivals[e], arrivalCounts[e], b.at + b.costs[e]) + changed[e];
+            }
+            int best = -1;
+            float bestLeaving = leaving(b.arrival - now, ahead[b.exit], b.exit) - SWITCH_MARGIN;
+            for (int e = 0; e < exits.length; e++) {
+                float leaving = leaving(b.at + b.costs[e] - now, ahead[e], e);
+                if (b.costs[e] < Integer.MAX_VALUE && leaving < bestLeaving) {
+                    bestLeaving = leaving;
+                    best = e;
+                }
+            }
+            if (best >= 0) {
+                chosen[i] = best;
+                changed[best]++;
+            }
+        }
+
+        ArrayList<Balanced> moved = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (chosen[i] >= 0) {
+                Balanced b = candidates.get(i);
+                b.exit = chosen[i];
+                b.arrival = b.at + b.costs[b.exit];
+                moved.add(b);
+            }
+        }
+        updateArrivals(moved);
+
+    }
+
+    /**
+     * @return the tick in which every exit is expected to be cleared; the current tick for exits
+     * nobody goes to
+     */
+    private float[] getClearances() {
+
+        float[] cleared = new float[exits.length];
+        for (int e = 0; e < exits.length; e++) {
+            int count = arrivalCounts[e];
+            cleared[e] = count == 0 ? ticks : ticks + leaving(arrivals[e][count - 1] - ticks, count - 1, e);
+        }
+        return cleared;
+
+    }
+
+    /**
+     * moves the arrivals of persons whose exit or arrival changed; persons that left have no exit
+     */
+    private void updateArrivals(List<Balanced> changed) {
+
+        if (changed.size() * RESORT_SHARE > balancedCount) {
+            sortArrivals();
+            return;
+        }
+        for (Balanced b : changed) {
+            if (b.listedExit >= 0) {
+                int exit = b.listedExit;
+                int at = personsBefore(arrivals[exit], arrivalCounts[exit], b.listedArrival);
+                System.arraycopy(arrivals[exit], at + 1, arrivals[exit], at, arrivalCounts[exit] - at - 1);
+                arrivalCounts[exit]--;
+            }
+            if (b.exit >= 0) {
+                int exit = b.exit;
+                if (arrivalCounts[exit] == arrivals[exit].length) {
+                    arrivals[exit] = Arrays.copyOf(arrivals[exit], Math.max(8, 2 * arrivalCounts[exit]));
+                }
+                int at = personsBefore(arrivals[exit], arrivalCounts[exit], b.arrival);
+                System.arraycopy(arrivals[exit], at, arrivals[exit], at + 1, arrivalCounts[exit] - at);
+                arrivals[exit][at] = b.arrival;
+                arrivalCounts[exit]++;
+            }
+            b.listedExit = b.exit;
+            b.listedArrival = b.arrival;
+        }
+
+    }
+
+    /**
+     * collects and sorts the arrivals of all balanced persons at their exits
+     */
+    private void sortArrivals() {
+
+        Arrays.fill(arrivalCounts, 0);
+        for (ArrayList<Balanced> balanced : slices) {
+            for (Balanced b : balanced) {
+                if (b.exit >= 0) {
+                    arrivalCounts[b.exit]++;
+                }
+            }
+        }
+        for (int e = 0; e < exits.length; e++) {
+            if (arrivals[e].length < arrivalCounts[e]) {
+                arrivals[e] = new float[arrivalCounts[e]];
+            }
+            arrivalCounts[e] = 0;
+        }
+        for (ArrayList<Balanced> balanced : slices) {
+            for (Balanced b : balanced) {
+                if (b.exit >= 0) {
+                    arrivals[b.exit][arrivalCounts[b.exit]++] = b.arrival;
+                }
+                b.listedExit = b.exit;
+                b.listedArrival = b.arrival;
+            }
+        }
+        for (int e = 0; e < exits.length; e++) {
+            Arrays.sort(arrivals[e], 0, arrivalCounts[e]);
+        }
+
+    }
+
+    /**
+     * @return the exit with the lowest costs; -1 if no exit can be reached
+     */
+    private static int nearest(float[] costs) {
+
+        int nearest = -1;
+        for (int e = 0; e < costs.length; e++) {
+            if (costs[e] < Integer.MAX_VALUE && (nearest < 0 || costs[e] < costs[nearest])) {
+                nearest = e;
+            }
+        }
+        return nearest;
+
+    }
+
+    /**
+     * @param arrival when the person arrives at the exit, from now
+     * @param ahead   how many persons leave the exit before
+     * @return when the person leaves the exit, from now
+     */
+    private float leaving(float arrival, float ahead, int exit) {
+        return Math.max(arrival, ahead / widths[exit]) + 1 / widths[exit];
+    }
+
+    /**
+     * @return the number of the first <code>count</code> sorted arrival times that are lower
+     * than the given one
+     */
+    private static int personsBefore(float[] arrivals, int count, float arrival) {
+
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (arrivals[middle] < arrival) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+
+    }
+
+    /**
+     * a person whose exit is balanced, with what was known about it when its costs to the exits
+     * were calculated the last time
+     */
+    private static class Balanced {
+
+        /**
+         * the person, null if it left the building before a checkpoint, and its id
+         */
+        final Person person;
+        final int id;
+
+        /**
+         * the costs to every exit from where the person was, the tick they were calculated in,
+         * the room the person was in and the next passage of its path
+         */
+        float[] costs;
+        int at;
+        Room room;
+        Passage next;
+
+        /**
+         * whether the costs were calculated in this rebalancing
+         */
+        boolean measured;
+
+        /**
+         * the exit of the person, -1 if it can not reach any or left, and the tick it arrives
+         * there; and the same as it is in the arrivals of the exits
+         */
+        int exit = -1;
+        float arrival;
+        int listedExit = -1;
+        float listedArrival;
+
+        Balanced(Person person) {
+            this(person, person.getId());
+        }
+
+        Balanced(Person person, int id) {
+            this.person = person;
+            this.id = id;
+        }
+
+    }
+
+    /**
+     * provides the evacuation that balances the load of the exits
+     */
+    public static class Provider implements EvacuationStrategyProvider {
+
+        @Override
+        public String getName() {
+            return "ExitBalancing";
+        }
+
+        @Override
+        public Map<String, String> getParameters() {
+            Map<String, String> parameters = new LinkedHashMap<>();
+            parameters.put("rebalanceTicks", String.valueOf(REBALANCE_TICKS));
+            parameters.put("switchMargin", String.valueOf(SWITCH_MARGIN));
+            return parameters;
+        }
+
+        /**
+         * @return false, the rebalancing changes the paths of many persons at once
+         */
+        @Override
+        public boolean isParallelSafe() {
+            return false;
+        }
+
+        @Override
+        public EvacuationStrategy create(Building building) {
+            return new ExitBalancingEvacuation(building);
+        }
+
+    }
+
+}
@@ -0,0 +1,340 @@
+package model.graph.evacuation;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import model.graph.Path;
+import model.graph.PathOntology;
+import model.graph.building.Building;
+import model.graph.building.Building.Passage;
+import model.graph.building.Building.Room;
+import model.graph.building.DensityField;
+import model.graph.building.EvacuationMetrics;
+import model.graph.building.Grid;
+import model.graph.building.Grid.Cell;
+import model.graph.building.HazardListener;
+import model.graph.useragent.Person;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+
+/**
+ * Plans the paths of evacuating persons again when the passages they go to are congested.
+ * <p>
+ * Every {@link #REROUTE_TICKS} ticks, a passage is congested if more persons queue in front of
+ * it than {@link #QUEUE_THRESHOLD} times its width, or if its cells were occupied for more than
+ * {@link #DENSITY_THRESHOLD} of the recent ticks, as far as the density is tracked. Only
+ * persons whose next passage is congested are planned again. Their paths are chosen from the
+ * paths out of their room, which are kept for every room; the costs of a path are its length
+ * plus the ticks persons wait in front of its passages. A person changes its path if the new
+ * one is at least {@link #SWITCH_MARGIN} cheaper.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ */
+class Rerouting {
+
+    /**
+     * the number of ticks between two reroutings
+     */
+    static final int REROUTE_TICKS = 5;
+
+    /**
+     * how many persons per cell of width have to queue in front of a passage to congest it
+     */
+    static final float QUEUE_THRESHOLD = 2;
+
+    /**
+     * the share of the recent ticks the cells of a passage have to be occupied to congest it
+     */
+    static final float DENSITY_THRESHOLD = 0.9f;
+
+    /**
+     * how much cheaper a new path has to be
+     */
+    static final float SWITCH_MARGIN = 3;
+
+    private final Building building;
+
+    private final PathOntology po;
+
+    /**
+     * the paths out of every room, to every exit, for persons without and with a disability
+     */
+    private final HashMap<Room, Route[]> routes = new HashMap<>();
+    private final HashMap<Room, Route[]> disabledRoutes = new HashMap<>();
+
+    /**
+     * the ticks persons wait in front of every passage, by its id
+     */
+    private float[] waiting = new float[0];
+
+    private int ticks;
+
+    /**
+     * the number of reroutings; the waiting times of the routes are summed up once per rerouting
+     */
+    private int rounds;
+
+    /**
+     * forgets the kept paths once a passage or a room changed, as they are not the shortest
+     * anymore; removed by {@link #release()}
+     */
+    private final HazardListener listener = new HazardListener() {
+        @Override
+        public void passageClosed(Passage passage) {
+            forget();
+        }
+
+        @Override
+        public void passageReopened(Passage passage) {
+            forget();
+        }
+
+        @Override
+        public void roomPenaltyChanged(Room room, float oldPenalty) {
+            forget();
+        }
+    };
+
+    Rerouting(Building building, PathOntology po) {
+        this.building = building;
+        this.po = po;
+        building.addHazardListener(listener);
+    }
+
+    /**
+     * stops listening to the building, so that the building does not keep this rerouting and
+     * its paths after the evacuation
+     */
+    void release() {
+        building.removeHazardListener(listener);
+        forget();
+    }
+
+    /**
+     * forgets the kept paths of all rooms
+     */
+    private void forget() {
+        routes.clear();
+        disabledRoutes.clear();
+    }
+
+    /**
+     * @return the ticks, the number of reroutings and the waiting times, for a checkpoint
+     */
+    JsonObject getState() {
+
+        JsonObject state = new JsonObject();
+        state.addProperty("ticks", ticks);
+        state.addProperty("rounds", rounds);
+        JsonArray times = new JsonArray();
+        for (float time : waiting) {
+            times.add(time);
+        }
+        state.add("waiting", times);
+        return state;
+
+    }
+
+    /**
+     * continues with the state of a checkpoint; the paths out of the rooms are found again
+     *
+     * @param state what {@link #getState()} returned
+     */
+    void resume(JsonObject state) {
+
+        ticks = state.get("ticks").getAsInt();
+        rounds = state.get("rounds").getAsInt();
+        JsonArray times = state.getAsJsonArray("waiting");
+        waiting = new float[times.size()];
+        for (int i = 0; i < waiting.length; i++) {
+            waiting[i] = times.get(i).getAsFloat();
+        }
+
+    }
+
+    /**
+     * plans the paths again every {@link #REROUTE_TICKS} ticks
+     */
+    void tick() {
+
+        if (++ticks % REROUTE_TICKS == 0) {
+            reroute();
+        }
+
+    }
+
+    /**
+     * plans the paths of all persons again whose next passage is congested; only the persons
+     * heading to the congested passages are looked at
+     *
+     * @return the number of persons that changed their path
+     */
+    int reroute() {
+
+        boolean[] congested = measure();
+        if (congested == null) {
+            return 0;
+        }
+        rounds++;
+
+        ArrayList<Person> changing = new ArrayList<>();
+        ArrayList<Path> changed = new ArrayList<>();
+        EvacuationMetrics metrics = building.getMetrics();
+        for (int p = 0; p < metrics.getPassageCount(); p++) {
+            Passage next = metrics.getPassage(p);
+            if (congested[next.id]) {
+                for (Person person : building.getPersonsHeadingTo(next)) {
+                    reroute(person, next, changing, changed);
+                }
+            }
+        }
+
+        // the persons heading to a passage may not be iterated while the paths change
+        for (int i = 0; i < changing.size(); i++) {
+            changing.get(i).setPath(new Path(changed.get(i)));
+        }
+        return changing.size();
+
+    }
+
+    /**
+     * chooses the cheapest route for a person whose next passage is congested
+     *
+     * @param person   the person
+     * @param next     the next passage of the person
+     * @param changing the persons that change their path, to which the person is added
+     * @param changed  the new paths of these persons
+     */
+    private void reroute(Person person, Passage next, ArrayList<Person> changing, ArrayList<Path> changed) {
+
+        Cell cell = person.getIsOnCell();
+        if (person.getState() != Person.STATE.EVACUATION || person.getIsInRoom() == null
+                || cell.getRoom() == null) {
+            return;
+        }
+
+        Passage last = person.getLastPassage();
+        float current = Float.POSITIVE_INFINITY;
+        Route best = null;
+        float bestCosts = Float.POSITIVE_INFINITY;
+        for (Route route : getRoutes(cell.getRoom(), person.isDisabled())) {
+            if (route.round != rounds) {
+                route.round = rounds;
+                route.waiting = 0;
+                for (Passage passage : route.way) {
+                    route.waiting += waiting[passage.id];
+                }
+            }
+            float costs = po.getDistance(cell, route.way[0]) + route.path.getCosts() + route.waiting;
+            if (route.way[0].equals(next) && route.way[route.way.length - 1].equals(last)) {
+                current = costs;
+            }
+            if (costs < bestCosts) {
+                bestCosts = costs;
+                best = route;
+            }
+        }
+
+        // persons whose path does not start in their room are not planned again
+        if (current < Float.POSITIVE_INFINITY && bestCosts + SWITCH_MARGIN < current) {
+            changing.add(person);
+            changed.add(best.path);
+        }
+
+    }
+
+    /**
+     * updates the waiting times in front of the passages
+     *
+     * @return for every passage id whether it is congested; null if none is
+     */
+    private boolean[] measure() {
+
+        EvacuationMetrics metrics = building.getMetrics();
+        DensityField density = building.getDensityField();
+        Grid grid = building.getGrid();
+
+        int size = 0;
+        for (int p = 0; p < metrics.getPassageCount(); p++) {
+            size = Math.max(size, metrics.getPassage(p).id + 1);
+        }
+        if (waiting.length != size) {
+            waiting = new float[size];
+        }
+        boolean[] congested = new boolean[size];
+        boolean any = false;
+
+        for (int p = 0; p < metrics.getPassageCount(); p++) {
+            Passage passage = metrics.getPassage(p);
+            int width = passage.getWidth();
+            waiting[passage.id] = (float) metrics.getQueueLength(p) / width;
+            boolean full = metrics.getQueueLength(p) > QUEUE_THRESHOLD * width;
+            if (!full && density != null) {
+                HashSet<Cell> cells = passage.getRoomChangingCells();
+                float occupied = 0;
+                for (Cell cell : cells) {
+                    int index = grid.getIndex(cell);
+                    occupied += index < 0 ? 0 : density.getDensity(index);
+                }
+                full = occupied > DENSITY_THRESHOLD * cells.size();
+            }
+            congested[passage.id] = full;
+            any |= full;
+        }
+        return any ? congested : null;
+
+    }
+
+    /**
+     * @return the shortest routes out of a room, one for every pair of a passage of the room and
+     * an exit; calculated the first time they are needed
+     */
+    private Route[] getRoutes(Room room, boolean disabled) {
+
+        HashMap<Room, Route[]> roomRoutes = disabled ? disabledRoutes : routes;
+        Route[] known = roomRoutes.get(room);
+        if (known != null) {
+            return known;
+        }
+
+        HashSet<Passage> firsts = room.getPassages();
+        firsts.addAll(room.getExits());
+        LinkedList<Route> found = new LinkedList<>();
+        for (Passage first : firsts) {
+            for (Passage exit : building.getExits()) {
+                if (disabled && (first.isStair() || exit.isStair())) {
+                    continue;
+                }
+                Path path = po.getShortestPath(room, first, exit, disabled);
+                if (path.getCosts() < Integer.MAX_VALUE && !path.getWay().isEmpty()) {
+                    found.add(new Route(path));
+                }
+            }
+        }
+        known = found.toArray(new Route[found.size()]);
+        roomRoutes.put(room, known);
+        return known;
+
+    }
+
+    /**
+     * a shortest path out of a room, its passages and the ticks persons wait in front of them
+     */
+    private static class Route {
+
+        final Path path;
+        final Passage[] way;
+        float waiting;
+        int round;
+
+        Route(Path path) {
+            this.path = path;
+            this.way = path.getWay().toArray(new Passage[0]);
+        }
+
+    }
+
+}
@@ -1,19 +1,27 @@
 package model.graph.evacuation;
 
+import com.google.gson.JsonObject;
 import model.graph.Path;
 import model.graph.PathOntology;
 import model.graph.building.Building;
 import model.graph.useragent.Person;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class ShortestPathsEvacuation extends EvacuationStrategy {
 
     PathOntology po;
 
+    private Rerouting rerouting;
+
     public ShortestPathsEvacuation(Building building) {
         super(building);
         po = PathOntology.getInstance(building);
+        rerouting = new Rerouting(building, po);
     }
 
     @Override
@@ -21,20 +29,100 @@ public class ShortestPathsEvacuation extends EvacuationStrategy {
         return po.getShortestPath(person.getIsOnCell(), null, person.isDisabled());
     }
 
+    /**
+     * @return the shortest paths outside, searched once for all persons of a room
+     */
+    @Override
+    public Path[] getPaths(List<Person> persons) {
+        return getShortestPaths(persons, po);
+    }
+
     @Override
     public void startEvacuation() {
         HashSet<Person> personCopy = new HashSet<>(persons);
+        ArrayList<Person> evacuated = new ArrayList<>();
         for (Person person : personCopy) {
 
             if (person.getIsInRoom() == null) {
                 person.remove();
             } else {
                 person.startEvacuation();
-                person.setPath(po.getShortestPath(person.getIsOnCell(), null, person.isDisabled()));
+                evacuated.add(person);
             }
 
         }
+
+        Path[] paths = getPaths(evacuated);
+        for (int i = 0; i < paths.length; i++) {
+            evacuated.get(i).setPath(paths[i]);
+        }
+    }
+
+    /**
+     * @return the state of the rerouting
+     */
+    @Override
+    public JsonObject getState() {
+        return rerouting.getState();
+    }
+
+    /**
+     * continues the rerouting where it was; the persons keep their paths
+     */
+    @Override
+    public void resumeEvacuation(JsonObject state) {
+        rerouting.resume(state);
+    }
+
+    /**
+     * lets the persons in front of congested passages take other paths
+     */
+    @Override
+    public void tick() {
+        rerouting.tick();
+    }
+
+    /**
+     * removes the listener of the rerouting from the building
+     */
+    @Override
+    public void endEvacuation() {
+        rerouting.release();
     }
 
+    /**
+     * provides the evacuation along the shortest paths, with the rerouting of congested passages
+     */
+    public static class Provider implements EvacuationStrategyProvider {
+
+        @Override
+        public String getName() {
+            return "ShortestPath";
+        }
+
+        @Override
+        public Map<String, String> getParameters() {
+            Map<String, String> parameters = new LinkedHashMap<>();
+            parameters.put("rerouteTicks", String.valueOf(Rerouting.REROUTE_TICKS));
+            parameters.put("queueThreshold", String.valueOf(Rerouting.QUEUE_THRESHOLD));
+            parameters.put("densityThreshold", String.valueOf(Rerouting.DENSITY_THRESHOLD));
+            parameters.put("switchMargin", String.valueOf(Rerouting.SWITCH_MARGIN));
+            return parameters;
+        }
+
+        /**
+         * @return false, the rerouting changes the paths of all persons at once
+         */
+        @Override
+        public boolean isParallelSafe() {
+            return false;
+        }
+
+        @Override
+        public EvacuationStrategy create(Building building) {
+            return new ShortestPathsEvacuation(building);
+        }
+
+    }
 
 }
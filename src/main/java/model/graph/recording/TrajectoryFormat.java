@@ -0,0 +1,113 @@
+package model.graph.recording;
+
+import java.util.Arrays;
+
+/**
+ * Constants and helpers of the trajectory file format.
+ * <p>
+ * A trajectory file starts with a header (magic number, version, grid size, number of floors,
+ * keyframe interval), followed by one frame per recorded tick. Every frame consists of
+ * the tick number (long), its type (byte, keyframe or delta frame), the number of persons,
+ * the uncompressed and the compressed length of its data (ints) and the deflated data.
+ * The data contains three columns: the ids of all persons in ascending order, each as
+ * the difference to the previous id; the cell index of every person, absolute in keyframes
+ * and as the difference to the same person's cell in the previous frame in delta frames;
+ * and one byte per person with the ordinal of its state and the disabled-flag.
+ * Numbers are stored as zigzag-encoded variable-length integers.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see TrajectoryRecorder
+ * @see TrajectoryReader
+ */
+final class TrajectoryFormat {
+
+    /**
+     * the first bytes of every trajectory file ("TRJF")
+     */
+    static final int MAGIC = 0x54524a46;
+
+    static final int VERSION = 1;
+
+    /**
+     * the length of the file header in bytes
+     */
+    static final int HEADER_LENGTH = 24;
+
+    /**
+     * the length of the header of every frame in bytes
+     */
+    static final int FRAME_HEADER_LENGTH = 21;
+
+    static final byte DELTA_FRAME = 0;
+    static final byte KEYFRAME = 1;
+
+    /**
+     * the bit of the state byte that marks disabled persons
+     */
+    static final int DISABLED_FLAG = 0x80;
+
+    private TrajectoryFormat() {}
+
+    /**
+     * a growable byte array that numbers are written to
+     */
+    static final class Bytes {
+
+        byte[] data;
+        int length;
+
+        Bytes(int capacity) {
+            data = new byte[Math.max(capacity, 16)];
+        }
+
+        void clear() {
+            length = 0;
+        }
+
+        void ensureCapacity(int additional) {
+            if (length + additional > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + additional));
+            }
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            data[length++] = (byte) value;
+        }
+
+        /**
+         * writes a zigzag-encoded variable-length integer
+         */
+        void writeVarInt(int value) {
+            int zigzag = (value << 1) ^ (value >> 31);
+            ensureCapacity(5);
+            while ((zigzag & ~0x7f) != 0) {
+                data[length++] = (byte) ((zigzag & 0x7f) | 0x80);
+                zigzag >>>= 7;
+            }
+            data[length++] = (byte) zigzag;
+        }
+    }
+
+    /**
+     * reads a zigzag-encoded variable-length integer
+     *
+     * @param data     the data
+     * @param position the position to read at; the position after the number is stored
+     *                 in its first element
+     * @return the number
+     */
+    static int readVarInt(byte[] data, int[] position) {
+        int zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = data[position[0]++];
+            zigzag |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+}
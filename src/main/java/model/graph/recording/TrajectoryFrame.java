@@ -0,0 +1,164 @@
+package model.graph.recording;
+
+import model.graph.useragent.Person;
+
+import java.util.Arrays;
+
+/**
+ * The recorded state of all persons in a building at one tick: their ids, the index of the
+ * cell they are on and their state. The persons are ordered by their id.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see TrajectoryReader
+ * @see model.graph.building.Grid#getCellByIndex(int)
+ */
+public class TrajectoryFrame {
+
+    private static final Person.STATE[] STATES = Person.STATE.values();
+
+    private long tick;
+    private boolean keyframe;
+    private int size;
+    private int[] ids;
+    private int[] cells;
+    private byte[] states;
+
+    TrajectoryFrame() {
+        ids = new int[0];
+        cells = new int[0];
+        states = new byte[0];
+    }
+
+    /**
+     * @return the tick this frame was recorded at
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * @return whether this frame can be decoded without its predecessors
+     */
+    public boolean isKeyframe() {
+        return keyframe;
+    }
+
+    /**
+     * @return the number of persons in this frame
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i the position of a person in this frame
+     * @return the id of the person
+     */
+    public int getId(int i) {
+        return ids[i];
+    }
+
+    /**
+     * @param i the position of a person in this frame
+     * @return the index of the cell the person is on, -1 if the cell has no index
+     */
+    public int getCellIndex(int i) {
+        return cells[i];
+    }
+
+    /**
+     * @param i the position of a person in this frame
+     * @return the state of the person
+     */
+    public Person.STATE getState(int i) {
+        return STATES[(states[i] & 0xff) & ~TrajectoryFormat.DISABLED_FLAG];
+    }
+
+    /**
+     * @param i the position of a person in this frame
+     * @return whether the person is disabled
+     */
+    public boolean isDisabled(int i) {
+        return (states[i] & TrajectoryFormat.DISABLED_FLAG) != 0;
+    }
+
+    /**
+     * @param id the id of a person
+     * @return the position of the person in this frame, or a negative number if it is not in it
+     */
+    public int indexOf(int id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    /**
+     * decodes the data of a frame into this frame
+     *
+     * @param tick     the tick of the frame
+     * @param keyframe whether the frame is a keyframe
+     * @param count    the number of persons in the frame
+     * @param data     the uncompressed data of the frame
+     * @param previous the frame before; is only used for delta frames
+     */
+    void decode(long tick, boolean keyframe, int count, byte[] data, TrajectoryFrame previous) {
+
+        if (!keyframe && previous == null) {
+            throw new IllegalStateException("Delta frame without previous frame");
+        }
+        this.tick = tick;
+        this.keyframe = keyframe;
+        this.size = count;
+        if (ids.length < count) {
+            ids = new int[count];
+            cells = new int[count];
+            states = new byte[count];
+        }
+
+        int[] position = {0};
+        int id = 0;
+        for (int i = 0; i < count; i++) {
+            id += TrajectoryFormat.readVarInt(data, position);
+            ids[i] = id;
+        }
+
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            int value = TrajectoryFormat.readVarInt(data, position);
+            if (keyframe) {
+                cells[i] = value;
+            } else {
+                while (j < previous.size && previous.ids[j] < ids[i]) j++;
+                if (j < previous.size && previous.ids[j] == ids[i]) {
+                    cells[i] = previous.cells[j] + value;
+                } else {
+                    cells[i] = value;
+                }
+            }
+        }
+
+        System.arraycopy(data, position[0], states, 0, count);
+
+    }
+
+    /**
+     * makes this frame a copy of another frame
+     *
+     * @param other the frame to copy
+     * @return this frame
+     */
+    TrajectoryFrame copyFrom(TrajectoryFrame other) {
+        tick = other.tick;
+        keyframe = other.keyframe;
+        size = other.size;
+        if (ids.length < size) {
+            ids = new int[size];
+            cells = new int[size];
+            states = new byte[size];
+        }
+        System.arraycopy(other.ids, 0, ids, 0, size);
+        System.arraycopy(other.cells, 0, cells, 0, size);
+        System.arraycopy(other.states, 0, states, 0, size);
+        return this;
+    }
+
+}
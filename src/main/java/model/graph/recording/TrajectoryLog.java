@@ -0,0 +1,243 @@
+package model.graph.recording;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+
+/**
+ * Gives random access to the frames of a file written by a <code>TrajectoryRecorder</code>.
+ * The file is memory-mapped in windows and indexed once when it is opened. A frame is decoded
+ * starting at the last keyframe before it; stepping forward from the last returned frame only
+ * decodes the frames in between.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see TrajectoryRecorder
+ * @see TrajectoryPlayer
+ */
+public class TrajectoryLog implements Closeable {
+
+    /**
+     * the maximal size of the memory-mapped part of the file
+     */
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    private final FileChannel channel;
+
+    private final int gridSizeX;
+    private final int gridSizeY;
+    private final int floors;
+
+    /**
+     * the number of frames in the file
+     */
+    private int frameCount;
+    /**
+     * position of the header of every frame in the file
+     */
+    private long[] offsets;
+    private long[] ticks;
+    private boolean[] keyframes;
+
+    /**
+     * the memory-mapped part of the file, starting at windowStart
+     */
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[0];
+    private byte[] raw = new byte[0];
+
+    /**
+     * the last decoded frame and its number, -1 if none was decoded yet
+     */
+    private TrajectoryFrame current = new TrajectoryFrame();
+    private TrajectoryFrame scratch = new TrajectoryFrame();
+    private int currentFrame = -1;
+
+    /**
+     * opens a trajectory file and indexes its frames. A damaged last frame, e.g. because the
+     * recording was not closed, is ignored.
+     *
+     * @param file the trajectory file
+     * @throws IOException if the file can not be read or is no trajectory file
+     */
+    public TrajectoryLog(File file) throws IOException {
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < TrajectoryFormat.HEADER_LENGTH) {
+                throw new IOException(file + " is no trajectory file");
+            }
+            map(0, TrajectoryFormat.HEADER_LENGTH);
+            if (window.getInt(0) != TrajectoryFormat.MAGIC || window.getInt(4) != TrajectoryFormat.VERSION) {
+                throw new IOException(file + " is no trajectory file");
+            }
+            gridSizeX = window.getInt(8);
+            gridSizeY = window.getInt(12);
+            floors = window.getInt(16);
+
+            offsets = new long[256];
+            ticks = new long[256];
+            keyframes = new boolean[256];
+            long offset = TrajectoryFormat.HEADER_LENGTH;
+            while (offset + TrajectoryFormat.FRAME_HEADER_LENGTH <= size) {
+                int header = map(offset, TrajectoryFormat.FRAME_HEADER_LENGTH);
+                int compressedLength = window.getInt(header + 17);
+                long next = offset + TrajectoryFormat.FRAME_HEADER_LENGTH + compressedLength;
+                if (compressedLength < 0 || next > size) {
+                    break;
+                }
+                if (frameCount == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, frameCount * 2);
+                    ticks = Arrays.copyOf(ticks, frameCount * 2);
+                    keyframes = Arrays.copyOf(keyframes, frameCount * 2);
+                }
+                offsets[frameCount] = offset;
+                ticks[frameCount] = window.getLong(header);
+                keyframes[frameCount] = window.get(header + 8) == TrajectoryFormat.KEYFRAME;
+                frameCount++;
+                offset = next;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+    }
+
+    /**
+     * makes sure that a part of the file is memory-mapped
+     *
+     * @param position the position in the file
+     * @param length   the length of the part
+     * @return the position of the part in the window
+     */
+    private int map(long position, int length) throws IOException {
+        if (window == null || position < windowStart || position + length > windowStart + window.capacity()) {
+            long size = Math.min(Math.max(WINDOW_SIZE, length), channel.size() - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            windowStart = position;
+        }
+        return (int) (position - windowStart);
+    }
+
+    /**
+     * @return the grid size in x-direction of the recorded building
+     */
+    public int getGridSizeX() {
+        return gridSizeX;
+    }
+
+    /**
+     * @return the grid size in y-direction of the recorded building
+     */
+    public int getGridSizeY() {
+        return gridSizeY;
+    }
+
+    /**
+     * @return the number of floors of the recorded building
+     */
+    public int getFloors() {
+        return floors;
+    }
+
+    /**
+     * @return the number of recorded frames
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @param frame the number of a frame
+     * @return the tick the frame was recorded at
+     */
+    public long getTick(int frame) {
+        return ticks[frame];
+    }
+
+    /**
+     * @param tick a tick
+     * @return the number of the last frame that was recorded at or before this tick, 0 if there is none
+     */
+    public int findFrame(long tick) {
+        int index = Arrays.binarySearch(ticks, 0, frameCount, tick);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return Math.max(index, 0);
+    }
+
+    /**
+     * decodes a frame
+     *
+     * @param frame the number of the frame
+     * @return a copy of the frame
+     * @throws IOException if the file is damaged
+     */
+    public TrajectoryFrame getFrame(int frame) throws IOException {
+
+        if (frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " does not exist");
+        }
+
+        int start = frame;
+        while (!keyframes[start]) {
+            start--;
+        }
+        // going on from the last decoded frame is cheaper than starting at the keyframe
+        if (currentFrame >= start && currentFrame <= frame) {
+            start = currentFrame + 1;
+        }
+
+        for (int i = start; i <= frame; i++) {
+            decode(i);
+        }
+        return new TrajectoryFrame().copyFrom(current);
+
+    }
+
+    /**
+     * decodes a frame into <code>current</code>, using the frame before
+     */
+    private void decode(int frame) throws IOException {
+
+        int header = map(offsets[frame], TrajectoryFormat.FRAME_HEADER_LENGTH);
+        int count = window.getInt(header + 9);
+        int rawLength = window.getInt(header + 13);
+        int compressedLength = window.getInt(header + 17);
+
+        int data = map(offsets[frame] + TrajectoryFormat.FRAME_HEADER_LENGTH, compressedLength);
+        if (compressed.length < compressedLength) compressed = new byte[compressedLength];
+        if (raw.length < rawLength) raw = new byte[rawLength];
+        ByteBuffer source = window.duplicate();
+        source.position(data);
+        source.get(compressed, 0, compressedLength);
+        TrajectoryReader.inflate(inflater, compressed, compressedLength, raw, rawLength);
+
+        scratch.decode(ticks[frame], keyframes[frame], count, raw, currentFrame == frame - 1 ? current : null);
+        TrajectoryFrame temp = current;
+        current = scratch;
+        scratch = temp;
+        currentFrame = frame;
+
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        window = null;
+        channel.close();
+    }
+
+}
@@ -0,0 +1,138 @@
+package model.graph.recording;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Plays back a recorded trajectory file without simulating the building again. The player
+ * can be moved to any frame and stepped at any speed, also backwards. It keeps the frame the
+ * last step started at and the frame it ended at, so that the movement in between can be
+ * interpolated when it is drawn.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see TrajectoryLog
+ */
+public class TrajectoryPlayer implements Closeable {
+
+    private final TrajectoryLog log;
+
+    /**
+     * the current position in frames; may be between two frames if the speed is not an integer
+     */
+    private double position = 0;
+
+    /**
+     * the number of frames the player moves in one step; negative values play backwards
+     */
+    private double speed = 1;
+
+    /**
+     * the frame the last step started at and the frame it ended at
+     */
+    private TrajectoryFrame fromFrame;
+    private TrajectoryFrame toFrame;
+
+    /**
+     * @param file the trajectory file
+     * @throws IOException if the file can not be read or contains no frames
+     */
+    public TrajectoryPlayer(File file) throws IOException {
+        log = new TrajectoryLog(file);
+        if (log.getFrameCount() == 0) {
+            log.close();
+            throw new IOException(file + " contains no frames");
+        }
+        seek(0);
+    }
+
+    /**
+     * @return the log the frames are read from
+     */
+    public TrajectoryLog getLog() {
+        return log;
+    }
+
+    /**
+     * @return the number of the current frame
+     */
+    public int getFrame() {
+        return (int) position;
+    }
+
+    /**
+     * @return the number of frames the player moves in one step
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @param speed the number of frames the player moves in one step; negative values play backwards
+     */
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * jumps to a frame without any movement
+     *
+     * @param frame the number of the frame
+     * @throws IOException if the file is damaged
+     */
+    public synchronized void seek(int frame) throws IOException {
+        position = Math.max(0, Math.min(frame, log.getFrameCount() - 1));
+        toFrame = log.getFrame((int) position);
+        fromFrame = toFrame;
+    }
+
+    /**
+     * jumps to the frame that was recorded at a tick
+     *
+     * @param tick the tick
+     * @throws IOException if the file is damaged
+     */
+    public void seekTick(long tick) throws IOException {
+        seek(log.findFrame(tick));
+    }
+
+    /**
+     * moves the player by its speed
+     *
+     * @return whether the player moved; false if it is at the first or last frame
+     * @throws IOException if the file is damaged
+     */
+    public synchronized boolean step() throws IOException {
+
+        int oldFrame = (int) position;
+        position = Math.max(0, Math.min(position + speed, log.getFrameCount() - 1));
+        fromFrame = toFrame;
+        if ((int) position != oldFrame) {
+            toFrame = log.getFrame((int) position);
+            return true;
+        }
+        return speed != 0 && position > 0 && position < log.getFrameCount() - 1;
+
+    }
+
+    /**
+     * @return the frame the last step started at
+     */
+    public synchronized TrajectoryFrame getFromFrame() {
+        return fromFrame;
+    }
+
+    /**
+     * @return the frame the last step ended at
+     */
+    public synchronized TrajectoryFrame getToFrame() {
+        return toFrame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+}
@@ -0,0 +1,150 @@
+package model.graph.recording;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a file written by a <code>TrajectoryRecorder</code> frame by frame, from the first
+ * to the last recorded tick.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see TrajectoryRecorder
+ * @see TrajectoryFrame
+ */
+public class TrajectoryReader implements Closeable {
+
+    private final DataInputStream in;
+
+    private final int gridSizeX;
+    private final int gridSizeY;
+    private final int floors;
+    private final int keyframeInterval;
+
+    private final Inflater inflater = new Inflater();
+
+    private byte[] compressed = new byte[0];
+    private byte[] raw = new byte[0];
+
+    /**
+     * the last frame that was read
+     */
+    private TrajectoryFrame previous;
+
+    /**
+     * opens a trajectory file and reads its header
+     *
+     * @param file the trajectory file
+     * @throws IOException if the file can not be read or is no trajectory file
+     */
+    public TrajectoryReader(File file) throws IOException {
+
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        if (in.readInt() != TrajectoryFormat.MAGIC || in.readInt() != TrajectoryFormat.VERSION) {
+            in.close();
+            throw new IOException(file + " is no trajectory file");
+        }
+        gridSizeX = in.readInt();
+        gridSizeY = in.readInt();
+        floors = in.readInt();
+        keyframeInterval = in.readInt();
+
+    }
+
+    /**
+     * @return the grid size in x-direction of the recorded building
+     */
+    public int getGridSizeX() {
+        return gridSizeX;
+    }
+
+    /**
+     * @return the grid size in y-direction of the recorded building
+     */
+    public int getGridSizeY() {
+        return gridSizeY;
+    }
+
+    /**
+     * @return the number of floors of the recorded building
+     */
+    public int getFloors() {
+        return floors;
+    }
+
+    /**
+     * @return the number of frames between two keyframes
+     */
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * reads the next frame
+     *
+     * @return the next frame, or null if all frames were read
+     * @throws IOException if the file is damaged
+     */
+    public TrajectoryFrame next() throws IOException {
+
+        long tick;
+        try {
+            tick = in.readLong();
+        } catch (EOFException e) {
+            return null;
+        }
+        boolean keyframe = in.readByte() == TrajectoryFormat.KEYFRAME;
+        int count = in.readInt();
+        int rawLength = in.readInt();
+        int compressedLength = in.readInt();
+
+        if (compressed.length < compressedLength) compressed = new byte[compressedLength];
+        if (raw.length < rawLength) raw = new byte[rawLength];
+        in.readFully(compressed, 0, compressedLength);
+        inflate(inflater, compressed, compressedLength, raw, rawLength);
+
+        TrajectoryFrame frame = new TrajectoryFrame();
+        frame.decode(tick, keyframe, count, raw, previous);
+        previous = frame;
+        return frame;
+
+    }
+
+    /**
+     * decompresses the data of a frame
+     */
+    static void inflate(Inflater inflater, byte[] compressed, int compressedLength, byte[] raw, int rawLength)
+            throws IOException {
+
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, rawLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += inflated;
+            }
+            if (length != rawLength) {
+                throw new IOException("Frame is damaged");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Frame is damaged", e);
+        }
+
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+}
@@ -0,0 +1,310 @@
+package model.graph.recording;
+
+import model.graph.building.Building;
+import model.graph.building.Grid;
+import model.graph.building.TickListener;
+import model.graph.useragent.Person;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Records the trajectories of all persons in a building: after every tick, the id, cell
+ * and state of every person are appended to a compact, column-oriented, delta-encoded
+ * and compressed file.
+ * The ticking thread only copies the positions into a snapshot and hands it to a bounded queue;
+ * sorting, encoding, compressing and writing happen on a separate thread. If the queue is
+ * full, the ticking thread waits, so no tick is ever lost.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see TrajectoryFormat
+ * @see TrajectoryReader
+ * @see Building#addTickListener(TickListener)
+ */
+public class TrajectoryRecorder implements TickListener, Closeable {
+
+    /**
+     * a snapshot of one tick, marks the end of the recording
+     */
+    private static final Snapshot END = new Snapshot();
+
+    private final Grid grid;
+
+    private final DataOutputStream out;
+
+    /**
+     * every keyframeInterval-th frame is a keyframe
+     */
+    private final int keyframeInterval;
+
+    /**
+     * snapshots that wait to be written
+     */
+    private final ArrayBlockingQueue<Snapshot> queue;
+
+    /**
+     * snapshots that were written and can be reused
+     */
+    private final ArrayBlockingQueue<Snapshot> free;
+
+    private final Thread writer;
+
+    /**
+     * the first error of the writing thread
+     */
+    private volatile IOException error;
+
+    private boolean closed = false;
+
+    /**
+     * creates a recorder with a keyframe every 100 ticks and space for 8 waiting ticks
+     *
+     * @param file     the file the trajectories are written to
+     * @param building the building that will be recorded
+     * @throws IOException if the file can not be created
+     */
+    public TrajectoryRecorder(File file, Building building) throws IOException {
+        this(file, building, 100, 8);
+    }
+
+    /**
+     * @param file             the file the trajectories are written to
+     * @param building         the building that will be recorded
+     * @param keyframeInterval the number of frames between two keyframes
+     * @param queueCapacity    the number of ticks that may wait to be written
+     * @throws IOException if the file can not be created
+     */
+    public TrajectoryRecorder(File file, Building building, int keyframeInterval, int queueCapacity)
+            throws IOException {
+
+        if (keyframeInterval <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Interval and capacity have to be positive");
+        }
+        this.grid = building.getGrid();
+        this.keyframeInterval = keyframeInterval;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.free = new ArrayBlockingQueue<>(queueCapacity + 2);
+
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.writeInt(TrajectoryFormat.MAGIC);
+        out.writeInt(TrajectoryFormat.VERSION);
+        out.writeInt(building.gridSizeX);
+        out.writeInt(building.gridSizeY);
+        out.writeInt(building.floors);
+        out.writeInt(keyframeInterval);
+
+        writer = new Thread(this::write, "TrajectoryRecorder");
+        writer.setDaemon(true);
+        writer.start();
+
+    }
+
+    @Override
+    public void ticked(Building building) {
+
+        if (closed) {
+            return;
+        }
+
+        Snapshot snapshot = free.poll();
+        if (snapshot == null) {
+            snapshot = new Snapshot();
+        }
+
+        snapshot.tick = building.getTickNumber();
+        snapshot.size = 0;
+        snapshot.ensureCapacity(building.getPersonsInBuildingView().size());
+        for (Person person : building.getPersonsInBuildingView()) {
+            int i = snapshot.size++;
+            snapshot.ids[i] = person.getId();
+            snapshot.cells[i] = grid.getIndex(person.getIsOnCell());
+            snapshot.states[i] = (byte) (person.getState().ordinal() |
+                    (person.isDisabled() ? TrajectoryFormat.DISABLED_FLAG : 0));
+        }
+
+        try {
+            queue.put(snapshot);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+    /**
+     * the loop of the writing thread
+     */
+    private void write() {
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        TrajectoryFormat.Bytes raw = new TrajectoryFormat.Bytes(1 << 12);
+        byte[] compressed = new byte[1 << 12];
+        Snapshot previous = null;
+        long frames = 0;
+
+        try {
+            while (true) {
+                Snapshot snapshot = queue.take();
+                if (snapshot == END) {
+                    break;
+                }
+                if (error != null) {
+                    free.offer(snapshot);
+                    continue;
+                }
+
+                snapshot.sort();
+                boolean keyframe = previous == null || frames % keyframeInterval == 0;
+                encode(snapshot, keyframe ? null : previous, raw);
+
+                deflater.reset();
+                deflater.setInput(raw.data, 0, raw.length);
+                deflater.finish();
+                int compressedLength = 0;
+                while (!deflater.finished()) {
+                    if (compressedLength == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    compressedLength += deflater.deflate(compressed, compressedLength,
+                            compressed.length - compressedLength);
+                }
+
+                try {
+                    out.writeLong(snapshot.tick);
+                    out.writeByte(keyframe ? TrajectoryFormat.KEYFRAME : TrajectoryFormat.DELTA_FRAME);
+                    out.writeInt(snapshot.size);
+                    out.writeInt(raw.length);
+                    out.writeInt(compressedLength);
+                    out.write(compressed, 0, compressedLength);
+                } catch (IOException e) {
+                    error = e;
+                }
+
+                frames++;
+                if (previous != null) {
+                    free.offer(previous);
+                }
+                previous = snapshot;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deflater.end();
+        }
+
+    }
+
+    /**
+     * encodes the columns of a sorted snapshot
+     *
+     * @param snapshot the snapshot
+     * @param previous the snapshot of the frame before, null if this is a keyframe
+     * @param raw      the bytes the encoded snapshot is written to
+     */
+    private static void encode(Snapshot snapshot, Snapshot previous, TrajectoryFormat.Bytes raw) {
+
+        raw.clear();
+        int lastId = 0;
+        for (int i = 0; i < snapshot.size; i++) {
+            raw.writeVarInt(snapshot.sortedIds[i] - lastId);
+            lastId = snapshot.sortedIds[i];
+        }
+
+        int j = 0;
+        for (int i = 0; i < snapshot.size; i++) {
+            int cell = snapshot.sortedCells[i];
+            if (previous != null) {
+                while (j < previous.size && previous.sortedIds[j] < snapshot.sortedIds[i]) j++;
+                if (j < previous.size && previous.sortedIds[j] == snapshot.sortedIds[i]) {
+                    cell -= previous.sortedCells[j];
+                }
+            }
+            raw.writeVarInt(cell);
+        }
+
+        raw.ensureCapacity(snapshot.size);
+        System.arraycopy(snapshot.sortedStates, 0, raw.data, raw.length, snapshot.size);
+        raw.length += snapshot.size;
+
+    }
+
+    /**
+     * writes all waiting ticks and closes the file. Has to be called on the thread that ticks
+     * the building, after the recorder was removed from it.
+     *
+     * @throws IOException if a frame or the file could not be written
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+        if (error != null) {
+            throw error;
+        }
+
+    }
+
+    /**
+     * the copied positions of all persons at one tick
+     */
+    private static final class Snapshot {
+
+        long tick;
+        int size;
+        int[] ids = new int[0];
+        int[] cells = new int[0];
+        byte[] states = new byte[0];
+
+        long[] sortKeys = new long[0];
+        int[] sortedIds = new int[0];
+        int[] sortedCells = new int[0];
+        byte[] sortedStates = new byte[0];
+
+        void ensureCapacity(int capacity) {
+            if (ids.length < capacity) {
+                capacity = Math.max(capacity, ids.length + (ids.length >> 1));
+                ids = new int[capacity];
+                cells = new int[capacity];
+                states = new byte[capacity];
+                sortKeys = new long[capacity];
+                sortedIds = new int[capacity];
+                sortedCells = new int[capacity];
+                sortedStates = new byte[capacity];
+            }
+        }
+
+        /**
+         * orders the persons by their id
+         */
+        void sort() {
+            for (int i = 0; i < size; i++) {
+                sortKeys[i] = ((long) ids[i] << 32) | i;
+            }
+            Arrays.sort(sortKeys, 0, size);
+            for (int i = 0; i < size; i++) {
+                int from = (int) sortKeys[i];
+                sortedIds[i] = ids[from];
+                sortedCells[i] = cells[from];
+                sortedStates[i] = states[from];
+            }
+        }
+    }
+
+}
@@ -9,6 +9,7 @@ import model.graph.PathOntology;
 import model.graph.building.Building.Passage;
 import model.graph.building.Building.Room;
 import model.graph.evacuation.EvacuationStrategy;
+import model.helper.Instrumentation;
 import model.helper.Logger;
 
 import java.util.Collections;
@@ -29,9 +30,15 @@ class MovementModule {
     private PathOntology po;
     private EvacuationStrategy evacuationStrategy;
 
+    /**
+     * the persons of the building that do not need to be moved
+     */
+    private final PersonScheduler scheduler;
+
     private MovementModule(Building building) {
         this.building = building;
         po = PathOntology.getInstance(building);
+        scheduler = new PersonScheduler(building);
     }
 
     public static MovementModule getMovementModule(Building building) {
@@ -47,13 +54,48 @@ class MovementModule {
     }
 
     /**
-     * this class determines the person's next step.
+     * @return the scheduler of the persons of the building
+     */
+    PersonScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * the measured phase of a move for every state of a person
+     */
+    private static final Instrumentation.Phase[] MOVE_PHASES = new Instrumentation.Phase[Person.STATE.values().length];
+
+    static {
+        for (Person.STATE state : Person.STATE.values()) {
+            MOVE_PHASES[state.ordinal()] = Instrumentation.Phase.valueOf("MOVE_" + state.name());
+        }
+    }
+
+    /**
+     * this class determines the person's next step. The time it takes is measured
+     * for every state of the person.
      *
      * @param person the person that shall be moved
      * @return a direction, specified by an integer
+     * @see Instrumentation
      */
     int move(Person person) {
 
+        if (!Instrumentation.isEnabled()) {
+            return findMove(person);
+        }
+        Instrumentation.Phase phase = person.getIsOnCell().isOutside() &&
+                person.getState() != Person.STATE.GETINTOBUILDING ?
+                Instrumentation.Phase.MOVE_LEAVE : MOVE_PHASES[person.getState().ordinal()];
+        long start = Instrumentation.start();
+        int direction = findMove(person);
+        Instrumentation.stop(phase, start);
+        return direction;
+
+    }
+
+    private int findMove(Person person) {
+
         Cell cell = person.getIsOnCell();
 
         // if the person is outside the building and does not want to get in, it gets removed
@@ -63,8 +105,10 @@ class MovementModule {
             return DIR.STAY;
         }
 
-        // if the person should stand still, just always return DIR.STAY
+        // if the person should stand still, just always return DIR.STAY; it sleeps until its
+        // state changes
         else if (person.getState() == Person.STATE.STANDSTILL) {
+            scheduler.sleep(person, new Cell[0]);
             return DIR.STAY;
         }
 
@@ -87,7 +131,7 @@ class MovementModule {
         // it's valid and leads to the same room, it is returned
         else if (person.getState() == Person.STATE.STAYINROOM) {
 
-            int dir = DIR.getRandomDirection();
+            int dir = DIR.getRandomDirection(building.getRandom());
             Cell newCell = cell.getNextCell(dir);
             if (isValid(cell, newCell, person.isDisabled()) &&
                     cell.getRoom().equals(newCell.getRoom())) {
@@ -99,7 +143,7 @@ class MovementModule {
         // when staying in the same room.
         else if (person.getState() == Person.STATE.STAYINBUILDING) {
 
-            int dir = DIR.getRandomDirection();
+            int dir = DIR.getRandomDirection(building.getRandom());
             Cell newCell = cell.getNextCell(dir);
             if (isValid(cell, newCell, person.isDisabled()) && !newCell.isOutside()) {
                 return dir;
@@ -109,7 +153,7 @@ class MovementModule {
         // this is the same as the two above, just that the person can also leave the building
         else if (person.getState() == Person.STATE.WANDERRANDOMLY) {
 
-            int dir = DIR.getRandomDirection();
+            int dir = DIR.getRandomDirection(building.getRandom());
             Cell newCell = cell.getNextCell(dir);
             if (isValid(cell, newCell, person.isDisabled())) {
                 return dir;
@@ -134,7 +178,7 @@ class MovementModule {
                     person.setState(Person.STATE.STAYINROOM);
                     // it returns any move that stays in that same room its in
 
-                    return move(person);
+                    return findMove(person);
                 }
             } else {
                 if (person.getIsOnCell().isOutside()) {
@@ -244,6 +288,11 @@ class MovementModule {
             if (person.getPath() == null) {
                 person.setPath(evacuationStrategy.getPath(person));
             }
+            // no way outside is open at the moment, the person tries again in the next tick
+            if (person.getNextPassage() == null) {
+                person.setPath(null);
+                return DIR.STAY;
+            }
 
 
             // nextPassage is the first existing passage in the person's path,
@@ -271,7 +320,7 @@ class MovementModule {
 
                 dir2.removeAll(dir);
 
-                Collections.shuffle(dir2);
+                Collections.shuffle(dir2, building.getRandom());
 
                 for (int direction : dir2) {
                     // we calculate cell that would be reached
@@ -286,6 +335,9 @@ class MovementModule {
 
                 // all directions that lead in the right direction
                 LinkedList<Integer> dir = getDirections(nextPassage, person);
+                // the cells the person could step to if they were not occupied; none if one is
+                // only blocked for this tick
+                LinkedList<Cell> occupied = new LinkedList<>();
                 // for each of the possible directions
                 for (int direction : dir) {
                     // we calculate cell that would be reached
@@ -295,6 +347,18 @@ class MovementModule {
                         return direction;
 
                     }
+                    if (occupied != null && newCell != null && cell.getRoom().equals(newCell.getRoom())
+                            && (!person.isDisabled() || !newCell.isStair()) && !isWall(cell, newCell)) {
+                        if (newCell.isOccupied()) {
+                            occupied.add(newCell);
+                        } else {
+                            occupied = null;
+                        }
+                    }
+                }
+                // the person is boxed in and sleeps until one of the cells is left
+                if (occupied != null) {
+                    scheduler.sleep(person, occupied.toArray(new Cell[occupied.size()]));
                 }
 
             }
@@ -540,7 +604,8 @@ class MovementModule {
             HashSet<Passage> exits = room.getExits();
             for (Passage exit : exits) {
                 HashSet<Cell> changeCells = exit.getRoomChangingCells();
-                if (changeCells.contains(cell1) && changeCells.contains(cell2)) {
+                // a closed exit is a wall as well
+                if (!exit.isClosed() && changeCells.contains(cell1) && changeCells.contains(cell2)) {
                     return false;
                 }
             }
@@ -559,7 +624,7 @@ class MovementModule {
             HashSet<Passage> passages2 = r2.getPassages();
             for (Passage p1 : passages1) {
                 for (Passage p2 : passages2) {
-                    if (p1.equals(p2)) {
+                    if (p1.equals(p2) && !p1.isClosed()) {
                         HashSet<Cell> changeCells = p1.getRoomChangingCells();
                         if (changeCells.contains(cell1) && changeCells.contains(cell2)) {
                             return false;
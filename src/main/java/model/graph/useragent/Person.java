@@ -5,10 +5,11 @@ import model.graph.building.DIR;
 import model.graph.building.Grid;
 import model.graph.building.Grid.*;
 import model.graph.Path;
+import model.graph.building.Building.Passage;
 import model.graph.building.Building.Room;
+import model.helper.Instrumentation;
 
 import java.awt.*;
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.Random;
 
@@ -22,6 +23,13 @@ import java.util.Random;
  */
 public class Person {
 
+    /**
+     * the color and the sizes every person is drawn with
+     */
+    public static final Color DEFAULT_COLOR = Color.CYAN;
+    public static final int DEFAULT_SIZE = 10;
+    public static final int DISABLED_SIZE = 15;
+
     /**
      * the color of this person, might be changed if the person changes its state (TODO)
      */
@@ -80,6 +88,16 @@ public class Person {
      */
 
     private transient MovementModule movementModule;
+    /**
+     * whether the person is not moved, as it could only stay where it is
+     *
+     * @see PersonScheduler
+     */
+    private transient boolean sleeping;
+    /**
+     * the number of the tick the person was last moved in
+     */
+    private transient long lastTick = -1;
     /**
      * all states a person can be in
      */
@@ -105,38 +123,21 @@ public class Person {
         this.id = idResource++;
         this.name = "RandomPerson" + id;
         this.movementModule = MovementModule.getMovementModule(building);
-        SIZE = isDisabled ? 15 : 10;
+        SIZE = isDisabled ? DISABLED_SIZE : DEFAULT_SIZE;
         this.building = building;
-        LinkedList<Grid.Cell> startCells = new LinkedList<>(building.getEntryCells());
-        Collections.shuffle(startCells);
 
         // finds a valid startCell
-        for (Grid.Cell cell : startCells) {
-            if (!isDisabled) {
-                if (!cell.isOccupied()) {
-                    cell.setOccupied(true);
-
-                    this.isOnCell = cell;
-                    this.wasOnCell = cell;
-                    break;
-                }
-            } else {
-                if (!cell.isOccupied() && !cell.isStair()) {
-                    cell.setOccupied(true);
-
-                    this.isOnCell = cell;
-                    this.wasOnCell = cell;
-                    break;
-                }
-            }
-        }
-        if (isOnCell == null) {
+        Grid.Cell cell = building.getRandomFreeEntryCell(isDisabled);
+        if (cell == null) {
             throw new IllegalStateException("No valid cell was found!");
         }
+        cell.setOccupant(this);
+        this.isOnCell = cell;
+        this.wasOnCell = cell;
         this.isInRoom = isOnCell.getRoom();
         this.isDisabled = isDisabled;
         this.state = STATE.GETINTOBUILDING;
-        COLOR = Color.CYAN;
+        COLOR = DEFAULT_COLOR;
     }
 
 
@@ -171,7 +172,7 @@ public class Person {
         this.wasOnCell = startCell;
         if (!startCell.isOccupied()) {
 
-            startCell.setOccupied(true);
+            startCell.setOccupant(this);
         } else {
             throw new IllegalStateException("StartCell was already occupied");
         }
@@ -184,9 +185,68 @@ public class Person {
         /*COLOR = new Color((float) Math.random(), (float) Math.random(),
                 (float) Math.random(), (float) (Math.random() / 2 + 0.5));
         */
-        COLOR = Color.CYAN;
-        SIZE = isDisabled ? 15 : 10;
+        COLOR = DEFAULT_COLOR;
+        SIZE = isDisabled ? DISABLED_SIZE : DEFAULT_SIZE;
+
+    }
+
+    /**
+     * constructor that restores a person exactly as it was saved, including its id.
+     *
+     * @param id         the id the person had
+     * @param name       the name of this person
+     * @param isOnCell   the cell the person is on
+     * @param wasOnCell  the cell the person was on before the last tick
+     * @param isDisabled whether this person is disabled
+     * @param state      the state of this person
+     * @param goalRoom   the goal room; null if there is none
+     * @param path       the rest of the path the person is following; null if there is none
+     * @param building   the building the person is in
+     * @see model.graph.building.Checkpoint
+     */
+    public Person(int id, String name, Cell isOnCell, Cell wasOnCell, boolean isDisabled, STATE state,
+                  Room goalRoom, Path path, Building building) {
 
+        this.id = id;
+        this.name = name;
+        this.movementModule = MovementModule.getMovementModule(building);
+        if (!isOnCell.isOccupied()) {
+            isOnCell.setOccupant(this);
+        } else {
+            throw new IllegalStateException("Cell was already occupied");
+        }
+        this.isOnCell = isOnCell;
+        this.wasOnCell = wasOnCell;
+        this.isInRoom = isOnCell.getRoom();
+        this.isDisabled = isDisabled;
+        this.state = state;
+        this.goalRoom = goalRoom;
+        this.path = path;
+        this.building = building;
+        if (idResource <= id) {
+            idResource = id + 1;
+        }
+        COLOR = DEFAULT_COLOR;
+        SIZE = isDisabled ? DISABLED_SIZE : DEFAULT_SIZE;
+
+    }
+
+    /**
+     * @return the id the next created person will get
+     */
+    public static int getNextId() {
+        return idResource;
+    }
+
+    /**
+     * makes sure that persons created from now on get an id that is at least the given one
+     *
+     * @param nextId the lowest id for the next created person
+     */
+    public static void reserveIds(int nextId) {
+        if (idResource < nextId) {
+            idResource = nextId;
+        }
     }
 
     /**
@@ -239,11 +299,76 @@ public class Person {
         return new Path(path);
     }
 
+    /**
+     * @return the next passage of the path, without copying it; null if there is none
+     */
+    public Passage getNextPassage() {
+        return path == null ? null : path.getNext();
+    }
+
+    /**
+     * @return the last passage of the path, without copying it; null if there is none
+     */
+    public Passage getLastPassage() {
+        return path == null ? null : path.getLast();
+    }
+
     /**
      * @param path this path will be assigned to the person
      */
     public void setPath(Path path) {
+        Passage next = getNextPassage();
         this.path = path;
+        building.personChangedPassage(this, next, getNextPassage());
+        wake();
+    }
+
+    /**
+     * @return the number of the tick the person was last moved in; -1 if it was never moved
+     */
+    public long getLastTick() {
+        return lastTick;
+    }
+
+    /**
+     * @return whether the person sleeps, as it could only stay where it is
+     * @see PersonScheduler
+     */
+    public boolean isSleeping() {
+        return sleeping;
+    }
+
+    /**
+     * @return the occupied cells the sleeping person waits for, it is woken when one of them is
+     * left; null if it does not sleep
+     * @see PersonScheduler
+     */
+    public Cell[] getAwaitedCells() {
+        return sleeping ? movementModule.getScheduler().getAwaitedCells(this) : null;
+    }
+
+    /**
+     * lets the person sleep until one of the cells is left, as it did when a checkpoint was
+     * taken. Only used by <code>Checkpoint</code>; the person has to be in the building.
+     *
+     * @param cells the occupied cells the person waits for; may be empty
+     */
+    public void sleepUntilLeft(Cell[] cells) {
+        movementModule.getScheduler().sleep(this, cells);
+    }
+
+    void setSleeping(boolean sleeping) {
+        this.sleeping = sleeping;
+        building.personChangedSleep(this, sleeping);
+    }
+
+    /**
+     * wakes the person up, so that it is moved again
+     */
+    private void wake() {
+        if (sleeping) {
+            movementModule.getScheduler().wake(this);
+        }
     }
 
     /**
@@ -275,6 +400,7 @@ public class Person {
     public void setState(STATE state) {
         if (this.state != STATE.EVACUATION) {
             this.state = state;
+            wake();
         }
     }
 
@@ -282,12 +408,14 @@ public class Person {
      * this person is removed from the building when calling this method
      */
     public void remove() {
+        wake();
         if (isOnCell != null) {
 
             if (wasOnCell.isOccupied()) {
 
             }
             isOnCell.setOccupied(false);
+            movementModule.getScheduler().cellLeft(isOnCell);
         }
         building.removePerson(this);
     }
@@ -302,25 +430,43 @@ public class Person {
      */
     public void tick() {
 
+        lastTick = building.getTickNumber();
+
+        // sleeping persons are left out of the ticks; one that is ticked anyway is woken
+        wake();
+
         // marks cell as unoccupied
         isOnCell.setOccupied(false);
         wasOnCell = isOnCell;
-        if (building.getPersonsInBuilding().contains(this)) {
+        if (building.isInBuilding(this)) {
             int direction = movementModule.move(this);
 
             // block cells if you go diagonally
             if (direction > 40) blockCells(direction);
             isOnCell = isOnCell.getNextCell(direction);
             // marks new Cell as occupied
-            isOnCell.setOccupied(true);
+            isOnCell.setOccupant(this);
             if (wasOnCell.isOutside()) {
                 wasOnCell.setOccupied(false);
             }
+            if (wasOnCell != isOnCell) {
+                movementModule.getScheduler().cellLeft(wasOnCell);
+            }
+            if (building.getDensityField() != null) {
+                building.getDensityField().move(wasOnCell, isOnCell);
+            }
+            building.getMetrics().personTicked(this, wasOnCell, isOnCell, building.isInBuilding(this));
+            Instrumentation.count(isOnCell == wasOnCell ?
+                    Instrumentation.Counter.STAYS : Instrumentation.Counter.MOVES);
             // sets its Room
+            Room wasInRoom = isInRoom;
             isInRoom = isOnCell.getRoom();
+            if (wasInRoom != isInRoom) {
+                building.personChangedRoom(this, wasInRoom, isInRoom);
+            }
             if (building.getState() != Building.STATE.EVACUATION) {
                 if ((this.state != STATE.GOTOROOM || this.goalRoom != null) && this.state != STATE.STANDSTILL) {
-                    if (Math.random() < 0.1) {
+                    if (building.getRandom().nextDouble() < 0.1) {
 
                         changeState();
                     }
@@ -337,11 +483,17 @@ public class Person {
     private void changeState() {
 
         if (!(isOnCell.isOutside())) {
-            Random r = new Random();
+            Random r = building.getRandom();
             double p = r.nextDouble();
             if (p < 0.5) {
-                state = STATE.GOTOROOM;
-                goalRoom = new LinkedList<>(building.getRooms()).get(r.nextInt(building.getRooms().size()));
+                Room room = new LinkedList<>(building.getRooms()).get(r.nextInt(building.getRooms().size()));
+                // a full room is no goal, the person walks around instead
+                if (room.isFull()) {
+                    state = STATE.STAYINBUILDING;
+                } else {
+                    state = STATE.GOTOROOM;
+                    goalRoom = room;
+                }
 
             } else if (p < 0.75) {
                 state = STATE.STAYINBUILDING;
@@ -363,6 +515,7 @@ public class Person {
         if (!exit) {
             tick();
         } else {
+            wake();
             state = STATE.GOTOROOM;
             goalRoom = null;
             tick();
@@ -403,11 +556,14 @@ public class Person {
     public void startEvacuation() {
         setPath(null);
         state = STATE.EVACUATION;
+        wake();
     }
 
     void nextInPath() {
 
+        Passage next = getNextPassage();
         path.remove(0);
+        building.personChangedPassage(this, next, getNextPassage());
 
     }
 
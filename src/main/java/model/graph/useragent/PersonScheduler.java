@@ -0,0 +1,143 @@
+package model.graph.useragent;
+
+import model.graph.building.Building;
+import model.graph.building.Building.Passage;
+import model.graph.building.Building.Room;
+import model.graph.building.Grid.Cell;
+import model.graph.building.HazardListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Lets persons sleep whose next ticks can only be a stay, so that they are not moved until
+ * something around them changes. A person sleeps if it stands still, or if it evacuates and
+ * every cell it could step to is in another room, behind a wall or occupied. It is woken when
+ * one of these occupied cells is left, when its path or its state changes, or when a passage
+ * or a room of the building changes.
+ * <p>
+ * A sleeping person is left out of the ticks: it gets no place in the random order of a tick,
+ * so it draws no random number for it, and it is not moved. The building counts its stays for
+ * the metrics at once, together with the stays of all other sleeping persons. A person that is
+ * woken during a tick is moved again from the next tick on.
+ * <p>
+ * Only boxed-in evacuating persons and persons that stand still sleep. Persons that walk
+ * around draw random numbers even when they stay, so they are moved in every tick.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ * @see Building#personChangedSleep(Person, boolean)
+ */
+final class PersonScheduler {
+
+    /**
+     * the sleeping persons and the occupied cells they wait for
+     */
+    private final HashMap<Person, Cell[]> sleeping = new HashMap<>();
+
+    /**
+     * the persons that wait for a cell to be left, by the cell
+     */
+    private final HashMap<Cell, ArrayList<Person>> waiting = new HashMap<>();
+
+    PersonScheduler(Building building) {
+
+        // walls and paths may change with a passage or a room
+        building.addHazardListener(new HazardListener() {
+            @Override
+            public void passageClosed(Passage passage) {
+                wakeAll();
+            }
+
+            @Override
+            public void passageReopened(Passage passage) {
+                wakeAll();
+            }
+
+            @Override
+            public void roomPenaltyChanged(Room room, float oldPenalty) {
+                wakeAll();
+            }
+        });
+    }
+
+    /**
+     * lets a person sleep until one of the given cells is left
+     *
+     * @param person the person
+     * @param cells  the occupied cells the person waits for; may be empty
+     */
+    void sleep(Person person, Cell[] cells) {
+
+        wake(person);
+        sleeping.put(person, cells);
+        person.setSleeping(true);
+        for (Cell cell : cells) {
+            waiting.computeIfAbsent(cell, c -> new ArrayList<>(2)).add(person);
+        }
+
+    }
+
+    /**
+     * @param person a person
+     * @return the occupied cells the person waits for, null if it does not sleep
+     */
+    Cell[] getAwaitedCells(Person person) {
+
+        Cell[] cells = sleeping.get(person);
+        return cells == null ? null : cells.clone();
+
+    }
+
+    /**
+     * wakes a person up; does nothing if it does not sleep
+     *
+     * @param person the person
+     */
+    void wake(Person person) {
+
+        Cell[] cells = sleeping.remove(person);
+        if (cells == null) {
+            return;
+        }
+        person.setSleeping(false);
+        for (Cell cell : cells) {
+            ArrayList<Person> persons = waiting.get(cell);
+            if (persons != null) {
+                persons.remove(person);
+                if (persons.isEmpty()) {
+                    waiting.remove(cell);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * wakes all persons up that wait for a cell
+     *
+     * @param cell the cell that was left
+     */
+    void cellLeft(Cell cell) {
+
+        ArrayList<Person> persons = waiting.get(cell);
+        if (persons != null) {
+            for (Person person : persons.toArray(new Person[persons.size()])) {
+                wake(person);
+            }
+        }
+
+    }
+
+    /**
+     * wakes all sleeping persons up
+     */
+    void wakeAll() {
+
+        for (Person person : new ArrayList<>(sleeping.keySet())) {
+            wake(person);
+        }
+
+    }
+
+}
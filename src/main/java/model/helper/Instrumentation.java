@@ -0,0 +1,321 @@
+package model.helper;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Measures how long the phases of a tick take. Every phase has a histogram of its durations
+ * with logarithmic buckets (at most about 3% off, like an HDR histogram), and there are counters
+ * for events that are only counted. Measuring is switched off by default and can be switched
+ * on and off at any time, also with the system property <code>evacuation.instrumentation</code>;
+ * while it is off, a measured phase only costs reading a flag.
+ * <p>
+ * Every measured phase can also be written to an event stream, one line per event with the
+ * fields of a JFR event: start time and duration in nanoseconds, thread and event type.
+ * <p>
+ * Phases have to be measured on the thread that ticks the building; reports may be created
+ * on any thread, but may then be slightly inconsistent.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ */
+public final class Instrumentation {
+
+    /**
+     * the measured phases of a tick
+     */
+    public enum Phase {
+        TICK,
+        TICK_SLICE,
+        UNBLOCK,
+        SHUFFLE,
+        MOVE_LEAVE,
+        MOVE_GETINTOBUILDING,
+        MOVE_STANDSTILL,
+        MOVE_STAYINROOM,
+        MOVE_STAYINBUILDING,
+        MOVE_WANDERRANDOMLY,
+        MOVE_GOTOROOM,
+        MOVE_EVACUATION,
+        SHORTEST_PATH,
+        PATH_REPAIR,
+        SPAWN
+    }
+
+    /**
+     * the counted events
+     */
+    public enum Counter {
+        TICKS,
+        MOVES,
+        STAYS,
+        SPAWNED_PERSONS
+    }
+
+    private static volatile boolean enabled = Boolean.getBoolean("evacuation.instrumentation");
+
+    private static final Histogram[] histograms = new Histogram[Phase.values().length];
+    private static final long[] counters = new long[Counter.values().length];
+
+    private static volatile Writer events;
+
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    private Instrumentation() {}
+
+    /**
+     * @return whether phases are measured
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled whether phases are measured from now on
+     */
+    public static void setEnabled(boolean enabled) {
+        Instrumentation.enabled = enabled;
+    }
+
+    /**
+     * starts measuring a phase
+     *
+     * @return the start time to pass to {@link #stop(Phase, long)}, 0 if nothing is measured
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * stops measuring a phase
+     *
+     * @param phase the phase
+     * @param start the value returned by {@link #start()}
+     */
+    public static void stop(Phase phase, long start) {
+
+        if (start == 0 || !enabled) {
+            return;
+        }
+        long duration = System.nanoTime() - start;
+        histograms[phase.ordinal()].record(duration);
+        if (events != null) {
+            writeEvent(phase, start, duration);
+        }
+
+    }
+
+    /**
+     * counts an event
+     *
+     * @param counter the counted event
+     */
+    public static void count(Counter counter) {
+        if (enabled) {
+            counters[counter.ordinal()]++;
+        }
+    }
+
+    /**
+     * counts several events at once
+     *
+     * @param counter the counted event
+     * @param events  how many events happened
+     */
+    public static void count(Counter counter, long events) {
+        if (enabled) {
+            counters[counter.ordinal()] += events;
+        }
+    }
+
+    /**
+     * @param phase a phase
+     * @return the durations of the phase in nanoseconds
+     */
+    public static Histogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * @param counter an event
+     * @return how often the event happened
+     */
+    public static long getCount(Counter counter) {
+        return counters[counter.ordinal()];
+    }
+
+    /**
+     * forgets everything that was measured
+     */
+    public static synchronized void reset() {
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = 0;
+        }
+    }
+
+    /**
+     * writes every measured phase to a file from now on
+     *
+     * @param file the file
+     * @throws IOException if the file can not be created
+     */
+    public static synchronized void openEventStream(File file) throws IOException {
+        closeEventStream();
+        Writer writer = new BufferedWriter(new FileWriter(file), 1 << 16);
+        writer.write("startTime,duration,eventThread,eventType\n");
+        events = writer;
+    }
+
+    /**
+     * stops writing measured phases to a file and closes it
+     */
+    public static synchronized void closeEventStream() {
+        if (events != null) {
+            try {
+                events.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            events = null;
+        }
+    }
+
+    private static void writeEvent(Phase phase, long start, long duration) {
+        Writer writer = events;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(Long.toString(start));
+            writer.write(',');
+            writer.write(Long.toString(duration));
+            writer.write(',');
+            writer.write(Thread.currentThread().getName());
+            writer.write(',');
+            writer.write(phase.name());
+            writer.write('\n');
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeEventStream();
+        }
+    }
+
+    /**
+     * @return a table of all phases and counters
+     */
+    public static String report() {
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-22s%10s%12s%10s%10s%10s%10s%10s%n",
+                "phase", "count", "total ms", "mean us", "p50 us", "p90 us", "p99 us", "max us"));
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = histograms[phase.ordinal()];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            report.append(String.format("%-22s%10d%12.1f%10.2f%10.2f%10.2f%10.2f%10.2f%n",
+                    phase.name(), histogram.getCount(), histogram.getTotal() / 1e6,
+                    histogram.getMean() / 1e3, histogram.getPercentile(50) / 1e3,
+                    histogram.getPercentile(90) / 1e3, histogram.getPercentile(99) / 1e3,
+                    histogram.getMax() / 1e3));
+        }
+        for (Counter counter : Counter.values()) {
+            report.append(String.format("%-22s%10d%n", counter.name(), counters[counter.ordinal()]));
+        }
+        return report.toString();
+
+    }
+
+    /**
+     * A histogram of positive values. Values below 64 are counted exactly; larger values are
+     * counted in 32 buckets per power of two.
+     */
+    public static final class Histogram {
+
+        private static final int SUB_BUCKETS = 32;
+
+        private final long[] buckets = new long[60 * SUB_BUCKETS];
+        private long count;
+        private long total;
+        private long max;
+
+        private static int bucket(long value) {
+            if (value < 2 * SUB_BUCKETS) {
+                return (int) Math.max(value, 0);
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - 5;
+            return shift * SUB_BUCKETS + (int) (value >>> shift);
+        }
+
+        private static long lowestValue(int bucket) {
+            if (bucket < 2 * SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        }
+
+        /**
+         * @param value the value to count
+         */
+        public void record(long value) {
+            buckets[bucket(value)]++;
+            count++;
+            total += value;
+            if (value > max) {
+                max = value;
+            }
+        }
+
+        void reset() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            total = 0;
+            max = 0;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * @param percentile a percentile between 0 and 100
+         * @return the lowest value of the bucket the percentile is in
+         */
+        public long getPercentile(double percentile) {
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(lowestValue(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package model.helper;
+
+import java.util.Random;
+
+/**
+ * A <code>Random</code> whose internal state can be read and restored, so that a simulation
+ * can be continued with exactly the same random numbers after it was saved.
+ * Uses the same linear congruential generator as <code>java.util.Random</code>.
+ * Unlike <code>java.util.Random</code>, it is not thread-safe.
+ *
+ * @author Malte Bossert
+ * @version 3.2
+ */
+public class SimulationRandom extends Random {
+
+    private static final long serialVersionUID = 3720853512375092185L;
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    /**
+     * the 48 bit state of the generator; has no initializer on purpose, as it is already
+     * set by the constructor of <code>Random</code> through <code>setSeed</code>
+     */
+    private long state;
+
+    /**
+     * creates a generator with a random seed
+     */
+    public SimulationRandom() {
+        this(new Random().nextLong());
+    }
+
+    /**
+     * @param seed the initial seed
+     */
+    public SimulationRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * @return the current internal state, which can be given to {@link #setState(long)}
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * @param state an internal state as returned by {@link #getState()}
+     */
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+
+}
@@ -1,7 +1,10 @@
 package model.representation;
 
 import model.graph.building.DIR;
+import model.graph.building.DensityField;
 import model.graph.building.Grid;
+import model.graph.recording.TrajectoryFrame;
+import model.graph.recording.TrajectoryPlayer;
 import model.graph.useragent.Person;
 import model.helper.TestShow;
 import model.graph.building.Building;
@@ -11,9 +14,16 @@ import model.graph.building.Building.Stair;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
 import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * This is the representation of a specified <code>building.Building</code>.
@@ -58,6 +68,123 @@ public class BuildingRepresentation extends Canvas {
      */
     private int floor;
 
+    /**
+     * the player whose frames are drawn instead of the persons in the building, null if
+     * the building itself is drawn
+     */
+    private TrajectoryPlayer player;
+
+    /**
+     * the side length of the tiles restored areas are tracked in, in pixels
+     */
+    private static final int TILE_SIZE = 16;
+
+    /**
+     * the walls and stairs of the floor, drawn once for every size of the canvas
+     */
+    private BufferedImage staticLayer;
+
+    /**
+     * the static layer with the persons drawn onto it; only the areas of moved persons are
+     * drawn again in every frame
+     */
+    private BufferedImage frame;
+    private Graphics2D frameGraphics;
+    private boolean frameValid = false;
+
+    /**
+     * the tiles of the frame that were restored from the static layer in this frame
+     */
+    private boolean[] dirtyTiles = new boolean[0];
+    private int tilesX, tilesY;
+
+    /**
+     * the persons as they are drawn in the frame and as they will be drawn next
+     */
+    private Agents drawn = new Agents();
+    private Agents next = new Agents();
+    private boolean[] redraw = new boolean[0];
+
+    /**
+     * below this size of a cell in pixels, the density of persons is drawn instead of the
+     * persons themselves
+     */
+    private static final int DENSITY_CELL_SIZE = 4;
+
+    private static final double MIN_ZOOM = 1.0 / 64, MAX_ZOOM = 32;
+
+    /**
+     * the colors of the density, from few to many persons per cell
+     */
+    private static final Color[] DENSITY_COLORS = new Color[8];
+
+    static {
+        for (int i = 0; i < DENSITY_COLORS.length; i++) {
+            float share = (float) (i + 1) / DENSITY_COLORS.length;
+            DENSITY_COLORS[i] = new Color(1f, 1f - share, 0f, 0.3f + 0.6f * share);
+        }
+    }
+
+    /**
+     * the colors of the flow, from few to many persons entering a cell per tick
+     */
+    private static final Color[] FLOW_COLORS = new Color[8];
+
+    static {
+        for (int i = 0; i < FLOW_COLORS.length; i++) {
+            float share = (float) (i + 1) / FLOW_COLORS.length;
+            FLOW_COLORS[i] = new Color(0f, 1f - share, 1f, 0.3f + 0.6f * share);
+        }
+    }
+
+    /**
+     * the values that can be drawn over the floor
+     */
+    public enum HEATMAP {
+        NONE,
+        DENSITY,
+        FLOW
+    }
+
+    /**
+     * the values of the density field that are drawn over the floor
+     */
+    private HEATMAP heatmap = HEATMAP.NONE;
+
+    /**
+     * the zoom of the view, 1 if the whole floor fits into the canvas, and how far the view
+     * is moved in pixels. Changed by the mouse, applied with the next frame.
+     */
+    private double zoom = 1;
+    private int panX = 0, panY = 0;
+    private volatile boolean viewChanged = false;
+
+    /**
+     * the width and height of one cell if the whole floor fits into the canvas
+     */
+    private float fitWidth, fitHeight;
+
+    /**
+     * the walls and stairs of the floor for the last used cell sizes
+     */
+    private final Map<Long, FloorPlan> floorPlans = new LinkedHashMap<Long, FloorPlan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, FloorPlan> eldest) {
+            return size() > 8;
+        }
+    };
+    private FloorPlan floorPlan;
+
+    /**
+     * the visible cells of the floor
+     */
+    private int visibleX1, visibleY1, visibleX2, visibleY2;
+
+    /**
+     * the number of persons in every block of cells, if the density is drawn
+     */
+    private int[] density = new int[0];
+
     /**
      * the constructor of this building. specifies this representation
      *
@@ -79,6 +206,81 @@ public class BuildingRepresentation extends Canvas {
         buildingForm = new Path2D.Float();
         update();
 
+        MouseAdapter mouse = new MouseAdapter() {
+
+            private int lastX, lastY;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                lastX = e.getX();
+                lastY = e.getY();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                moveView(e.getX() - lastX, e.getY() - lastY);
+                lastX = e.getX();
+                lastY = e.getY();
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    resetView();
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoomView(e.getX(), e.getY(), Math.pow(1.25, -e.getPreciseWheelRotation()));
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+
+    }
+
+    /**
+     * zooms the view, keeping the point under the mouse where it is
+     *
+     * @param x      the x-coordinate of the mouse in pixels
+     * @param y      the y-coordinate of the mouse in pixels
+     * @param factor the factor the cells get larger by
+     */
+    public synchronized void zoomView(int x, int y, double factor) {
+
+        double cellX = (double) (x - offsetSide) / gridWidth;
+        double cellY = (double) (y - offsetTop) / gridHeight;
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        int newGridWidth = Math.max(1, (int) (fitWidth * zoom));
+        int newGridHeight = Math.max(1, (int) (fitHeight * zoom));
+        panX = getSize().width / 10 - (int) Math.round(x - cellX * newGridWidth);
+        panY = getSize().height / 10 - (int) Math.round(y - cellY * newGridHeight);
+        viewChanged = true;
+
+    }
+
+    /**
+     * moves the view
+     *
+     * @param dX the distance in x-direction in pixels
+     * @param dY the distance in y-direction in pixels
+     */
+    public synchronized void moveView(int dX, int dY) {
+        panX -= dX;
+        panY -= dY;
+        viewChanged = true;
+    }
+
+    /**
+     * fits the whole floor into the canvas again
+     */
+    public synchronized void resetView() {
+        zoom = 1;
+        panX = 0;
+        panY = 0;
+        viewChanged = true;
     }
 
     /**
@@ -93,15 +295,15 @@ public class BuildingRepresentation extends Canvas {
 
         try {
 
-            if (!this.getSize().equals(new Dimension(width, height))) {
-                update();
-                width = getSize().width;
-                height = getSize().height;
-            }
-
-            paint(g2d);
+            checkSize();
 
-            paintPeople(g2d, percentage);
+            if (staticLayer != null) {
+                updateFrame(percentage);
+                g2d.drawImage(frame, 0, 0, null);
+                if (heatmap != HEATMAP.NONE && player == null && building.getDensityField() != null) {
+                    paintHeatmap(g2d, building.getDensityField());
+                }
+            }
 
 
         } finally {
@@ -119,11 +321,7 @@ public class BuildingRepresentation extends Canvas {
 
         try {
 
-            if (!this.getSize().equals(new Dimension(width, height))) {
-                update();
-                width = getSize().width;
-                height = getSize().height;
-            }
+            checkSize();
 
             paint(g2d);
 
@@ -137,30 +335,348 @@ public class BuildingRepresentation extends Canvas {
     @Override
     public void paint(Graphics g) {
 
+        if (staticLayer != null) {
+            g.drawImage(staticLayer, 0, 0, null);
+            return;
+        }
+        paintBuilding(g);
+    }
+
+    /**
+     * draws the walls and stairs of the floor
+     */
+    private void paintBuilding(Graphics g) {
+
         g.setColor(Color.white);
         g.fillRect(0, 0, getWidth(), getHeight());
         g.setColor(Color.black);
+        int dX = floorPlan == null ? 0 : offsetSide - floorPlan.originX;
+        int dY = floorPlan == null ? 0 : offsetTop - floorPlan.originY;
+        g.translate(dX, dY);
         try {
             ((Graphics2D) g).draw(buildingForm);
         } catch (ArrayIndexOutOfBoundsException e) {
 
+        } finally {
+            g.translate(-dX, -dY);
+        }
+    }
+
+    /**
+     * updates the building and its layers if the size of the canvas changed
+     */
+    private synchronized void checkSize() {
+
+        if (!this.getSize().equals(new Dimension(width, height)) || staticLayer == null || viewChanged) {
+            viewChanged = false;
+            update();
+            width = getSize().width;
+            height = getSize().height;
+        }
+
+    }
+
+    /**
+     * brings the frame up to date: the old positions of all persons that moved or left are
+     * restored from the static layer, then the moved persons and all persons overlapping
+     * a restored area are drawn again. Everything else in the frame stays as it is.
+     */
+    private void updateFrame(float percentage) {
+
+        if (player != null) {
+            collectFrames(percentage);
+        } else {
+            collectPeople(percentage);
+        }
+
+        if (gridWidth < DENSITY_CELL_SIZE || gridHeight < DENSITY_CELL_SIZE) {
+            paintDensity();
+            frameValid = false;
+            return;
+        }
+
+        next.sort();
+
+        if (!frameValid) {
+            frameGraphics.drawImage(staticLayer, 0, 0, null);
+            for (int j = 0; j < next.count; j++) {
+                drawAgent(j);
+            }
+            frameValid = true;
+        } else {
+            Arrays.fill(dirtyTiles, false);
+            if (redraw.length < next.count) {
+                redraw = new boolean[next.ids.length];
+            }
+
+            int i = 0, j = 0;
+            while (i < drawn.count || j < next.count) {
+                if (j >= next.count || (i < drawn.count && drawn.ids[i] < next.ids[j])) {
+                    erase(i++);
+                } else if (i >= drawn.count || next.ids[j] < drawn.ids[i]) {
+                    redraw[j++] = true;
+                } else {
+                    boolean moved = drawn.xs[i] != next.xs[j] || drawn.ys[i] != next.ys[j]
+                            || drawn.sizes[i] != next.sizes[j] || drawn.colors[i] != next.colors[j];
+                    if (moved) {
+                        erase(i);
+                    }
+                    redraw[j] = moved;
+                    i++;
+                    j++;
+                }
+            }
+
+            for (j = 0; j < next.count; j++) {
+                if (redraw[j] || isDirty(next.xs[j], next.ys[j], next.sizes[j])) {
+                    drawAgent(j);
+                }
+            }
+        }
+
+        Agents temp = drawn;
+        drawn = next;
+        next = temp;
+
+    }
+
+    /**
+     * collects the positions of the persons in the building on this floor
+     */
+    private void collectPeople(float percentage) {
+
+        next.count = 0;
+        Grid grid = building.getGrid();
+        int visibleCells = (visibleX2 - visibleX1 + 1) * (visibleY2 - visibleY1 + 1);
+
+        if (visibleCells < building.getPersonsInBuildingView().size()) {
+            // only a small part of the floor is visible, so only its cells are looked at
+            for (int y = visibleY1; y <= visibleY2; y++) {
+                int index = grid.getIndex(visibleX1, y, floor);
+                for (int x = visibleX1; x <= visibleX2; x++, index++) {
+                    Grid.Cell cell = grid.getCellByIndex(index);
+                    Person person = cell.getOccupant();
+                    if (person != null && person.getIsOnCell() == cell) {
+                        addAgent(person.getId(), getMovedFrom(person), cell, person.SIZE,
+                                person.COLOR, percentage);
+                    }
+                }
+            }
+            return;
+        }
+
+        for (Person person : building.getPersonsInBuildingView()) {
+
+            Grid.Cell cell = person.getIsOnCell();
+            if (cell.getFloor() == floor && isVisible(cell)) {
+                addAgent(person.getId(), getMovedFrom(person), cell, person.SIZE,
+                        person.COLOR, percentage);
+            }
+
+        }
+
+    }
+
+    /**
+     * @return whether a cell of this floor is in the visible part of the floor
+     */
+    private boolean isVisible(Grid.Cell cell) {
+        return cell.getX() >= visibleX1 && cell.getX() <= visibleX2
+                && cell.getY() >= visibleY1 && cell.getY() <= visibleY2;
+    }
+
+    /**
+     * draws the number of persons in blocks of cells that are at least
+     * <code>DENSITY_CELL_SIZE</code> pixels large instead of the persons
+     */
+    private void paintDensity() {
+
+        int blockX = (DENSITY_CELL_SIZE + gridWidth - 1) / gridWidth;
+        int blockY = (DENSITY_CELL_SIZE + gridHeight - 1) / gridHeight;
+        int blocksX = (visibleX2 - visibleX1) / blockX + 1;
+        int blocksY = (visibleY2 - visibleY1) / blockY + 1;
+        if (density.length < blocksX * blocksY) {
+            density = new int[blocksX * blocksY];
+        }
+        Arrays.fill(density, 0, blocksX * blocksY, 0);
+        for (int i = 0; i < next.count; i++) {
+            density[((next.cellYs[i] - visibleY1) / blockY) * blocksX + (next.cellXs[i] - visibleX1) / blockX]++;
+        }
+
+        frameGraphics.drawImage(staticLayer, 0, 0, null);
+        int cells = blockX * blockY;
+        for (int by = 0; by < blocksY; by++) {
+            for (int bx = 0; bx < blocksX; bx++) {
+                int count = density[by * blocksX + bx];
+                if (count > 0) {
+                    int level = Math.min(DENSITY_COLORS.length - 1, count * DENSITY_COLORS.length / cells);
+                    frameGraphics.setColor(DENSITY_COLORS[level]);
+                    frameGraphics.fillRect(offsetSide + (visibleX1 + bx * blockX) * gridWidth,
+                            offsetTop + (visibleY1 + by * blockY) * gridHeight,
+                            blockX * gridWidth, blockY * gridHeight);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * collects the positions of the persons of a recorded run on this floor, moving from the
+     * frame the last step of the player started at to the frame it ended at
+     */
+    private void collectFrames(float percentage) {
+
+        TrajectoryFrame from = player.getFromFrame();
+        TrajectoryFrame to = player.getToFrame();
+        Grid grid = building.getGrid();
+
+        next.count = 0;
+        for (int i = 0; i < to.size(); i++) {
+
+            int index = to.getCellIndex(i);
+            Grid.Cell isOnCell = index < 0 ? null : grid.getCellByIndex(index);
+            if (isOnCell == null || isOnCell.getFloor() != floor || !isVisible(isOnCell)) {
+                continue;
+            }
+            Grid.Cell wasOnCell = isOnCell;
+            int j = from.indexOf(to.getId(i));
+            if (j >= 0 && from.getCellIndex(j) >= 0) {
+                Grid.Cell cell = grid.getCellByIndex(from.getCellIndex(j));
+                if (cell != null && cell.getFloor() == floor) {
+                    wasOnCell = cell;
+                }
+            }
+
+            int size = to.isDisabled(i) ? Person.DISABLED_SIZE : Person.DEFAULT_SIZE;
+            addAgent(to.getId(i), wasOnCell, isOnCell, size, Person.DEFAULT_COLOR, percentage);
+
         }
+
+    }
+
+    /**
+     * @return the cell the person moves from; its own cell if it was not moved yet in a tick that
+     * is ticked in slices, so that it does not move back
+     * @see Building#tickSliced(long)
+     */
+    private Grid.Cell getMovedFrom(Person person) {
+
+        if (building.isTickInProgress() && person.getLastTick() != building.getTickNumber()) {
+            return person.getIsOnCell();
+        }
+        return person.getWasOnCell();
+
     }
 
-    private void paintPeople(Graphics2D g, float percentage) {
+    /**
+     * adds a person to the next frame at its position between two cells
+     */
+    private void addAgent(int id, Grid.Cell wasOnCell, Grid.Cell isOnCell, int size, Color color,
+                          float percentage) {
+
+        int oldX = offsetSide + wasOnCell.getX() * gridWidth + gridWidth / 2 - size / 2;
+        int oldY = offsetTop + wasOnCell.getY() * gridHeight + gridHeight / 2 - size / 2;
+        int newX = offsetSide + isOnCell.getX() * gridWidth + gridWidth / 2 - size / 2;
+        int newY = offsetTop + isOnCell.getY() * gridHeight + gridHeight / 2 - size / 2;
+
+        int i = next.add();
+        next.ids[i] = id;
+        next.xs[i] = oldX + (int) ((float) (newX - oldX) * percentage);
+        next.ys[i] = oldY + (int) ((float) (newY - oldY) * percentage);
+        next.sizes[i] = size;
+        next.colors[i] = color;
+        next.cellXs[i] = isOnCell.getX();
+        next.cellYs[i] = isOnCell.getY();
+
+    }
+
+    private void drawAgent(int j) {
+        frameGraphics.setColor(next.colors[j]);
+        frameGraphics.fillOval(next.xs[j], next.ys[j], next.sizes[j], next.sizes[j]);
+    }
+
+    /**
+     * restores the area a person was drawn at from the static layer and marks it as dirty
+     */
+    private void erase(int i) {
+
+        int x = drawn.xs[i], y = drawn.ys[i], size = drawn.sizes[i] + 1;
+        frameGraphics.drawImage(staticLayer, x, y, x + size, y + size, x, y, x + size, y + size, null);
+
+        int tileX1 = Math.max(x / TILE_SIZE, 0), tileX2 = Math.min((x + size) / TILE_SIZE, tilesX - 1);
+        int tileY1 = Math.max(y / TILE_SIZE, 0), tileY2 = Math.min((y + size) / TILE_SIZE, tilesY - 1);
+        for (int tileY = tileY1; tileY <= tileY2; tileY++) {
+            for (int tileX = tileX1; tileX <= tileX2; tileX++) {
+                dirtyTiles[tileY * tilesX + tileX] = true;
+            }
+        }
 
-        for (Person person : building.getPersonsInBuilding()) {
+    }
 
-            if (person.getIsOnCell().getFloor() == floor) {
-                g.setColor(person.COLOR);
-                CoordCell oldCoordinates = adjustCoordinates(getCoordinatesCenter(person.getWasOnCell()), person.SIZE);
-                CoordCell newcoordinates = adjustCoordinates(getCoordinatesCenter(person.getIsOnCell()), person.SIZE);
-                int dX = (int) ((float) (newcoordinates.getX() - oldCoordinates.getX()) * percentage);
-                int dY = (int) ((float) (newcoordinates.getY() - oldCoordinates.getY()) * percentage);
-                CoordCell coordinates = new CoordCell(oldCoordinates.getX() + dX, oldCoordinates.getY() + dY);
-                g.fillOval(coordinates.getX(), coordinates.getY(), person.SIZE, person.SIZE);
+    /**
+     * @return whether an area overlaps a tile that was restored in this frame
+     */
+    private boolean isDirty(int x, int y, int size) {
+
+        int tileX1 = Math.max(x / TILE_SIZE, 0), tileX2 = Math.min((x + size) / TILE_SIZE, tilesX - 1);
+        int tileY1 = Math.max(y / TILE_SIZE, 0), tileY2 = Math.min((y + size) / TILE_SIZE, tilesY - 1);
+        for (int tileY = tileY1; tileY <= tileY2; tileY++) {
+            for (int tileX = tileX1; tileX <= tileX2; tileX++) {
+                if (dirtyTiles[tileY * tilesX + tileX]) {
+                    return true;
+                }
             }
+        }
+        return false;
+
+    }
+
+    /**
+     * @param player the player whose frames are drawn instead of the persons in the building,
+     *               null to draw the building itself again
+     */
+    public void setPlayer(TrajectoryPlayer player) {
+        this.player = player;
+    }
 
+    /**
+     * @param heatmap the values of the density field of the building that are drawn over the floor
+     * @see Building#setDensityTracked(boolean)
+     */
+    public void setHeatmap(HEATMAP heatmap) {
+        this.heatmap = heatmap;
+    }
+
+    /**
+     * draws the density or flow of the visible cells over the floor, averaged over blocks of
+     * cells that are at least <code>DENSITY_CELL_SIZE</code> pixels large
+     */
+    private void paintHeatmap(Graphics2D g, DensityField field) {
+
+        Grid grid = building.getGrid();
+        Color[] colors = heatmap == HEATMAP.DENSITY ? DENSITY_COLORS : FLOW_COLORS;
+        int blockX = (DENSITY_CELL_SIZE + gridWidth - 1) / gridWidth;
+        int blockY = (DENSITY_CELL_SIZE + gridHeight - 1) / gridHeight;
+
+        for (int y1 = visibleY1; y1 <= visibleY2; y1 += blockY) {
+            int y2 = Math.min(y1 + blockY - 1, visibleY2);
+            for (int x1 = visibleX1; x1 <= visibleX2; x1 += blockX) {
+                int x2 = Math.min(x1 + blockX - 1, visibleX2);
+
+                float sum = 0;
+                for (int y = y1; y <= y2; y++) {
+                    int index = grid.getIndex(x1, y, floor);
+                    for (int x = x1; x <= x2; x++, index++) {
+                        sum += heatmap == HEATMAP.DENSITY ? field.getDensity(index) : field.getFlow(index);
+                    }
+                }
+                float value = sum / ((x2 - x1 + 1) * (y2 - y1 + 1));
+                if (value * colors.length >= 0.5f) {
+                    g.setColor(colors[Math.min(colors.length - 1, (int) (value * colors.length))]);
+                    g.fillRect(offsetSide + x1 * gridWidth, offsetTop + y1 * gridHeight,
+                            (x2 - x1 + 1) * gridWidth, (y2 - y1 + 1) * gridHeight);
+                }
+            }
         }
 
     }
@@ -170,25 +686,89 @@ public class BuildingRepresentation extends Canvas {
      */
     private void update() {
 
-        this.offsetSide = this.getSize().width / 10;
-        this.offsetTop = this.getSize().height / 10;
-        this.gridWidth = (this.getSize().width - (2 * offsetSide)) / gridSizeX;
-        this.gridHeight = (this.getSize().height - (2 * offsetTop)) / gridSizeY;
-        buildingForm = new Path2D.Float();
-        for (Room room : building.getRooms()) {
-            if (room.getFloor() == floor) {
-                Path2D roomPath = updateRoom(room);
-                buildingForm.append(roomPath, false);
-            }
+        this.fitWidth = (float) (this.getSize().width - (2 * (this.getSize().width / 10))) / gridSizeX;
+        this.fitHeight = (float) (this.getSize().height - (2 * (this.getSize().height / 10))) / gridSizeY;
+        this.gridWidth = Math.max(1, (int) (fitWidth * zoom));
+        this.gridHeight = Math.max(1, (int) (fitHeight * zoom));
+        this.offsetSide = this.getSize().width / 10 - panX;
+        this.offsetTop = this.getSize().height / 10 - panY;
+
+        visibleX1 = Math.max(-1, Math.floorDiv(-offsetSide, gridWidth) - 1);
+        visibleY1 = Math.max(-1, Math.floorDiv(-offsetTop, gridHeight) - 1);
+        visibleX2 = Math.min(gridSizeX, Math.floorDiv(this.getSize().width - offsetSide, gridWidth) + 1);
+        visibleY2 = Math.min(gridSizeY, Math.floorDiv(this.getSize().height - offsetTop, gridHeight) + 1);
+        if (visibleX2 < visibleX1 || visibleY2 < visibleY1) {
+            // nothing of the floor is visible
+            visibleX2 = visibleX1 - 1;
+            visibleY2 = visibleY1;
         }
 
-        for (Stair stair : building.getStairs()) {
-            if (stair.isInFloor(floor)) {
-                Path2D stairPath = updateStair(stair);
-                buildingForm.append(stairPath, false);
+        // the walls only depend on the size of the cells, they are moved when they are drawn
+        long key = ((long) gridWidth << 32) | gridHeight;
+        floorPlan = floorPlans.get(key);
+        if (floorPlan == null) {
+            buildingForm = new Path2D.Float();
+            for (Room room : building.getRooms()) {
+                if (room.getFloor() == floor) {
+                    Path2D roomPath = updateRoom(room);
+                    buildingForm.append(roomPath, false);
+                }
+            }
+
+            for (Stair stair : building.getStairs()) {
+                if (stair.isInFloor(floor)) {
+                    Path2D stairPath = updateStair(stair);
+                    buildingForm.append(stairPath, false);
+                }
             }
+            floorPlan = new FloorPlan(buildingForm, offsetSide, offsetTop);
+            floorPlans.put(key, floorPlan);
+        }
+        buildingForm = floorPlan.form;
+
+        updateLayers();
+
+    }
+
+    /**
+     * draws the building into the static layer once and starts a new frame
+     */
+    private void updateLayers() {
+
+        if (frameGraphics != null) {
+            frameGraphics.dispose();
+        }
+        drawn.count = 0;
+        frameValid = false;
+
+        int w = getSize().width, h = getSize().height;
+        if (w <= 0 || h <= 0) {
+            staticLayer = null;
+            frame = null;
+            frameGraphics = null;
+            return;
         }
 
+        staticLayer = createLayer(w, h);
+        Graphics2D g = staticLayer.createGraphics();
+        paintBuilding(g);
+        g.dispose();
+
+        frame = createLayer(w, h);
+        frameGraphics = frame.createGraphics();
+
+        tilesX = w / TILE_SIZE + 1;
+        tilesY = h / TILE_SIZE + 1;
+        dirtyTiles = new boolean[tilesX * tilesY];
+
+    }
+
+    private BufferedImage createLayer(int w, int h) {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        if (configuration != null) {
+            return configuration.createCompatibleImage(w, h);
+        }
+        return new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
     }
 
     private Path2D updateStair(Stair stair) {
@@ -369,4 +949,94 @@ public class BuildingRepresentation extends Canvas {
         jf.add(new TestShow(shape));
         jf.setVisible(true);
     }
-}
\ No newline at end of file
+
+    /**
+     * the walls and stairs of a floor for one size of the cells, and where the grid started
+     * when they were created
+     */
+    private static final class FloorPlan {
+
+        final Path2D.Float form;
+        final int originX, originY;
+
+        FloorPlan(Path2D.Float form, int originX, int originY) {
+            this.form = form;
+            this.originX = originX;
+            this.originY = originY;
+        }
+    }
+
+    /**
+     * the positions of drawn persons, ordered by their id
+     */
+    private static final class Agents {
+
+        int count;
+        int[] ids = new int[0];
+        int[] xs = new int[0];
+        int[] ys = new int[0];
+        int[] sizes = new int[0];
+        Color[] colors = new Color[0];
+        int[] cellXs = new int[0];
+        int[] cellYs = new int[0];
+
+        private long[] keys = new long[0];
+        private int[] temp = new int[0];
+        private Color[] tempColors = new Color[0];
+
+        /**
+         * @return the position of a new person
+         */
+        int add() {
+            if (count == ids.length) {
+                int capacity = Math.max(16, count * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                colors = Arrays.copyOf(colors, capacity);
+                cellXs = Arrays.copyOf(cellXs, capacity);
+                cellYs = Arrays.copyOf(cellYs, capacity);
+                keys = new long[capacity];
+                temp = new int[capacity];
+                tempColors = new Color[capacity];
+            }
+            return count++;
+        }
+
+        void sort() {
+
+            boolean sorted = true;
+            for (int i = 1; i < count && sorted; i++) {
+                sorted = ids[i - 1] < ids[i];
+            }
+            if (sorted) {
+                return;
+            }
+
+            for (int i = 0; i < count; i++) {
+                keys[i] = ((long) ids[i] << 32) | i;
+            }
+            Arrays.sort(keys, 0, count);
+            permute(ids);
+            permute(xs);
+            permute(ys);
+            permute(sizes);
+            permute(cellXs);
+            permute(cellYs);
+            for (int i = 0; i < count; i++) {
+                tempColors[i] = colors[(int) keys[i]];
+            }
+            System.arraycopy(tempColors, 0, colors, 0, count);
+
+        }
+
+        private void permute(int[] column) {
+            for (int i = 0; i < count; i++) {
+                temp[i] = column[(int) keys[i]];
+            }
+            System.arraycopy(temp, 0, column, 0, count);
+        }
+    }
+
+}
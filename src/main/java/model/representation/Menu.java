@@ -1,7 +1,10 @@
 package model.representation;
 
 import model.controller.Controller;
+import model.graph.evacuation.EvacuationStrategies;
 import model.graph.evacuation.EvacuationStrategy;
+import model.helper.Instrumentation;
+import model.helper.Logger;
 
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
@@ -38,6 +41,30 @@ public class Menu extends JPanel {
 
     private JButton serializeButton;
 
+    private JButton recordButton;
+
+    private JButton replayButton;
+
+    private JButton checkpointButton;
+
+    private JButton restoreButton;
+
+    private JPanel replayPanel;
+    private JSlider frameSlider;
+    private JComboBox<String> replaySpeeds;
+
+    private JComboBox<String> heatmaps;
+
+    private JCheckBox instrumentationBox;
+
+    private JCheckBox slicedBox;
+
+    /**
+     * whether a recorded run is shown, and whether the frame slider is moved by the replay itself
+     */
+    private boolean replaying = false;
+    private boolean updatingFrameSlider = false;
+
     public Menu(Controller controller) {
 
         this.controller = controller;
@@ -62,6 +89,30 @@ public class Menu extends JPanel {
         peopleSliderPanel = peopleSlider();
         peopleSliderPanel.setPreferredSize(new Dimension(100, 150));
 
+        recordButton = recordButton();
+        recordButton.setPreferredSize(new Dimension(100, 100));
+
+        replayButton = replayButton();
+        replayButton.setPreferredSize(new Dimension(100, 100));
+
+        checkpointButton = checkpointButton();
+        checkpointButton.setPreferredSize(new Dimension(100, 100));
+
+        restoreButton = restoreButton();
+        restoreButton.setPreferredSize(new Dimension(100, 100));
+
+        replayPanel = replayPanel();
+        replayPanel.setPreferredSize(new Dimension(100, 150));
+
+        heatmaps = heatmaps();
+        heatmaps.setPreferredSize(new Dimension(100, 50));
+
+        instrumentationBox = instrumentationBox();
+        instrumentationBox.setPreferredSize(new Dimension(100, 50));
+
+        slicedBox = slicedBox();
+        slicedBox.setPreferredSize(new Dimension(100, 50));
+
 
         JPanel emergency = new JPanel(new GridLayout2(1,2));
         emergency.setPreferredSize(new Dimension(100,100));
@@ -84,6 +135,14 @@ public class Menu extends JPanel {
         add(peopleSliderPanel);
         add(fileOpenButton);
         add(serializeButton);
+        add(recordButton);
+        add(replayButton);
+        add(replayPanel);
+        add(checkpointButton);
+        add(restoreButton);
+        add(heatmaps);
+        add(instrumentationBox);
+        add(slicedBox);
 
     }
 
@@ -140,6 +199,238 @@ public class Menu extends JPanel {
 
     }
 
+    private JButton recordButton() {
+
+        recordButton = new JButton("Record Run");
+
+        recordButton.setEnabled(false);
+
+        recordButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (recordButton.getText().equals("Stop Recording")) {
+                    controller.stopRecording();
+                    recordButton.setText("Record Run");
+                    return;
+                }
+                int returnVal = fileChooser.showSaveDialog(recordButton);
+
+                if (returnVal == JFileChooser.APPROVE_OPTION) {
+                    File file = fileChooser.getSelectedFile();
+                    controller.startRecording(file);
+                    recordButton.setText("Stop Recording");
+
+                }
+            }
+        });
+
+        return recordButton;
+
+    }
+
+    private JButton replayButton() {
+
+        replayButton = new JButton("Open Recording");
+
+        replayButton.setEnabled(false);
+
+        replayButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int returnVal = fileChooser.showOpenDialog(replayButton);
+
+                if (returnVal == JFileChooser.APPROVE_OPTION) {
+                    File file = fileChooser.getSelectedFile();
+                    controller.openReplay(file);
+
+                }
+            }
+        });
+
+        return replayButton;
+
+    }
+
+    private JButton checkpointButton() {
+
+        checkpointButton = new JButton("Write Checkpoints");
+
+        checkpointButton.setEnabled(false);
+
+        checkpointButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (checkpointButton.getText().equals("Stop Checkpoints")) {
+                    controller.stopCheckpoints();
+                    checkpointButton.setText("Write Checkpoints");
+                    return;
+                }
+                int returnVal = fileChooser.showSaveDialog(checkpointButton);
+
+                if (returnVal == JFileChooser.APPROVE_OPTION) {
+                    File file = fileChooser.getSelectedFile();
+                    controller.startCheckpoints(file);
+                    checkpointButton.setText("Stop Checkpoints");
+
+                }
+            }
+        });
+
+        return checkpointButton;
+
+    }
+
+    private JButton restoreButton() {
+
+        restoreButton = new JButton("Open Checkpoint");
+
+        restoreButton.setEnabled(false);
+
+        restoreButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int returnVal = fileChooser.showOpenDialog(restoreButton);
+
+                if (returnVal == JFileChooser.APPROVE_OPTION) {
+                    File file = fileChooser.getSelectedFile();
+                    controller.openCheckpoint(file);
+
+                }
+            }
+        });
+
+        return restoreButton;
+
+    }
+
+    private JPanel replayPanel() {
+
+        frameSlider = new JSlider(0, 0, 0);
+        frameSlider.setName("Frame of the recording");
+        frameSlider.setEnabled(false);
+
+        frameSlider.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                if (!updatingFrameSlider) {
+                    controller.seekReplay(frameSlider.getValue());
+                }
+            }
+        });
+
+        String[] speeds = {"-4", "-2", "-1", "-0.5", "0.5", "1", "2", "4", "8"};
+        replaySpeeds = new JComboBox<>(speeds);
+        replaySpeeds.setSelectedItem("1");
+        replaySpeeds.setEnabled(false);
+
+        replaySpeeds.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                controller.adjustReplaySpeed(Double.parseDouble((String) replaySpeeds.getSelectedItem()));
+            }
+        });
+
+        JPanel replay = new JPanel(new GridLayout2(3, 1));
+        JLabel replayText = new JLabel("Replay (frames per step):");
+        replayText.setPreferredSize(new Dimension(100, 40));
+        replay.add(replayText, Component.CENTER_ALIGNMENT);
+        replaySpeeds.setPreferredSize(new Dimension(100, 40));
+        replay.add(replaySpeeds);
+        frameSlider.setPreferredSize(new Dimension(100, 70));
+        replay.add(frameSlider);
+
+        return replay;
+
+    }
+
+    /**
+     * prepares the replay controls for a recorded run
+     *
+     * @param frameCount the number of frames of the run
+     */
+    public synchronized void replayOpened(int frameCount) {
+
+        replaying = true;
+        updatingFrameSlider = true;
+        frameSlider.setMaximum(Math.max(frameCount - 1, 0));
+        frameSlider.setValue(0);
+        updatingFrameSlider = false;
+        replaySpeeds.setSelectedItem("1");
+
+    }
+
+    /**
+     * moves the frame slider without seeking the replay
+     *
+     * @param frame the frame the replay is at
+     */
+    public void replayFrameChanged(int frame) {
+
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                updatingFrameSlider = true;
+                frameSlider.setValue(frame);
+                updatingFrameSlider = false;
+            }
+        });
+
+    }
+
+    private JComboBox<String> heatmaps() {
+
+        String[] shownValues = {"No Heatmap", "Density Heatmap", "Flow Heatmap"};
+        JComboBox<String> temp = new JComboBox<>(shownValues);
+        temp.setSelectedIndex(0);
+
+        temp.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                controller.showHeatmap(BuildingRepresentation.HEATMAP.values()[temp.getSelectedIndex()]);
+            }
+        });
+
+        temp.setEnabled(true);
+        return temp;
+
+    }
+
+    private JCheckBox instrumentationBox() {
+
+        JCheckBox temp = new JCheckBox("Measure tick phases", Instrumentation.isEnabled());
+
+        temp.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (temp.isSelected()) {
+                    Instrumentation.reset();
+                    Instrumentation.setEnabled(true);
+                } else {
+                    Instrumentation.setEnabled(false);
+                    Logger.print(Instrumentation.report());
+                }
+            }
+        });
+
+        return temp;
+
+    }
+
+    private JCheckBox slicedBox() {
+
+        JCheckBox temp = new JCheckBox("Tick in slices", false);
+
+        temp.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                controller.setTimeSliced(temp.isSelected());
+            }
+        });
+
+        return temp;
+
+    }
+
     private JPanel fpsSlider() {
 
         mpsSlider = new JSlider(100, 2000, 500);
@@ -282,7 +573,7 @@ public class Menu extends JPanel {
 
     private JComboBox emergencyStrategies() {
 
-        String[] knownStrategies = {"ShortestPath"};
+        String[] knownStrategies = EvacuationStrategies.getNames().toArray(new String[0]);
         JComboBox<String> temp = new JComboBox<>(knownStrategies);
         temp.setSelectedIndex(0);
 
@@ -310,7 +601,18 @@ public class Menu extends JPanel {
 
                 fileOpenButton.setEnabled(false);
 
-                serializeButton.setEnabled(true);
+                serializeButton.setEnabled(!replaying);
+
+                recordButton.setEnabled(!replaying);
+
+                replayButton.setEnabled(true);
+
+                checkpointButton.setEnabled(!replaying);
+
+                restoreButton.setEnabled(!replaying);
+
+                frameSlider.setEnabled(replaying);
+                replaySpeeds.setEnabled(replaying);
                 break;
 
             case EMPTY:
@@ -329,6 +631,20 @@ public class Menu extends JPanel {
                 fileOpenButton.setEnabled(true);
 
                 serializeButton.setEnabled(false);
+
+                replaying = false;
+                recordButton.setText("Record Run");
+                recordButton.setEnabled(false);
+
+                replayButton.setEnabled(false);
+
+                checkpointButton.setText("Write Checkpoints");
+                checkpointButton.setEnabled(false);
+
+                restoreButton.setEnabled(false);
+
+                frameSlider.setEnabled(false);
+                replaySpeeds.setEnabled(false);
                 break;
 
             case BUILDINGMOVING:
@@ -349,6 +665,46 @@ public class Menu extends JPanel {
                 fileOpenButton.setEnabled(false);
 
                 serializeButton.setEnabled(false);
+
+                recordButton.setEnabled(true);
+
+                replayButton.setEnabled(false);
+
+                checkpointButton.setEnabled(true);
+
+                restoreButton.setEnabled(false);
+
+                frameSlider.setEnabled(false);
+                replaySpeeds.setEnabled(false);
+                break;
+
+            case REPLAY:
+                mpsSlider.setEnabled(true);
+
+                peopleSlider.setEnabled(false);
+
+                pauseButton.setText("PAUSE");
+                pauseButton.setEnabled(true);
+
+                stopButton.setText("STOP");
+                stopButton.setEnabled(true);
+
+                emergencyButton.setEnabled(false);
+
+                fileOpenButton.setEnabled(false);
+
+                serializeButton.setEnabled(false);
+
+                recordButton.setEnabled(false);
+
+                replayButton.setEnabled(false);
+
+                checkpointButton.setEnabled(false);
+
+                restoreButton.setEnabled(false);
+
+                frameSlider.setEnabled(true);
+                replaySpeeds.setEnabled(true);
                 break;
 
             default:
@@ -1,12 +1,93 @@
 package model.representation;
 
+import model.graph.building.Building;
+import model.graph.building.EvacuationMetrics;
+
 import javax.swing.*;
-import javax.swing.border.Border;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 
 /**
  * Created by Malte on 12.08.2017.
+ * <p>
+ * Shows the measurements of the evacuation of the actual building, updated twice a second.
+ *
+ * @see EvacuationMetrics
  */
 public class StatisticsBuildingView extends JPanel {
 
+    private static final long serialVersionUID = 5723918402918374L;
+
+    private Building building;
+
+    private final JTextArea text;
+
+    private final StringBuilder report = new StringBuilder();
+
+    public StatisticsBuildingView() {
+
+        super(new BorderLayout());
+
+        text = new JTextArea();
+        text.setEditable(false);
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        add(new JScrollPane(text), BorderLayout.CENTER);
+
+        Timer timer = new Timer(500, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                update();
+            }
+        });
+        timer.start();
+
+    }
+
+    /**
+     * @param building the building whose evacuation is shown
+     */
+    public void setBuilding(Building building) {
+        this.building = building;
+        update();
+    }
+
+    private void update() {
+
+        report.setLength(0);
+        if (building == null || !building.getMetrics().isRunning()) {
+            report.append("No evacuation yet.");
+        } else {
+            EvacuationMetrics metrics = building.getMetrics();
+
+            report.append(metrics.isFinished() ? "Evacuation finished after " : "Evacuation running for ")
+                    .append(metrics.getEvacuationTime()).append(" ticks, ")
+                    .append(metrics.getEvacuatedPersons()).append(" of ")
+                    .append(metrics.getInitialPersons()).append(" persons out, ")
+                    .append(metrics.getWaitTicks()).append(" ticks waited\n\n");
+
+            report.append(String.format("%-14s%8s%8s%8s%8s%8s%n",
+                    "Passage", "out", "flow", "peak", "queue", "max"));
+            for (int p = 0; p < metrics.getPassageCount(); p++) {
+                report.append(String.format("%-14s%8d%8d%8d%8d%8d%n",
+                        (metrics.getPassage(p).isExit() ? "Exit " : "Passage ") + metrics.getPassage(p).id,
+                        metrics.getExitCount(p), metrics.getFlow(p), metrics.getPeakFlow(p),
+                        metrics.getQueueLength(p), metrics.getMaxQueueLength(p)));
+            }
+
+            report.append(String.format("%n%-14s%8s%8s%12s%n", "Room", "floor", "persons", "cleared"));
+            for (int r = 0; r < metrics.getRoomCount(); r++) {
+                long clearance = metrics.getClearanceTime(r);
+                report.append(String.format("%-14s%8d%8d%12s%n",
+                        "Room " + metrics.getRoom(r).getId(), metrics.getRoom(r).getFloor() + 1,
+                        metrics.getRoomPersons(r), clearance < 0 ? "-" : clearance + " ticks"));
+            }
+        }
+
+        if (!report.toString().equals(text.getText())) {
+            text.setText(report.toString());
+        }
+
+    }
+
 }
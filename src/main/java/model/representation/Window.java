@@ -1,6 +1,7 @@
 package model.representation;
 
 import model.graph.building.Building;
+import model.graph.recording.TrajectoryPlayer;
 
 import javax.swing.*;
 import java.awt.*;
@@ -17,6 +18,7 @@ public class Window extends Canvas {
     private Menu menu;
     private Component statistics;
     private JTabbedPane pane;
+    private BuildingRepresentation.HEATMAP heatmap = BuildingRepresentation.HEATMAP.NONE;
 
     public Window(int width, int height, Building building, Menu menu, Component statistics) {
 
@@ -75,6 +77,7 @@ public class Window extends Canvas {
         for (int floor = 0; floor < building.floors; floor++) {
 
             BuildingRepresentation buildingRepresentation = new BuildingRepresentation(building, floor);
+            buildingRepresentation.setHeatmap(heatmap);
 
             pane.addTab("Floor " + (floor + 1), buildingRepresentation);
 
@@ -84,6 +87,25 @@ public class Window extends Canvas {
 
     }
 
+    /**
+     * @param player the player whose frames are drawn on all floors, null to draw the building again
+     */
+    public void setPlayer(TrajectoryPlayer player) {
+        for (int i = 0; i < pane.getTabCount(); i++) {
+            ((BuildingRepresentation) pane.getComponentAt(i)).setPlayer(player);
+        }
+    }
+
+    /**
+     * @param heatmap the values of the density field that are drawn over all floors
+     */
+    public void setHeatmap(BuildingRepresentation.HEATMAP heatmap) {
+        this.heatmap = heatmap;
+        for (int i = 0; i < pane.getTabCount(); i++) {
+            ((BuildingRepresentation) pane.getComponentAt(i)).setHeatmap(heatmap);
+        }
+    }
+
     public void render() {
         ((BuildingRepresentation)pane.getSelectedComponent()).render();
     }